@@ -5,3 +5,10 @@ java {
     sourceCompatibility = JavaVersion.VERSION_11
     targetCompatibility = JavaVersion.VERSION_11
 }
+
+dependencies {
+    // Plain-JVM chunking and encoding core shared by the app and the benchmarks
+    api(libs.core)
+
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,95 @@
+package com.fc.scanqr;
+
+/**
+ * Base45 as specified in RFC 9285. The alphabet is exactly the QR alphanumeric
+ * character set, so binary data encoded with it is stored in alphanumeric mode at
+ * roughly the density of byte mode.
+ */
+public final class Base45 {
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+    private static final int[] DECODE = new int[128];
+
+    static {
+        java.util.Arrays.fill(DECODE, -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            DECODE[ALPHABET.charAt(i)] = i;
+        }
+    }
+
+    private Base45() {}
+
+    public static String encode(byte[] data) {
+        return encode(data, 0, data.length);
+    }
+
+    public static String encode(byte[] data, int offset, int length) {
+        StringBuilder sb = new StringBuilder(encodedLength(length));
+        appendTo(sb, data, offset, length);
+        return sb.toString();
+    }
+
+    public static void appendTo(StringBuilder sb, byte[] data, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        for (; i + 1 < end; i += 2) {
+            int n = ((data[i] & 0xFF) << 8) | (data[i + 1] & 0xFF);
+            sb.append(ALPHABET.charAt(n % 45));
+            n /= 45;
+            sb.append(ALPHABET.charAt(n % 45));
+            sb.append(ALPHABET.charAt(n / 45));
+        }
+        if (i < end) {
+            int n = data[i] & 0xFF;
+            sb.append(ALPHABET.charAt(n % 45));
+            sb.append(ALPHABET.charAt(n / 45));
+        }
+    }
+
+    public static int encodedLength(int length) {
+        return length / 2 * 3 + (length % 2) * 2;
+    }
+
+    public static byte[] decode(CharSequence text) {
+        return decode(text, 0, text.length());
+    }
+
+    /**
+     * Decodes {@code text[start, end)}.
+     *
+     * @throws IllegalArgumentException if the text is not valid Base45
+     */
+    public static byte[] decode(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length % 3 == 1) {
+            throw new IllegalArgumentException("Invalid Base45 length: " + length);
+        }
+        byte[] out = new byte[length / 3 * 2 + (length % 3 == 2 ? 1 : 0)];
+        int o = 0;
+        int i = start;
+        for (; i + 2 < end; i += 3) {
+            int n = digit(text, i) + digit(text, i + 1) * 45 + digit(text, i + 2) * 45 * 45;
+            if (n > 0xFFFF) {
+                throw new IllegalArgumentException("Invalid Base45 triplet at " + i);
+            }
+            out[o++] = (byte) (n >> 8);
+            out[o++] = (byte) n;
+        }
+        if (i < end) {
+            int n = digit(text, i) + digit(text, i + 1) * 45;
+            if (n > 0xFF) {
+                throw new IllegalArgumentException("Invalid Base45 pair at " + i);
+            }
+            out[o] = (byte) n;
+        }
+        return out;
+    }
+
+    private static int digit(CharSequence text, int index) {
+        char c = text.charAt(index);
+        int d = c < 128 ? DECODE[c] : -1;
+        if (d < 0) {
+            throw new IllegalArgumentException("Invalid Base45 character '" + c + "' at " + index);
+        }
+        return d;
+    }
+}
@@ -0,0 +1,214 @@
+package com.fc.scanqr;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Mode;
+import com.google.zxing.qrcode.decoder.Version;
+import com.google.zxing.qrcode.encoder.Encoder;
+
+/**
+ * Picks the frame size and error correction level for a payload from ZXing's version
+ * tables, so that it takes as few frames as its {@link Profile} allows and no symbol is
+ * larger than it needs to be.
+ * <p>
+ * The profile caps the symbol version, which is what limits how dense a code the
+ * camera can read, and sets the minimum error correction. Chunks are then spread evenly
+ * over the fewest frames that fit, the version is shrunk to the smallest that holds one
+ * chunk, and the error correction is raised as long as that still fits.
+ */
+public final class CapacityPlanner {
+    /** Bits of the UTF-8 ECI segment ZXing writes before byte mode data. */
+    private static final int ECI_BITS = 4 + 8;
+    /** Worst case unused bytes at the end of a chunk that stops before a multi-byte character. */
+    private static final int CHUNK_SLACK = 3;
+
+    private static final ErrorCorrectionLevel[] LEVELS = {
+            ErrorCorrectionLevel.L, ErrorCorrectionLevel.M, ErrorCorrectionLevel.Q, ErrorCorrectionLevel.H
+    };
+
+    public enum Profile {
+        /** Dense symbols for screen-to-camera transfer. */
+        SCREEN_FAST(ErrorCorrectionLevel.L, 25, 4),
+        /** Close to the original fixed 400 bytes at level M. */
+        BALANCED(ErrorCorrectionLevel.M, 15, 5),
+        /** Smaller symbols with heavy error correction and large modules for print. */
+        PRINT_ROBUST(ErrorCorrectionLevel.Q, 10, 10);
+
+        final ErrorCorrectionLevel minLevel;
+        final int maxVersion;
+        final int modulePixels;
+
+        Profile(ErrorCorrectionLevel minLevel, int maxVersion, int modulePixels) {
+            this.minLevel = minLevel;
+            this.maxVersion = maxVersion;
+            this.modulePixels = modulePixels;
+        }
+
+        /**
+         * Pixels per module for saved images.
+         */
+        public int getModulePixels() {
+            return modulePixels;
+        }
+    }
+
+    public static final class Plan {
+        private final ErrorCorrectionLevel level;
+        private final int version;
+        private final int maxFrameBytes;
+        private final int frameCount;
+
+        Plan(ErrorCorrectionLevel level, int version, int maxFrameBytes, int frameCount) {
+            this.level = level;
+            this.version = version;
+            this.maxFrameBytes = maxFrameBytes;
+            this.frameCount = frameCount;
+        }
+
+        public ErrorCorrectionLevel getErrorCorrectionLevel() {
+            return level;
+        }
+
+        /**
+         * Largest version any frame needs.
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * Frame budget to pass to {@link ChunkedPayload#split}.
+         */
+        public int getMaxFrameBytes() {
+            return maxFrameBytes;
+        }
+
+        /**
+         * Expected number of frames; the actual split may differ by one at most when
+         * chunks end early on character boundaries.
+         */
+        public int getFrameCount() {
+            return frameCount;
+        }
+    }
+
+    private CapacityPlanner() {}
+
+    public static Plan plan(String content, Profile profile) {
+        Mode contentMode = chooseMode(content);
+        int length = contentMode == Mode.BYTE ? ContentChunker.utf8Length(content) : content.length();
+
+        // Fits in one frame without a header, unless it would pass for a frame
+        if (capacity(profile.maxVersion, profile.minLevel, contentMode) >= length
+                && !ChunkedPayload.isReserved(content)) {
+            int version = smallestVersion(length, profile.minLevel, contentMode, profile.maxVersion);
+            ErrorCorrectionLevel level = strongestLevel(version, profile.minLevel, contentMode, length);
+            return new Plan(level, version, capacity(version, level, contentMode), 1);
+        }
+
+        // Headers are alphanumeric, so frames of numeric content are alphanumeric too
+        Mode frameMode = contentMode == Mode.BYTE ? Mode.BYTE : Mode.ALPHANUMERIC;
+        int header = ChunkedPayload.maxHeaderLength(length);
+        int slack = frameMode == Mode.BYTE ? CHUNK_SLACK : 0;
+        int chunkBudget = capacity(profile.maxVersion, profile.minLevel, frameMode) - header - slack;
+        if (chunkBudget <= 0) {
+            throw new IllegalArgumentException("Payload too large for " + profile);
+        }
+        int frames = ceilDiv(length, chunkBudget);
+        int frameLength = ceilDiv(length, frames) + header + slack;
+
+        int version = smallestVersion(frameLength, profile.minLevel, frameMode, profile.maxVersion);
+        ErrorCorrectionLevel level = strongestLevel(version, profile.minLevel, frameMode, frameLength);
+        return new Plan(level, version, capacity(version, level, frameMode), frames);
+    }
+
+    /**
+     * Plans frames for bytes packed by {@link PayloadCodec}, which travel as Base45 in
+     * alphanumeric mode and always carry a header.
+     */
+    public static Plan plan(PayloadCodec.Packed packed, Profile profile) {
+        return planBinary(packed.getBytes().length, profile);
+    }
+
+    /**
+     * Plans frames for {@code length} raw bytes sent as Base45, as packed payloads and
+     * {@link QRStreamEncoder} streams are.
+     */
+    public static Plan planBinary(long length, Profile profile) {
+        int header = ChunkedPayload.maxHeaderLength(length);
+        int chunkBytes = (capacity(profile.maxVersion, profile.minLevel, Mode.ALPHANUMERIC) - header) / 3 * 2;
+        if (chunkBytes <= 0) {
+            throw new IllegalArgumentException("Payload too large for " + profile);
+        }
+        long frameCount = Math.max(1, (length + chunkBytes - 1) / chunkBytes);
+        if (frameCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Payload too large for " + profile);
+        }
+        int frames = (int) frameCount;
+        int chunkLength = (int) ((length + frames - 1) / frames);
+        chunkLength += chunkLength % 2;
+        int frameLength = header + Base45.encodedLength(chunkLength);
+
+        int version = smallestVersion(frameLength, profile.minLevel, Mode.ALPHANUMERIC, profile.maxVersion);
+        ErrorCorrectionLevel level = strongestLevel(version, profile.minLevel, Mode.ALPHANUMERIC, frameLength);
+        return new Plan(level, version, capacity(version, level, Mode.ALPHANUMERIC), frames);
+    }
+
+    /**
+     * Plans frames for a byte stream of unknown length sent as Base45: the largest
+     * symbols the profile allows at its minimum error correction. The frame count is 0,
+     * as it is known only once the stream ends.
+     */
+    public static Plan planStream(Profile profile) {
+        return new Plan(profile.minLevel, profile.maxVersion,
+                capacity(profile.maxVersion, profile.minLevel, Mode.ALPHANUMERIC), 0);
+    }
+
+    /**
+     * Number of characters (bytes in byte mode) a symbol holds in a single segment.
+     */
+    static int capacity(int versionNumber, ErrorCorrectionLevel level, Mode mode) {
+        Version version = Version.getVersionForNumber(versionNumber);
+        int dataBits = 8 * (version.getTotalCodewords() - version.getECBlocksForLevel(level).getTotalECCodewords());
+        int countBits = mode.getCharacterCountBits(version);
+        int bits = dataBits - 4 - countBits - (mode == Mode.BYTE ? ECI_BITS : 0);
+        int characters;
+        if (mode == Mode.NUMERIC) {
+            characters = bits / 10 * 3 + (bits % 10 >= 7 ? 2 : bits % 10 >= 4 ? 1 : 0);
+        } else if (mode == Mode.ALPHANUMERIC) {
+            characters = bits / 11 * 2 + (bits % 11 >= 6 ? 1 : 0);
+        } else {
+            characters = bits / 8;
+        }
+        return Math.max(0, Math.min(characters, (1 << countBits) - 1));
+    }
+
+    static Mode chooseMode(String content) {
+        Mode mode = Encoder.chooseMode(content);
+        return mode == Mode.KANJI ? Mode.BYTE : mode;
+    }
+
+    private static int smallestVersion(int length, ErrorCorrectionLevel level, Mode mode, int maxVersion) {
+        for (int version = 1; version < maxVersion; version++) {
+            if (capacity(version, level, mode) >= length) {
+                return version;
+            }
+        }
+        return maxVersion;
+    }
+
+    private static ErrorCorrectionLevel strongestLevel(int version, ErrorCorrectionLevel minLevel, Mode mode,
+                                                       int length) {
+        ErrorCorrectionLevel best = minLevel;
+        for (ErrorCorrectionLevel level : LEVELS) {
+            if (level.ordinal() > minLevel.ordinal() && capacity(version, level, mode) >= length) {
+                best = level;
+            }
+        }
+        return best;
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+}
@@ -0,0 +1,201 @@
+package com.fc.scanqr;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Reassembles the frames of a {@link ChunkedPayload} scanned in any order. Chunk data
+ * is written straight into a byte buffer at its offset, and frames failing their
+ * checksum are dropped. When every chunk up to the last is in, the whole payload is
+ * checked against the last frame's checksum and packed payloads are unpacked with
+ * {@link PayloadCodec}. Not thread-safe.
+ * <p>
+ * Headers carry the index, byte offset and checksum of their own chunk only. The
+ * chunk count, the payload size and the payload checksum are in the last frame alone,
+ * so that frames before an edit stay the same while a document is edited under one
+ * payload id. Until the last frame arrives {@link #getTotal} is 0 and the buffer grows
+ * with the chunks seen; once it is in, the buffer is sized to the payload exactly.
+ * <p>
+ * A frame with another payload id or flags starts a new payload. Within one payload
+ * the newest frame wins: a chunk received again with different data replaces the one
+ * held, and a last frame giving a different size moves the end. Chunks of two versions
+ * of an edited text therefore fail the payload checksum only until the newer frames
+ * have come round, instead of the payload being dropped.
+ */
+public class ChunkAssembler {
+    static final int MAX_PAYLOAD_BYTES = 64 * 1024 * 1024;
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int INITIAL_CHUNKS = 16;
+
+    public enum Status {
+        ACCEPTED,
+        DUPLICATE,
+        INVALID,
+        COMPLETE
+    }
+
+    private int payloadId;
+    private int flags;
+    private int total;
+    private int totalBytes;
+    private long payloadCrc;
+    private byte[] buffer;
+    private BitSet received;
+    private int receivedCount;
+    /** Offset, end and checksum of each chunk held, by index. */
+    private int[] starts;
+    private int[] ends;
+    private int[] crcs;
+    private String text;
+
+    public static boolean isChunk(String text) {
+        return text != null && text.startsWith(ChunkedPayload.PREFIX);
+    }
+
+    /**
+     * Returns the payload id field of a chunk frame, or null if the frame has none.
+     */
+    public static String payloadIdOf(String frame) {
+        if (!isChunk(frame)) {
+            return null;
+        }
+        int start = frame.indexOf(':', ChunkedPayload.PREFIX.length()) + 1;
+        int end = start > 0 ? frame.indexOf(':', start) : -1;
+        return end < 0 ? null : frame.substring(start, end);
+    }
+
+    public Status add(String frame) {
+        ChunkFrame chunk = ChunkFrame.parse(frame);
+        if (chunk == null || chunk.end() > MAX_PAYLOAD_BYTES) {
+            return Status.INVALID;
+        }
+        if (buffer == null || chunk.payloadId != payloadId || chunk.flags != flags) {
+            start(chunk);
+        }
+        int index = chunk.index;
+        int start = (int) chunk.byteOffset;
+        int end = (int) chunk.end();
+        if (received.get(index) && starts[index] == start && ends[index] == end && crcs[index] == chunk.crc
+                && (chunk.isLast() ? index == total - 1 && chunk.payloadCrc == payloadCrc : index != total - 1)) {
+            return text != null ? Status.COMPLETE : Status.DUPLICATE;
+        }
+
+        if (chunk.isLast()) {
+            // Chunks past a newer end belong to another version
+            for (int i = received.nextSetBit(index + 1); i >= 0; i = received.nextSetBit(i + 1)) {
+                received.clear(i);
+                receivedCount--;
+            }
+            total = index + 1;
+            totalBytes = end;
+            payloadCrc = chunk.payloadCrc;
+            if (buffer.length < end) {
+                buffer = Arrays.copyOf(buffer, end);
+            }
+        } else if (total > 0 && (index >= total - 1 || end > totalBytes)) {
+            // A newer version runs past the last frame held; wait for its own
+            total = 0;
+            totalBytes = 0;
+        }
+        if (end > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(end, (int) Math.min(MAX_PAYLOAD_BYTES, 2L * buffer.length)));
+        }
+        System.arraycopy(chunk.data, 0, buffer, start, chunk.data.length);
+        if (index >= crcs.length) {
+            int length = Math.max(index + 1, 2 * crcs.length);
+            starts = Arrays.copyOf(starts, length);
+            ends = Arrays.copyOf(ends, length);
+            crcs = Arrays.copyOf(crcs, length);
+        }
+        starts[index] = start;
+        ends[index] = end;
+        crcs[index] = chunk.crc;
+        if (!received.get(index)) {
+            received.set(index);
+            receivedCount++;
+        }
+
+        text = null;
+        if (total == 0 || receivedCount != total) {
+            return Status.ACCEPTED;
+        }
+        if ((ChunkFrame.crc32(buffer, 0, totalBytes) & 0xFFFFFFFFL) != payloadCrc) {
+            // Chunks of another version are still held; their replacements will follow
+            return Status.INVALID;
+        }
+        try {
+            text = PayloadCodec.unpack(Arrays.copyOf(buffer, totalBytes), flags);
+        } catch (IllegalArgumentException e) {
+            reset();
+            return Status.INVALID;
+        }
+        return Status.COMPLETE;
+    }
+
+    private void start(ChunkFrame chunk) {
+        payloadId = chunk.payloadId;
+        flags = chunk.flags;
+        text = null;
+        total = 0;
+        totalBytes = 0;
+        buffer = new byte[(int) Math.max(chunk.end(), INITIAL_CAPACITY)];
+        received = new BitSet();
+        receivedCount = 0;
+        starts = new int[INITIAL_CHUNKS];
+        ends = new int[INITIAL_CHUNKS];
+        crcs = new int[INITIAL_CHUNKS];
+    }
+
+    /**
+     * Whether every chunk has arrived and the payload passed its checksum.
+     */
+    public boolean isComplete() {
+        return text != null;
+    }
+
+    public int getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * Returns the number of chunks, or 0 until the last frame has been received.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the indices of the chunks not received yet, or null while the chunk count
+     * is unknown because the last frame has not arrived.
+     */
+    public int[] getMissing() {
+        if (total == 0) {
+            return null;
+        }
+        int[] missing = new int[total - receivedCount];
+        int count = 0;
+        for (int i = received.nextClearBit(0); i < total; i = received.nextClearBit(i + 1)) {
+            missing[count++] = i;
+        }
+        return missing;
+    }
+
+    /**
+     * Returns the reassembled text, or null if chunks are still missing.
+     */
+    public String getText() {
+        return text;
+    }
+
+    public void reset() {
+        buffer = null;
+        text = null;
+        received = null;
+        starts = null;
+        ends = null;
+        crcs = null;
+        total = 0;
+        totalBytes = 0;
+        receivedCount = 0;
+    }
+}
@@ -0,0 +1,121 @@
+package com.fc.scanqr;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+/**
+ * One parsed chunk frame in the {@link ChunkedPayload} format, with its data decoded
+ * and checked against the header. Offsets and totals are longs so streamed payloads
+ * larger than 2 GB parse too; in-memory consumers bound them themselves.
+ */
+final class ChunkFrame {
+    private static final int FIELD_COUNT = 6;
+
+    final int flags;
+    final int payloadId;
+    final int index;
+    final long byteOffset;
+    final byte[] data;
+    /** Checksum of {@code data}, as given in the header. */
+    final int crc;
+    /** Checksum of the whole payload if this is the last frame, otherwise {@link ChunkedPayload#NO_PAYLOAD_CRC}. */
+    final long payloadCrc;
+
+    private ChunkFrame(int flags, int payloadId, int index, long byteOffset, byte[] data, int crc, long payloadCrc) {
+        this.flags = flags;
+        this.payloadId = payloadId;
+        this.index = index;
+        this.byteOffset = byteOffset;
+        this.data = data;
+        this.crc = crc;
+        this.payloadCrc = payloadCrc;
+    }
+
+    boolean isLast() {
+        return payloadCrc != ChunkedPayload.NO_PAYLOAD_CRC;
+    }
+
+    long end() {
+        return byteOffset + data.length;
+    }
+
+    /**
+     * Whether this chunk can belong with the {@code received} chunks of one payload. Once
+     * the last frame is in, {@code total} and {@code totalBytes} bound every other chunk;
+     * before that {@code total} is 0.
+     */
+    boolean fits(BitSet received, int total, long totalBytes) {
+        if (total == 0) {
+            return !isLast() || (!received.get(index) && received.length() <= index + 1);
+        }
+        return isLast() ? index + 1 == total && end() == totalBytes : index < total - 1 && end() <= totalBytes;
+    }
+
+    /**
+     * Returns the frame, or null if it is not a chunk, its header is inconsistent or
+     * its data fails the checksum.
+     */
+    static ChunkFrame parse(String frame) {
+        if (!ChunkAssembler.isChunk(frame)) {
+            return null;
+        }
+
+        // Split the header fields off; the data itself may contain ':'
+        long[] fields = new long[FIELD_COUNT];
+        int start = ChunkedPayload.PREFIX.length();
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            int end = frame.indexOf(':', start);
+            if (end < 0) {
+                return null;
+            }
+            int radix = f == 1 || f == 4 || f == 5 ? 16 : 10;
+            if (f == 5 && end == start) {
+                fields[f] = ChunkedPayload.NO_PAYLOAD_CRC;
+            } else {
+                try {
+                    fields[f] = Long.parseLong(frame.substring(start, end), radix);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                if (fields[f] < 0) {
+                    return null;
+                }
+            }
+            start = end + 1;
+        }
+        long flags = fields[0];
+        long index = fields[2];
+        long offset = fields[3];
+        long payloadCrc = fields[5];
+        // Every chunk before this one holds at least one byte
+        if (flags > PayloadCodec.MAX_FLAGS || index >= Integer.MAX_VALUE || offset < index
+                || (index == 0) != (offset == 0) || payloadCrc > 0xFFFFFFFFL) {
+            return null;
+        }
+
+        byte[] data;
+        try {
+            data = flags == ChunkedPayload.FLAG_TEXT
+                    ? frame.substring(start).getBytes(StandardCharsets.UTF_8)
+                    : Base45.decode(frame, start, frame.length());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int crc = (int) fields[4];
+        if (crc32(data) != crc) {
+            return null;
+        }
+        return new ChunkFrame((int) flags, (int) fields[1], (int) index, offset, data, crc, payloadCrc);
+    }
+
+    static int crc32(byte[] data) {
+        return crc32(data, 0, data.length);
+    }
+
+    static int crc32(byte[] data, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,285 @@
+package com.fc.scanqr;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Text payload split into QR frames. A payload that fits in one frame is emitted as-is,
+ * unless it starts with a frame prefix ({@code EQC:} or {@code EQF:}) and would be taken
+ * for a frame; otherwise every frame starts with a header that lets
+ * {@link ChunkAssembler} put the chunks back together in any order:
+ * <pre>
+ *   EQC:flags:payloadId:index:byteOffset:crc32:payloadCrc32:data
+ * </pre>
+ * {@code payloadId} and the checksums are 8 hex digits, the other fields are decimal.
+ * With flags 0 {@code data} is the UTF-8 text itself; otherwise it is a Base45 slice of
+ * the bytes packed by {@link PayloadCodec} and the header is always present. Offsets
+ * count payload bytes and {@code crc32} covers the bytes a chunk carries.
+ * <p>
+ * {@code payloadCrc32} is empty except in the last frame, where it covers the whole
+ * payload; the last frame also gives the chunk count and the total length. A frame
+ * therefore depends only on the text up to its own end, so while text is edited under
+ * the same payload id the frames before the edit stay the same and their encoded
+ * matrices can be reused. Deflated payloads keep this up to the edited deflate
+ * segment, see {@link PayloadCodec#deflate}.
+ */
+public class ChunkedPayload implements FrameSource {
+    static final String PREFIX = "EQC:";
+    /** Starts the frames of fountain-coded transfers. */
+    static final String FOUNTAIN_PREFIX = "EQF:";
+    static final int FLAG_TEXT = 0;
+    static final long NO_PAYLOAD_CRC = -1;
+    /** Prefix, flags, the id and both checksums at 8 hex digits each, and six separators. */
+    private static final int FIXED_HEADER_LENGTH = PREFIX.length() + 1 + 8 + 8 + 8 + 6;
+
+    private final String content;
+    private final byte[] packed;
+    private final int flags;
+    private final int[] bounds;
+    private final int[] byteOffsets;
+    private final int maxFrameLength;
+    private final int payloadId;
+    private long payloadCrc = NO_PAYLOAD_CRC;
+
+    private ChunkedPayload(String content, int[] bounds, int[] byteOffsets, int maxFrameLength, int payloadId) {
+        this.content = content;
+        this.packed = null;
+        this.flags = FLAG_TEXT;
+        this.bounds = bounds;
+        this.byteOffsets = byteOffsets;
+        this.maxFrameLength = maxFrameLength;
+        this.payloadId = payloadId;
+    }
+
+    private ChunkedPayload(PayloadCodec.Packed packed, int[] bounds, int maxFrameLength, int payloadId) {
+        this.content = null;
+        this.packed = packed.getBytes();
+        this.flags = packed.getFlags();
+        this.bounds = bounds;
+        this.byteOffsets = bounds;
+        this.maxFrameLength = maxFrameLength;
+        this.payloadId = payloadId;
+    }
+
+    /**
+     * Splits {@code content} so that every frame, header included, fits in
+     * {@code maxFrameBytes} UTF-8 bytes. Each chunk's size depends only on the text
+     * before it.
+     *
+     * @param payloadId tells payloads apart on the receiving side; keep it while the
+     *                  same document is edited so unchanged frames stay the same
+     */
+    public static ChunkedPayload split(String content, int maxFrameBytes, int payloadId) {
+        return split(content, maxFrameBytes, payloadId, null);
+    }
+
+    /**
+     * Splits {@code content} like {@link #split(String, int, int)}, keeping the chunks of
+     * {@code previous} that end before the first character that changed and splitting
+     * only the rest again.
+     *
+     * @param previous an earlier split of the same document, or null
+     */
+    public static ChunkedPayload split(String content, int maxFrameBytes, int payloadId, ChunkedPayload previous) {
+        int[] bounds = new int[16];
+        int[] byteOffsets = new int[16];
+        int count = 1;
+        if (previous != null && previous.content != null && previous.maxFrameLength == maxFrameBytes
+                && previous.payloadId == payloadId && previous.getCount() > 1) {
+            // Where a chunk ends also depends on the character after it, or the two of a
+            // surrogate pair
+            count = previous.unchangedChunks(mismatch(previous.content, content) - 2) + 1;
+            bounds = Arrays.copyOf(previous.bounds, Math.max(16, previous.bounds.length));
+            byteOffsets = Arrays.copyOf(previous.byteOffsets, bounds.length);
+        }
+        int length = content.length();
+        int totalBytes = byteOffsets[count - 1] + ContentChunker.utf8Length(content, bounds[count - 1], length);
+        if (totalBytes <= maxFrameBytes && !isReserved(content)) {
+            int[] single = content.isEmpty() ? new int[] {0} : new int[] {0, length};
+            return new ChunkedPayload(content, single, new int[single.length], maxFrameBytes, payloadId);
+        }
+
+        while (bounds[count - 1] < length) {
+            int start = bounds[count - 1];
+            int budget = maxFrameBytes - headerLength(count - 1, byteOffsets[count - 1]);
+            if (budget <= 0) {
+                throw new IllegalArgumentException("Frame too small for a chunk: " + maxFrameBytes);
+            }
+            int end = ContentChunker.chunkEnd(content, start, budget);
+            if (count == bounds.length) {
+                bounds = Arrays.copyOf(bounds, count * 2);
+                byteOffsets = Arrays.copyOf(byteOffsets, count * 2);
+            }
+            bounds[count] = end;
+            byteOffsets[count] = byteOffsets[count - 1] + ContentChunker.utf8Length(content, start, end);
+            count++;
+        }
+        return new ChunkedPayload(content, Arrays.copyOf(bounds, count), Arrays.copyOf(byteOffsets, count),
+                maxFrameBytes, payloadId);
+    }
+
+    /**
+     * Splits packed bytes so that every frame, header included, fits in
+     * {@code maxFrameChars} characters. Chunks are whole Base45 pairs, and like text
+     * chunks their size depends only on the bytes before them.
+     */
+    public static ChunkedPayload split(PayloadCodec.Packed packed, int maxFrameChars, int payloadId) {
+        return split(packed, maxFrameChars, payloadId, null);
+    }
+
+    /**
+     * Splits packed bytes like {@link #split(PayloadCodec.Packed, int, int)}, keeping the
+     * chunks of {@code previous} that end before the first byte that changed.
+     *
+     * @param previous an earlier split of the same document, or null
+     */
+    public static ChunkedPayload split(PayloadCodec.Packed packed, int maxFrameChars, int payloadId,
+                                       ChunkedPayload previous) {
+        byte[] bytes = packed.getBytes();
+        int length = bytes.length;
+        int[] bounds = new int[16];
+        int count = 1;
+        if (previous != null && previous.packed != null && previous.flags == packed.getFlags()
+                && previous.maxFrameLength == maxFrameChars && previous.payloadId == payloadId) {
+            count = previous.unchangedChunks(PayloadCodec.mismatch(previous.packed, bytes)) + 1;
+            bounds = Arrays.copyOf(previous.bounds, Math.max(16, previous.bounds.length));
+        }
+        while (bounds[count - 1] < length) {
+            int start = bounds[count - 1];
+            int budget = binaryChunkBytes(maxFrameChars, count - 1, start);
+            if (count == bounds.length) {
+                bounds = Arrays.copyOf(bounds, count * 2);
+            }
+            bounds[count++] = (int) Math.min(length, (long) start + budget);
+        }
+        return new ChunkedPayload(packed, Arrays.copyOf(bounds, count), maxFrameChars, payloadId);
+    }
+
+    /**
+     * Number of leading chunks that end by {@code position} and are not the last, whose
+     * end only marks where the source ran out.
+     */
+    private int unchangedChunks(int position) {
+        int count = 0;
+        while (count < getCount() - 1 && bounds[count + 1] <= position) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int mismatch(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) return i;
+        }
+        return length;
+    }
+
+    /**
+     * Bytes chunk {@code index} at {@code byteOffset} carries, whole Base45 pairs, in a
+     * binary frame of {@code maxFrameChars} characters.
+     */
+    static int binaryChunkBytes(int maxFrameChars, int index, long byteOffset) {
+        int chunkBytes = (maxFrameChars - headerLength(index, byteOffset)) / 3 * 2;
+        if (chunkBytes <= 0) {
+            throw new IllegalArgumentException("Frame too small for a chunk: " + maxFrameChars);
+        }
+        return chunkBytes;
+    }
+
+    /**
+     * Whether {@code content} starts like a frame, so that sent as it is a receiver
+     * would read it as one. Such content always gets a header, even in one frame.
+     */
+    static boolean isReserved(String content) {
+        return content.startsWith(PREFIX) || content.startsWith(FOUNTAIN_PREFIX);
+    }
+
+    /**
+     * Upper bound of the header length for a payload of {@code totalBytes} bytes.
+     */
+    static int maxHeaderLength(long totalBytes) {
+        int digits = Long.toString(totalBytes).length();
+        return FIXED_HEADER_LENGTH + 2 * digits;
+    }
+
+    /**
+     * Header length of chunk {@code index}, counting the payload checksum whether or not
+     * the chunk turns out to be the last.
+     */
+    static int headerLength(int index, long byteOffset) {
+        return FIXED_HEADER_LENGTH + Integer.toString(index).length() + Long.toString(byteOffset).length();
+    }
+
+    @Override
+    public int getCount() {
+        return bounds.length - 1;
+    }
+
+    /**
+     * Index of the chunk holding character {@code offset} of the source text. Packed
+     * payloads have no such mapping, so the offset is scaled to the packed length.
+     */
+    public int chunkAt(int offset, int textLength) {
+        int position;
+        if (packed != null) {
+            position = textLength == 0 ? 0 : (int) ((long) offset * packed.length / textLength);
+        } else {
+            position = offset;
+        }
+        int index = Arrays.binarySearch(bounds, position);
+        if (index < 0) index = -index - 2;
+        return Math.max(0, Math.min(getCount() - 1, index));
+    }
+
+    public int getPayloadId() {
+        return payloadId;
+    }
+
+    public String getPayloadIdHex() {
+        return String.format(Locale.ROOT, "%08X", payloadId);
+    }
+
+    @Override
+    public String getFrame(int index) {
+        if (packed != null) {
+            int offset = byteOffsets[index];
+            int length = byteOffsets[index + 1] - offset;
+            StringBuilder sb = new StringBuilder(header(index, ChunkFrame.crc32(packed, offset, length)));
+            Base45.appendTo(sb, packed, offset, length);
+            return sb.toString();
+        }
+
+        String data = content.substring(bounds[index], bounds[index + 1]);
+        if (getCount() == 1 && !isReserved(content)) {
+            return data;
+        }
+        return header(index, ChunkFrame.crc32(data.getBytes(StandardCharsets.UTF_8))) + data;
+    }
+
+    private String header(int index, int crc) {
+        boolean last = index == getCount() - 1;
+        return header(flags, payloadId, index, byteOffsets[index], crc, last ? payloadCrc() : NO_PAYLOAD_CRC);
+    }
+
+    private synchronized long payloadCrc() {
+        if (payloadCrc == NO_PAYLOAD_CRC) {
+            CRC32 crc = new CRC32();
+            crc.update(packed != null ? packed : content.getBytes(StandardCharsets.UTF_8));
+            payloadCrc = crc.getValue();
+        }
+        return payloadCrc;
+    }
+
+    /**
+     * @param payloadCrc checksum of the whole payload for the last frame, otherwise
+     *                   {@link #NO_PAYLOAD_CRC}
+     */
+    static String header(int flags, int payloadId, int index, long byteOffset, int crc, long payloadCrc) {
+        return String.format(Locale.ROOT, "%s%d:%08X:%d:%d:%08X:%s:",
+                PREFIX, flags, payloadId, index, byteOffset, crc,
+                payloadCrc == NO_PAYLOAD_CRC ? "" : String.format(Locale.ROOT, "%08X", payloadCrc));
+    }
+}
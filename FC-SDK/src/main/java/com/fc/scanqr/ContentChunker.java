@@ -0,0 +1,101 @@
+package com.fc.scanqr;
+
+import java.util.Arrays;
+
+/**
+ * Splits text into chunks whose UTF-8 encoding fits a byte budget.
+ * <p>
+ * UTF-8 widths are computed inline in a single pass, surrogate pairs are never
+ * split, and the result is a list of char offsets rather than copied substrings.
+ */
+public final class ContentChunker {
+
+    private ContentChunker() {}
+
+    /**
+     * Returns chunk boundaries as char offsets: {@code [0, end1, end2, ..., length]}.
+     * Chunk {@code i} spans {@code [bounds[i], bounds[i + 1])}; empty content yields
+     * no chunks. A code point wider than {@code maxBytes} is still emitted on its own.
+     */
+    public static int[] split(CharSequence content, int maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        int length = content.length();
+        int[] bounds = new int[Math.max(2, length / Math.max(1, maxBytes / 3) + 2)];
+        int count = 1;
+        int start = 0;
+        while (start < length) {
+            start = chunkEnd(content, start, maxBytes);
+            if (count == bounds.length) {
+                bounds = Arrays.copyOf(bounds, count * 2);
+            }
+            bounds[count++] = start;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Returns the end of the longest chunk starting at {@code start} whose UTF-8
+     * encoding fits {@code maxBytes}, and at least one code point.
+     */
+    public static int chunkEnd(CharSequence content, int start, int maxBytes) {
+        int length = content.length();
+        int chunkBytes = 0;
+        int i = start;
+        while (i < length) {
+            char c = content.charAt(i);
+            int chars = 1;
+            int bytes;
+            if (c < 0x80) {
+                bytes = 1;
+            } else if (c < 0x800) {
+                bytes = 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(content.charAt(i + 1))) {
+                bytes = 4;
+                chars = 2;
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are replaced by '?' when encoded
+                bytes = 1;
+            } else {
+                bytes = 3;
+            }
+
+            if (chunkBytes + bytes > maxBytes && chunkBytes > 0) {
+                return i;
+            }
+            chunkBytes += bytes;
+            i += chars;
+        }
+        return length;
+    }
+
+    /**
+     * Number of bytes {@code content[start, end)} occupies when encoded as UTF-8.
+     */
+    public static int utf8Length(CharSequence content, int start, int end) {
+        int bytes = 0;
+        for (int i = start; i < end; i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(content.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes += 1;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    public static int utf8Length(CharSequence content) {
+        return utf8Length(content, 0, content.length());
+    }
+}
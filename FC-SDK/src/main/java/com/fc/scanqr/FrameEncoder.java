@@ -0,0 +1,66 @@
+package com.fc.scanqr;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Encodes frames into module-resolution matrices with fixed hints, going through a
+ * {@link MatrixCache} when one is given. Thread-safe.
+ */
+public class FrameEncoder {
+    private final Map<EncodeHintType, ?> hints;
+    private final MatrixCache cache;
+
+    /**
+     * @param cache where to look up and keep encoded matrices, or null
+     */
+    public FrameEncoder(Map<EncodeHintType, ?> hints, MatrixCache cache) {
+        this.hints = hints;
+        this.cache = cache;
+    }
+
+    public BitMatrix encode(String frame) throws WriterException {
+        BitMatrix matrix = cache != null ? cache.get(frame, hints) : null;
+        if (matrix == null) {
+            matrix = new MultiFormatWriter().encode(frame, BarcodeFormat.QR_CODE, 0, 0, hints);
+            if (cache != null) cache.put(frame, hints, matrix);
+        }
+        return matrix;
+    }
+
+    /**
+     * Encodes the frames of {@code source} one at a time as the iterator advances.
+     * {@link Iterator#next} throws {@link IllegalStateException} if a frame does not fit.
+     */
+    public Iterator<BitMatrix> encode(FrameSource source) {
+        return new Iterator<BitMatrix>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < source.getCount();
+            }
+
+            @Override
+            public BitMatrix next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return encodeOrThrow(source.getFrame(next++));
+            }
+        };
+    }
+
+    BitMatrix encodeOrThrow(String frame) {
+        try {
+            return encode(frame);
+        } catch (WriterException e) {
+            throw new IllegalStateException("Frame does not fit a QR code", e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.fc.scanqr;
+
+/**
+ * Frames to encode, one QR code each. {@link #getFrame} may be called from several
+ * threads at once.
+ */
+public interface FrameSource {
+    int getCount();
+
+    String getFrame(int index);
+}
@@ -0,0 +1,196 @@
+package com.fc.scanqr;
+
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encoded matrices keyed by a SHA-256 of the frame text and the encode hints, so the
+ * same frame is never encoded twice. Thread-safe.
+ * <p>
+ * Matrices are kept as ZXing's packed bit rows in an LRU bounded by their size in
+ * bytes. With a directory they are also written there, one small file per key, so
+ * codes made before a restart come back without encoding; the directory is trimmed to
+ * {@link #MAX_DISK_BYTES}, least recently used files first.
+ */
+public class MatrixCache {
+    static final long MAX_DISK_BYTES = 8L * 1024 * 1024;
+    private static final int FILE_MAGIC = 0x51524D31;  // "QRM1"
+    private static final int PUTS_PER_TRIM = 64;
+    private static final String SUFFIX = ".qrm";
+
+    private final LinkedHashMap<String, BitMatrix> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxBytes;
+    private final File directory;
+    private long bytes;  // guarded by entries
+    private int putsSinceTrim;  // guarded by this
+
+    /**
+     * @param maxBytes  memory budget for cached matrices
+     * @param directory where to persist matrices, or null to keep them in memory only
+     */
+    public MatrixCache(long maxBytes, File directory) {
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+    }
+
+    static int sizeOf(BitMatrix matrix) {
+        return 64 + matrix.getRowSize() * matrix.getHeight() * 4;
+    }
+
+    public BitMatrix get(String frame, Map<EncodeHintType, ?> hints) {
+        String key = key(frame, hints);
+        BitMatrix matrix;
+        synchronized (entries) {
+            matrix = entries.get(key);
+        }
+        if (matrix == null && directory != null) {
+            matrix = read(file(key));
+            if (matrix != null) remember(key, matrix);
+        }
+        return matrix;
+    }
+
+    public void put(String frame, Map<EncodeHintType, ?> hints, BitMatrix matrix) {
+        String key = key(frame, hints);
+        remember(key, matrix);
+        if (directory != null) {
+            write(file(key), matrix);
+            boolean trim;
+            synchronized (this) {
+                trim = ++putsSinceTrim >= PUTS_PER_TRIM;
+                if (trim) putsSinceTrim = 0;
+            }
+            if (trim) trim(MAX_DISK_BYTES);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            bytes = 0;
+        }
+        if (directory != null) trim(0);
+    }
+
+    private void remember(String key, BitMatrix matrix) {
+        synchronized (entries) {
+            BitMatrix previous = entries.put(key, matrix);
+            if (previous != null) bytes -= sizeOf(previous);
+            bytes += sizeOf(matrix);
+            Iterator<BitMatrix> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= sizeOf(eldest.next());
+                eldest.remove();
+            }
+        }
+    }
+
+    static String key(String frame, Map<EncodeHintType, ?> hints) {
+        StringBuilder sb = new StringBuilder();
+        for (EncodeHintType type : EncodeHintType.values()) {
+            Object value = hints.get(type);
+            if (value != null) sb.append(type.name()).append('=').append(value).append('\n');
+        }
+        sb.append('\n').append(frame);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = Character.forDigit((digest[i] >> 4) & 0xF, 16);
+                hex[2 * i + 1] = Character.forDigit(digest[i] & 0xF, 16);
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private File file(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    private static BitMatrix read(File file) {
+        if (!file.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) throw new IOException("Bad magic");
+            int width = in.readInt();
+            int height = in.readInt();
+            BitMatrix matrix = new BitMatrix(width, height);
+            BitArray row = new BitArray(width);
+            for (int y = 0; y < height; y++) {
+                for (int i = 0; i < width; i += 32) {
+                    row.setBulk(i, in.readInt());
+                }
+                matrix.setRow(y, row);
+            }
+            // Mark as recently used for trimming
+            file.setLastModified(System.currentTimeMillis());
+            return matrix;
+        } catch (IOException | IllegalArgumentException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    private void write(File file, BitMatrix matrix) {
+        if (!directory.isDirectory() && !directory.mkdirs()) return;
+        File temp = new File(directory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(matrix.getWidth());
+            out.writeInt(matrix.getHeight());
+            BitArray row = new BitArray(matrix.getWidth());
+            for (int y = 0; y < matrix.getHeight(); y++) {
+                for (int word : matrix.getRow(y, row).getBitArray()) {
+                    out.writeInt(word);
+                }
+            }
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) temp.delete();
+    }
+
+    /**
+     * Deletes the least recently used files until the directory holds at most
+     * {@code maxBytes}.
+     */
+    synchronized void trim(long maxBytes) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) return;
+        long[] modified = new long[files.length];
+        long total = 0;
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            total += files[i].length();
+        }
+        if (total <= maxBytes) return;
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(modified[a], modified[b]));
+        for (int i = 0; i < order.length && total > maxBytes; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) total -= length;
+        }
+    }
+}
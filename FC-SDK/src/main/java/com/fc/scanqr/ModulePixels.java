@@ -0,0 +1,60 @@
+package com.fc.scanqr;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Expands a module-resolution {@link BitMatrix} into ARGB pixels with {@code scale}
+ * pixels per module, ready for {@code Bitmap.setPixels} or an AWT image.
+ * <p>
+ * Rows are read in bulk with {@link BitMatrix#getRow} and expanded word by word; the row
+ * and pixel buffers are kept between calls, so an instance is not thread-safe.
+ */
+public class ModulePixels {
+    public static final int BLACK = 0xFF000000;
+    public static final int WHITE = 0xFFFFFFFF;
+
+    private BitArray rowBits = new BitArray(1);
+    private int[] pixels = new int[0];
+
+    /**
+     * Expands {@code bitMatrix} into the reusable pixel buffer and returns it. Only the
+     * first {@code width * scale * height * scale} entries are valid.
+     */
+    public int[] fill(BitMatrix bitMatrix, int scale) {
+        int matrixWidth = bitMatrix.getWidth();
+        int matrixHeight = bitMatrix.getHeight();
+        int width = matrixWidth * scale;
+        int size = width * matrixHeight * scale;
+        if (pixels.length < size) {
+            pixels = new int[size];
+        }
+
+        int offset = 0;
+        for (int y = 0; y < matrixHeight; y++) {
+            rowBits = bitMatrix.getRow(y, rowBits);
+            fillRow(rowBits.getBitArray(), matrixWidth, scale, pixels, offset);
+            // Repeat the expanded row for the remaining pixel rows of this module row
+            for (int i = 1; i < scale; i++) {
+                System.arraycopy(pixels, offset, pixels, offset + i * width, width);
+            }
+            offset += width * scale;
+        }
+        return pixels;
+    }
+
+    static void fillRow(int[] words, int modules, int scale, int[] out, int offset) {
+        int x = 0;
+        for (int w = 0; x < modules; w++) {
+            int word = words[w];
+            int end = Math.min(modules, x + 32);
+            for (; x < end; x++) {
+                int color = (word & 1) != 0 ? BLACK : WHITE;
+                word >>>= 1;
+                for (int i = 0; i < scale; i++) {
+                    out[offset++] = color;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.fc.scanqr;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Packs text into fewer bytes before it is chunked. Hex and base64 text is stored as the
+ * raw bytes it encodes, and the result is deflated when that makes it smaller. The
+ * {@code flags} field of the chunk header records what was done so the scanner can undo it:
+ * <pre>
+ *   bit 0     raw deflate
+ *   bits 1-2  source format: UTF-8 text, lowercase hex, uppercase hex or base64
+ * </pre>
+ * Flags 0 is plain UTF-8, the format of frames written before packing existed.
+ */
+public final class PayloadCodec {
+    static final int FLAG_DEFLATE = 1;
+    static final int FORMAT_TEXT = 0;
+    static final int FORMAT_HEX_LOWER = 1;
+    static final int FORMAT_HEX_UPPER = 2;
+    static final int FORMAT_BASE64 = 3;
+    static final int MAX_FLAGS = 7;
+    /** Input deflated as one segment; see {@link #deflate}. */
+    static final int SEGMENT_BYTES = 4096;
+    /** How far back deflate can refer, and so how much earlier input a segment sees. */
+    private static final int DEFLATE_WINDOW = 32 * 1024;
+    /** An empty final block, which ends a raw deflate stream on a byte boundary. */
+    private static final byte[] FINAL_BLOCK = {0x03, 0x00};
+
+    private static final String BASE64_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    private static final int[] BASE64_DECODE = new int[128];
+
+    static {
+        Arrays.fill(BASE64_DECODE, -1);
+        for (int i = 0; i < BASE64_ALPHABET.length(); i++) {
+            BASE64_DECODE[BASE64_ALPHABET.charAt(i)] = i;
+        }
+    }
+
+    public static final class Packed {
+        private final byte[] bytes;
+        private final int flags;
+        /** Deflated input, and where each of its segments ends in {@code bytes}; null unless deflated. */
+        final byte[] raw;
+        final int[] segmentEnds;
+
+        Packed(byte[] bytes, int flags) {
+            this(bytes, flags, null, null);
+        }
+
+        Packed(byte[] bytes, int flags, byte[] raw, int[] segmentEnds) {
+            this.bytes = bytes;
+            this.flags = flags;
+            this.raw = raw;
+            this.segmentEnds = segmentEnds;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public int getFlags() {
+            return flags;
+        }
+    }
+
+    private PayloadCodec() {}
+
+    /**
+     * Returns the packed form of {@code content}, or null if packing does not make it
+     * smaller than its UTF-8 bytes.
+     */
+    public static Packed pack(String content) {
+        return pack(content, null);
+    }
+
+    /**
+     * Packs {@code content} like {@link #pack(String)}, deflating only from the segment
+     * where it first differs from the input of {@code previous}; the segments before
+     * that are copied, since they come out the same.
+     *
+     * @param previous an earlier result for the same document, or null
+     */
+    public static Packed pack(String content, Packed previous) {
+        int format;
+        byte[] raw;
+        if ((raw = decodeHex(content)) != null) {
+            format = Character.isUpperCase(firstLetter(content)) ? FORMAT_HEX_UPPER : FORMAT_HEX_LOWER;
+        } else if ((raw = decodeBase64(content)) != null) {
+            format = FORMAT_BASE64;
+        } else {
+            raw = content.getBytes(StandardCharsets.UTF_8);
+            format = FORMAT_TEXT;
+        }
+
+        int[] segmentEnds = new int[segmentCount(raw.length)];
+        int reused = 0;
+        if (previous != null && previous.raw != null && previous.flags >> 1 == format) {
+            reused = mismatch(previous.raw, raw) / SEGMENT_BYTES;
+            System.arraycopy(previous.segmentEnds, 0, segmentEnds, 0, reused);
+        }
+        byte[] deflated = deflate(raw, segmentEnds, reused > 0 ? previous.bytes : null, reused);
+        boolean useDeflate = deflated.length < raw.length;
+        byte[] bytes = useDeflate ? deflated : raw;
+        int flags = format << 1 | (useDeflate ? FLAG_DEFLATE : 0);
+        if (flags == 0 || bytes.length >= ContentChunker.utf8Length(content)) {
+            return null;
+        }
+        return useDeflate ? new Packed(bytes, flags, raw, segmentEnds) : new Packed(bytes, flags);
+    }
+
+    /**
+     * Restores the text packed with {@code flags}.
+     *
+     * @throws IllegalArgumentException if the flags are unknown or the data is corrupt
+     */
+    public static String unpack(byte[] bytes, int flags) {
+        if (flags < 0 || flags > MAX_FLAGS) {
+            throw new IllegalArgumentException("Unknown payload flags: " + flags);
+        }
+        byte[] raw = (flags & FLAG_DEFLATE) != 0 ? inflate(bytes) : bytes;
+        switch (flags >> 1) {
+            case FORMAT_HEX_LOWER:
+                return encodeHex(raw, "0123456789abcdef");
+            case FORMAT_HEX_UPPER:
+                return encodeHex(raw, "0123456789ABCDEF");
+            case FORMAT_BASE64:
+                return encodeBase64(raw);
+            default:
+                return new String(raw, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Deflates {@code data} as a raw deflate stream cut into segments of
+     * {@link #SEGMENT_BYTES} input bytes. Each segment starts afresh with the input
+     * before it as a preset dictionary and ends on a byte boundary, so the stream up to
+     * the end of a segment depends on nothing after it: when text is edited, the bytes
+     * before the edited segment, and the frames carrying them, stay the same.
+     */
+    static byte[] deflate(byte[] data) {
+        return deflate(data, new int[segmentCount(data.length)], null, 0);
+    }
+
+    /**
+     * Deflates {@code data} as {@link #deflate(byte[])} does and records where each
+     * segment ends in {@code segmentEnds}. The first {@code reused} segments are copied
+     * from {@code previous}, where they end at the first entries of {@code segmentEnds}.
+     */
+    private static byte[] deflate(byte[] data, int[] segmentEnds, byte[] previous, int reused) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            if (reused > 0) {
+                out.write(previous, 0, segmentEnds[reused - 1]);
+            }
+            byte[] buffer = new byte[8192];
+            for (int segment = reused; segment < segmentEnds.length; segment++) {
+                int start = segment * SEGMENT_BYTES;
+                deflater.reset();
+                int window = Math.min(start, DEFLATE_WINDOW);
+                if (window > 0) {
+                    deflater.setDictionary(data, start - window, window);
+                }
+                deflater.setInput(data, start, Math.min(SEGMENT_BYTES, data.length - start));
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    out.write(buffer, 0, n);
+                } while (n == buffer.length);
+                segmentEnds[segment] = out.size();
+            }
+            out.write(FINAL_BLOCK, 0, FINAL_BLOCK.length);
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static int segmentCount(int length) {
+        return (length + SEGMENT_BYTES - 1) / SEGMENT_BYTES;
+    }
+
+    /**
+     * Index of the first byte in which {@code a} and {@code b} differ, or the length of
+     * the shorter one if it is a prefix of the other.
+     */
+    static int mismatch(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) return i;
+        }
+        return length;
+    }
+
+    static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated deflate data");
+                }
+                out.write(buffer, 0, n);
+                if (out.size() > ChunkAssembler.MAX_PAYLOAD_BYTES) {
+                    throw new IllegalArgumentException("Inflated payload too large");
+                }
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt deflate data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Decodes even-length hex in a single letter case, or returns null, so that
+     * re-encoding gives back exactly {@code text}.
+     */
+    static byte[] decodeHex(String text) {
+        int length = text.length();
+        if (length == 0 || length % 2 != 0) {
+            return null;
+        }
+        boolean upper = Character.isUpperCase(firstLetter(text));
+        byte[] out = new byte[length / 2];
+        for (int i = 0; i < length; i += 2) {
+            int high = hexDigit(text.charAt(i), upper);
+            int low = hexDigit(text.charAt(i + 1), upper);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            out[i / 2] = (byte) (high << 4 | low);
+        }
+        return out;
+    }
+
+    /**
+     * Decodes padded standard base64 without line breaks, or returns null, so that
+     * re-encoding gives back exactly {@code text}.
+     */
+    static byte[] decodeBase64(String text) {
+        int length = text.length();
+        if (length == 0 || length % 4 != 0) {
+            return null;
+        }
+        int padding = text.charAt(length - 1) == '=' ? (text.charAt(length - 2) == '=' ? 2 : 1) : 0;
+        byte[] out = new byte[length / 4 * 3 - padding];
+        int o = 0;
+        for (int i = 0; i < length; i += 4) {
+            int n = 0;
+            for (int j = 0; j < 4; j++) {
+                char c = text.charAt(i + j);
+                int d = c < 128 ? BASE64_DECODE[c] : -1;
+                if (d < 0) {
+                    // Only the final padding may be outside the alphabet
+                    if (c != '=' || i + j < length - padding) return null;
+                    d = 0;
+                }
+                n = n << 6 | d;
+            }
+            out[o++] = (byte) (n >> 16);
+            if (o < out.length) out[o++] = (byte) (n >> 8);
+            if (o < out.length) out[o++] = (byte) n;
+        }
+        // Reject non-zero bits under the padding, which would not survive re-encoding
+        return encodeBase64(out).equals(text) ? out : null;
+    }
+
+    static String encodeBase64(byte[] data) {
+        StringBuilder sb = new StringBuilder((data.length + 2) / 3 * 4);
+        for (int i = 0; i < data.length; i += 3) {
+            int remaining = Math.min(3, data.length - i);
+            int n = (data[i] & 0xFF) << 16;
+            if (remaining > 1) n |= (data[i + 1] & 0xFF) << 8;
+            if (remaining > 2) n |= data[i + 2] & 0xFF;
+            sb.append(BASE64_ALPHABET.charAt(n >> 18 & 63));
+            sb.append(BASE64_ALPHABET.charAt(n >> 12 & 63));
+            sb.append(remaining > 1 ? BASE64_ALPHABET.charAt(n >> 6 & 63) : '=');
+            sb.append(remaining > 2 ? BASE64_ALPHABET.charAt(n & 63) : '=');
+        }
+        return sb.toString();
+    }
+
+    private static String encodeHex(byte[] data, String digits) {
+        char[] out = new char[data.length * 2];
+        for (int i = 0; i < data.length; i++) {
+            out[2 * i] = digits.charAt((data[i] >> 4) & 0xF);
+            out[2 * i + 1] = digits.charAt(data[i] & 0xF);
+        }
+        return new String(out);
+    }
+
+    private static int hexDigit(char c, boolean upper) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (upper && c >= 'A' && c <= 'F') return c - 'A' + 10;
+        if (!upper && c >= 'a' && c <= 'f') return c - 'a' + 10;
+        return -1;
+    }
+
+    private static char firstLetter(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLetter(text.charAt(i))) return text.charAt(i);
+        }
+        return 'a';
+    }
+}
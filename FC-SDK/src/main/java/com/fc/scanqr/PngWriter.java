@@ -0,0 +1,114 @@
+package com.fc.scanqr;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a module-resolution {@link BitMatrix} as a 1-bit grayscale PNG with
+ * {@code scale} pixels per module, without going through a bitmap. A module row is
+ * filtered once; the pixel rows repeating it use the Up filter, which makes them all
+ * zeros and nearly free to compress.
+ */
+public final class PngWriter {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_UP = 2;
+
+    private PngWriter() {}
+
+    public static byte[] encode(BitMatrix bitMatrix, int scale) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(bitMatrix, scale, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static void write(BitMatrix bitMatrix, int scale, OutputStream out) throws IOException {
+        if (scale < 1) {
+            throw new IllegalArgumentException("Scale must be positive: " + scale);
+        }
+        int width = bitMatrix.getWidth() * scale;
+        int height = bitMatrix.getHeight() * scale;
+
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 1;  // bit depth
+        header[9] = 0;  // grayscale
+        out.write(SIGNATURE);
+        writeChunk(out, "IHDR", header, header.length);
+
+        int rowBytes = (width + 7) / 8;
+        byte[] row = new byte[rowBytes];
+        byte[] upRow = new byte[rowBytes + 1];
+        upRow[0] = FILTER_UP;
+        ByteArrayOutputStream idat = new ByteArrayOutputStream(rowBytes);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try (DeflaterOutputStream deflated = new DeflaterOutputStream(idat, deflater, 8192)) {
+            BitArray rowBits = new BitArray(bitMatrix.getWidth());
+            for (int y = 0; y < bitMatrix.getHeight(); y++) {
+                rowBits = bitMatrix.getRow(y, rowBits);
+                packRow(rowBits, bitMatrix.getWidth(), scale, row);
+                deflated.write(FILTER_NONE);
+                deflated.write(row);
+                for (int i = 1; i < scale; i++) {
+                    deflated.write(upRow);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        writeChunk(out, "IDAT", idat.toByteArray(), idat.size());
+        writeChunk(out, "IEND", new byte[0], 0);
+    }
+
+    /**
+     * Packs one module row into 1-bit pixels, most significant bit first. Dark modules
+     * are 0 and light ones 1, as grayscale PNG expects.
+     */
+    static void packRow(BitArray rowBits, int modules, int scale, byte[] out) {
+        Arrays.fill(out, (byte) 0);
+        int pixel = 0;
+        for (int x = 0; x < modules; x++) {
+            boolean light = !rowBits.get(x);
+            for (int i = 0; i < scale; i++, pixel++) {
+                if (light) {
+                    out[pixel >> 3] |= (byte) (0x80 >>> (pixel & 7));
+                }
+            }
+        }
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] word = new byte[4];
+        putInt(word, 0, length);
+        out.write(word);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        putInt(word, 0, (int) crc.getValue());
+        out.write(word);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,78 @@
+package com.fc.scanqr;
+
+import com.google.zxing.EncodeHintType;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The frames and encoding hints for a payload at a density profile, as shown by both
+ * the Make dialog and the live preview.
+ */
+public final class PreparedPayload {
+    private final ChunkedPayload payload;
+    private final CapacityPlanner.Plan plan;
+    /** Packed form of the content whether or not the frames use it, kept for the next edit. */
+    private final PayloadCodec.Packed packed;
+    private final Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+
+    private PreparedPayload(ChunkedPayload payload, CapacityPlanner.Plan plan, PayloadCodec.Packed packed) {
+        this.payload = payload;
+        this.plan = plan;
+        this.packed = packed;
+        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+        hints.put(EncodeHintType.ERROR_CORRECTION, plan.getErrorCorrectionLevel());
+        hints.put(EncodeHintType.MARGIN, 2);
+    }
+
+    /**
+     * Splits {@code content} into as few frames as {@code profile} allows, headers
+     * included. Payloads that need several frames anyway are packed when that saves
+     * frames; single codes stay plain so any scanner can read them.
+     *
+     * @param payloadId keep it while the same document is edited, so that frames before
+     *                  the edit stay the same
+     */
+    public static PreparedPayload prepare(String content, CapacityPlanner.Profile profile, int payloadId) {
+        return prepare(content, profile, payloadId, null);
+    }
+
+    /**
+     * Prepares {@code content} like {@link #prepare(String, CapacityPlanner.Profile, int)}
+     * with the same frames, but starting from {@code previous}: deflate segments and
+     * chunks before the first change are kept, so an edit costs work from the edited
+     * chunk onwards only.
+     *
+     * @param previous the payload prepared before the edit, or null
+     */
+    public static PreparedPayload prepare(String content, CapacityPlanner.Profile profile, int payloadId,
+                                          PreparedPayload previous) {
+        CapacityPlanner.Plan plan = CapacityPlanner.plan(content, profile);
+        PayloadCodec.Packed packed = null;
+        if (plan.getFrameCount() > 1) {
+            packed = PayloadCodec.pack(content, previous != null ? previous.packed : null);
+        }
+        ChunkedPayload last = previous != null ? previous.payload : null;
+        if (packed != null) {
+            CapacityPlanner.Plan packedPlan = CapacityPlanner.plan(packed, profile);
+            ChunkedPayload payload = ChunkedPayload.split(packed, packedPlan.getMaxFrameBytes(), payloadId, last);
+            if (payload.getCount() < plan.getFrameCount()) {
+                return new PreparedPayload(payload, packedPlan, packed);
+            }
+        }
+        return new PreparedPayload(ChunkedPayload.split(content, plan.getMaxFrameBytes(), payloadId, last), plan,
+                packed);
+    }
+
+    public ChunkedPayload getPayload() {
+        return payload;
+    }
+
+    public CapacityPlanner.Plan getPlan() {
+        return plan;
+    }
+
+    public Map<EncodeHintType, Object> getHints() {
+        return hints;
+    }
+}
@@ -0,0 +1,120 @@
+package com.fc.scanqr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the chunks of one payload straight to a file as their frames arrive, in any
+ * order, so payloads of any size are reassembled without holding them in memory. Only
+ * a bit per frame is kept to spot duplicates.
+ * <p>
+ * Accepts frames whose chunks are the payload bytes themselves: plain text and
+ * {@link QRStreamEncoder} frames. Deflated and hex payloads have to be unpacked as a
+ * whole and are left to {@link ChunkAssembler}. The first valid frame fixes the
+ * payload; frames of another payload are rejected. Once every chunk is in, the file is
+ * read back once to check it against the last frame's checksum; if that fails the
+ * payload is dropped and the next frame starts over. Not thread-safe.
+ */
+public class QRStreamDecoder {
+    private static final int VERIFY_BUFFER_BYTES = 64 * 1024;
+
+    private final FileChannel out;
+    private int payloadId;
+    private int flags;
+    private int total;
+    private long totalBytes = -1;
+    private long payloadCrc;
+    private BitSet received;
+    private int receivedCount;
+
+    /**
+     * @param out file to write the payload to, open for reading and writing
+     */
+    public QRStreamDecoder(FileChannel out) {
+        this.out = out;
+    }
+
+    public ChunkAssembler.Status add(String frame) throws IOException {
+        ChunkFrame chunk = ChunkFrame.parse(frame);
+        if (chunk == null || (chunk.flags != ChunkedPayload.FLAG_TEXT && chunk.flags != QRStreamEncoder.FLAGS)) {
+            return ChunkAssembler.Status.INVALID;
+        }
+        if (received == null) {
+            payloadId = chunk.payloadId;
+            flags = chunk.flags;
+            total = 0;
+            totalBytes = -1;
+            received = new BitSet();
+            receivedCount = 0;
+        } else if (chunk.payloadId != payloadId || chunk.flags != flags
+                || !chunk.fits(received, total, totalBytes)) {
+            return ChunkAssembler.Status.INVALID;
+        }
+        if (received.get(chunk.index)) {
+            return isComplete() ? ChunkAssembler.Status.COMPLETE : ChunkAssembler.Status.DUPLICATE;
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(chunk.data);
+        long position = chunk.byteOffset;
+        while (data.hasRemaining()) {
+            position += out.write(data, position);
+        }
+        received.set(chunk.index);
+        receivedCount++;
+        if (chunk.isLast()) {
+            total = chunk.index + 1;
+            totalBytes = chunk.end();
+            payloadCrc = chunk.payloadCrc;
+        }
+        if (!isComplete()) {
+            return ChunkAssembler.Status.ACCEPTED;
+        }
+        // Drop anything an existing file had past the end
+        out.truncate(totalBytes);
+        if (crc32(totalBytes) != payloadCrc) {
+            received = null;
+            return ChunkAssembler.Status.INVALID;
+        }
+        return ChunkAssembler.Status.COMPLETE;
+    }
+
+    private long crc32(long length) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] bytes = new byte[VERIFY_BUFFER_BYTES];
+        long position = 0;
+        while (position < length) {
+            int n = out.read(ByteBuffer.wrap(bytes, 0, (int) Math.min(bytes.length, length - position)), position);
+            if (n < 0) {
+                break;
+            }
+            crc.update(bytes, 0, n);
+            position += n;
+        }
+        return crc.getValue();
+    }
+
+    public boolean isComplete() {
+        return received != null && total > 0 && receivedCount == total;
+    }
+
+    public int getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * Returns the number of chunks, or 0 until the last frame has been received.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the payload size, or -1 until the last frame has been received.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+}
@@ -0,0 +1,172 @@
+package com.fc.scanqr;
+
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.common.BitMatrix;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * Turns a byte stream into QR frames, reading one chunk at a time, so inputs of any
+ * size are encoded in constant memory. The length need not be known: a byte is read
+ * past each full chunk to tell whether it is the last, so pipes, standard input and
+ * network bodies work as well as files.
+ * <p>
+ * Frames use the {@link ChunkedPayload} header with the base64 source format: chunks
+ * are raw bytes in Base45, readable by {@link QRStreamDecoder} for any length and by
+ * {@link ChunkAssembler}, which shows them as base64, while they fit in memory. The
+ * payload id cannot be a hash of content not yet read, so callers that re-encode the
+ * same input pick their own. The checksum of the whole stream, which the last frame
+ * carries, is computed as the chunks are read.
+ * <p>
+ * {@link #frames} yields frame text and {@link #next} the encoded matrix; use one or the
+ * other. Read errors surface as {@link UncheckedIOException}. Not thread-safe.
+ */
+public class QRStreamEncoder implements Iterator<BitMatrix>, Closeable {
+    static final int FLAGS = PayloadCodec.FORMAT_BASE64 << 1;
+    private static final long UNKNOWN_LENGTH = -1;
+
+    private final InputStream in;
+    private final long length;
+    private final int payloadId;
+    private final int maxFrameChars;
+    private final byte[] chunk;
+    private final Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+    private final FrameEncoder encoder;
+    private final CRC32 payloadCrc = new CRC32();
+    private int index;
+    private long offset;
+    /** First byte of the next chunk, read to find out whether the current one is the last. */
+    private int ahead = -1;
+    private boolean done;
+
+    /**
+     * Encodes a stream of unknown length, in the largest symbols {@code profile} allows.
+     */
+    public QRStreamEncoder(InputStream in, int payloadId, CapacityPlanner.Profile profile) {
+        this(in, UNKNOWN_LENGTH, payloadId, CapacityPlanner.planStream(profile));
+    }
+
+    /**
+     * Encodes a stream of {@code length} bytes, in symbols no larger than that needs.
+     * A stream that turns out shorter or longer fails.
+     */
+    public QRStreamEncoder(InputStream in, long length, int payloadId, CapacityPlanner.Profile profile) {
+        this(in, checkLength(length), payloadId, CapacityPlanner.planBinary(length, profile));
+    }
+
+    private QRStreamEncoder(InputStream in, long length, int payloadId, CapacityPlanner.Plan plan) {
+        this.in = in;
+        this.length = length;
+        this.payloadId = payloadId;
+        this.maxFrameChars = plan.getMaxFrameBytes();
+        // The header only grows, so the first chunk is the largest
+        this.chunk = new byte[ChunkedPayload.binaryChunkBytes(maxFrameChars, 0, 0)];
+        hints.put(EncodeHintType.ERROR_CORRECTION, plan.getErrorCorrectionLevel());
+        hints.put(EncodeHintType.MARGIN, 2);
+        this.encoder = new FrameEncoder(hints, null);
+    }
+
+    private static long checkLength(long length) {
+        if (length < 0) throw new IllegalArgumentException("Negative length: " + length);
+        return length;
+    }
+
+    /**
+     * Hints the frames are encoded with, for sinks that encode {@link #frames} themselves.
+     */
+    public Map<EncodeHintType, Object> getHints() {
+        return Collections.unmodifiableMap(hints);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !done;
+    }
+
+    @Override
+    public BitMatrix next() {
+        return encoder.encodeOrThrow(nextFrame());
+    }
+
+    /**
+     * The frames as text, for sinks that print, transmit or encode them some other way.
+     */
+    public Iterator<String> frames() {
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return QRStreamEncoder.this.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return nextFrame();
+            }
+        };
+    }
+
+    private String nextFrame() {
+        if (!hasNext()) throw new NoSuchElementException();
+        int capacity = ChunkedPayload.binaryChunkBytes(maxFrameChars, index, offset);
+        int size = 0;
+        boolean last;
+        try {
+            if (ahead >= 0) {
+                chunk[size++] = (byte) ahead;
+                ahead = -1;
+            }
+            size = readFully(size, capacity);
+            last = size < capacity || (ahead = in.read()) < 0;
+            checkLength(offset + size, last);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        payloadCrc.update(chunk, 0, size);
+        StringBuilder sb = new StringBuilder(ChunkedPayload.header(FLAGS, payloadId, index, offset,
+                ChunkFrame.crc32(chunk, 0, size), last ? payloadCrc.getValue() : ChunkedPayload.NO_PAYLOAD_CRC));
+        Base45.appendTo(sb, chunk, 0, size);
+        index++;
+        offset += size;
+        done = last;
+        return sb.toString();
+    }
+
+    /**
+     * Reads into {@code chunk} from {@code size} until it holds {@code capacity} bytes
+     * or the stream ends, and returns how many it holds.
+     */
+    private int readFully(int size, int capacity) throws IOException {
+        while (size < capacity) {
+            int n = in.read(chunk, size, capacity - size);
+            if (n < 0) break;
+            size += n;
+        }
+        return size;
+    }
+
+    private void checkLength(long end, boolean last) throws IOException {
+        if (length == UNKNOWN_LENGTH) return;
+        if (last && end < length) {
+            throw new EOFException("Stream ended at " + end + " of " + length + " bytes");
+        }
+        if (end > length || (!last && end == length)) {
+            throw new IOException("Stream is longer than " + length + " bytes");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
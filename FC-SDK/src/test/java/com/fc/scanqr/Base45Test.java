@@ -0,0 +1,26 @@
+package com.fc.scanqr;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Base45Test {
+
+    @Test
+    public void roundTrip() {
+        Random random = new Random(3);
+        for (int length = 0; length < 64; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            String text = Base45.encode(data);
+            assertEquals(Base45.encodedLength(length), text.length());
+            assertArrayEquals(data, Base45.decode(text));
+        }
+        // RFC 9285 examples
+        assertEquals("BB8", Base45.encode("AB".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("%69 VD92EX0", Base45.encode("Hello!!".getBytes(StandardCharsets.US_ASCII)));
+    }
+}
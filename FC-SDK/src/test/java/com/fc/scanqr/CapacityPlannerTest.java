@@ -0,0 +1,99 @@
+package com.fc.scanqr;
+
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Mode;
+import com.google.zxing.qrcode.encoder.Encoder;
+
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CapacityPlannerTest {
+    private static final int[] VERSIONS = {1, 2, 9, 10, 15, 25, 26, 27, 40};
+
+    @Test
+    public void capacity_matchesZxingEncoder() throws WriterException {
+        Map<Mode, Character> filler = new EnumMap<>(Mode.class);
+        filler.put(Mode.NUMERIC, '7');
+        filler.put(Mode.ALPHANUMERIC, 'Q');
+        filler.put(Mode.BYTE, 'q');
+        for (int version : VERSIONS) {
+            for (ErrorCorrectionLevel level : ErrorCorrectionLevel.values()) {
+                for (Map.Entry<Mode, Character> entry : filler.entrySet()) {
+                    int capacity = CapacityPlanner.capacity(version, level, entry.getKey());
+                    String label = "v" + version + " " + level + " " + entry.getKey();
+                    assertTrue(label, encodedVersion(repeat(entry.getValue(), capacity), level) <= version);
+                    assertTrue(label, encodedVersion(repeat(entry.getValue(), capacity + 1), level) > version);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void smallPayload_getsSmallSymbolAndStrongerCorrection() {
+        CapacityPlanner.Plan plan = CapacityPlanner.plan("hello", CapacityPlanner.Profile.BALANCED);
+        assertEquals(1, plan.getFrameCount());
+        assertEquals(1, plan.getVersion());
+        // "hello" fits version 1 even at level H
+        assertEquals(ErrorCorrectionLevel.H, plan.getErrorCorrectionLevel());
+    }
+
+    @Test
+    public void largePayload_framesFitPlannedVersion() throws WriterException {
+        String content = ContentChunkerTest.randomText(new Random(8), "abc二ä: ", 5_000) + "😀";
+        for (CapacityPlanner.Profile profile : CapacityPlanner.Profile.values()) {
+            CapacityPlanner.Plan plan = CapacityPlanner.plan(content, profile);
+            ChunkedPayload payload = ChunkedPayload.split(content, plan.getMaxFrameBytes(), 1);
+            assertTrue(profile + " frames", payload.getCount() <= plan.getFrameCount());
+            for (int i = 0; i < payload.getCount(); i++) {
+                assertTrue(profile + " frame " + i,
+                        encodedVersion(payload.getFrame(i), plan.getErrorCorrectionLevel()) <= plan.getVersion());
+            }
+            assertTrue(plan.getErrorCorrectionLevel().ordinal() >= profile.minLevel.ordinal());
+            assertTrue(plan.getVersion() <= profile.maxVersion);
+        }
+    }
+
+    @Test
+    public void alphanumericPayload_usesAlphanumericCapacity() {
+        String content = repeat('A', 20_000);
+        CapacityPlanner.Plan plan = CapacityPlanner.plan(content, CapacityPlanner.Profile.BALANCED);
+        assertEquals(CapacityPlanner.capacity(plan.getVersion(), plan.getErrorCorrectionLevel(), Mode.ALPHANUMERIC),
+                plan.getMaxFrameBytes());
+        assertTrue(plan.getFrameCount() < CapacityPlanner.plan(repeat('a', 20_000),
+                CapacityPlanner.Profile.BALANCED).getFrameCount());
+    }
+
+    @Test
+    public void denserProfiles_needFewerFrames() {
+        String content = ContentChunkerTest.randomText(new Random(9), "abcdef", 30_000);
+        int fast = CapacityPlanner.plan(content, CapacityPlanner.Profile.SCREEN_FAST).getFrameCount();
+        int balanced = CapacityPlanner.plan(content, CapacityPlanner.Profile.BALANCED).getFrameCount();
+        int robust = CapacityPlanner.plan(content, CapacityPlanner.Profile.PRINT_ROBUST).getFrameCount();
+        assertTrue(fast < balanced);
+        assertTrue(balanced < robust);
+    }
+
+    private static int encodedVersion(String content, ErrorCorrectionLevel level) throws WriterException {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+        try {
+            return Encoder.encode(content, level, hints).getVersion().getVersionNumber();
+        } catch (WriterException e) {
+            if (e.getMessage() != null && e.getMessage().startsWith("Data too big")) return Integer.MAX_VALUE;
+            throw e;
+        }
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) sb.append(c);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.fc.scanqr;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ChunkAssemblerTest {
+
+    @Test
+    public void shuffledFramesWithDuplicates_reassemble() {
+        String content = ContentChunkerTest.randomText(new Random(2), "abc:二ä{}", 10_000) + "😀😀";
+        ChunkedPayload payload = ChunkedPayload.split(content, 300, 1);
+        List<String> frames = new ArrayList<>();
+        for (int i = 0; i < payload.getCount(); i++) {
+            frames.add(payload.getFrame(i));
+            frames.add(payload.getFrame(i));
+        }
+        Collections.shuffle(frames, new Random(3));
+
+        ChunkAssembler assembler = new ChunkAssembler();
+        int completions = 0;
+        for (String frame : frames) {
+            ChunkAssembler.Status status = assembler.add(frame);
+            assertNotEquals(ChunkAssembler.Status.INVALID, status);
+            if (status == ChunkAssembler.Status.COMPLETE) {
+                completions++;
+            }
+        }
+        assertTrue(completions > 0);
+        assertEquals(content, assembler.getText());
+    }
+
+    @Test
+    public void corruptedFrame_isRejected() {
+        String content = ContentChunkerTest.randomText(new Random(4), "abcdef", 2_000);
+        ChunkedPayload payload = ChunkedPayload.split(content, 400, 1);
+        String frame = payload.getFrame(1);
+        String corrupted = frame.substring(0, frame.length() - 1)
+                + (frame.charAt(frame.length() - 1) == 'a' ? 'b' : 'a');
+
+        ChunkAssembler assembler = new ChunkAssembler();
+        assertEquals(ChunkAssembler.Status.INVALID, assembler.add(corrupted));
+        assertEquals(ChunkAssembler.Status.INVALID, assembler.add("EQC:0:12:x"));
+        assertEquals(ChunkAssembler.Status.ACCEPTED, assembler.add(frame));
+        assertEquals(1, assembler.getReceivedCount());
+        assertNull(assembler.getText());
+    }
+
+    @Test
+    public void total_isKnownOnceLastFrameArrives() {
+        ChunkedPayload payload = ChunkedPayload.split("z".repeat(2000), 400, 1);
+        ChunkAssembler assembler = new ChunkAssembler();
+        assertEquals(ChunkAssembler.Status.ACCEPTED, assembler.add(payload.getFrame(1)));
+        assertEquals(0, assembler.getTotal());
+        assertNull(assembler.getMissing());
+        assertEquals(ChunkAssembler.Status.ACCEPTED, assembler.add(payload.getFrame(payload.getCount() - 1)));
+        assertEquals(payload.getCount(), assembler.getTotal());
+        assertEquals(2, assembler.getReceivedCount());
+        int[] missing = assembler.getMissing();
+        assertEquals(payload.getCount() - 2, missing.length);
+        assertEquals(0, missing[0]);
+        assertEquals(2, missing[1]);
+    }
+
+    @Test
+    public void framesOfAnotherPayload_startOver() {
+        ChunkedPayload first = ChunkedPayload.split("x".repeat(1000), 400, 1);
+        ChunkedPayload second = ChunkedPayload.split("y".repeat(1000), 400, 2);
+        ChunkAssembler assembler = new ChunkAssembler();
+        assembler.add(first.getFrame(0));
+        for (int i = 0; i < second.getCount(); i++) {
+            assembler.add(second.getFrame(i));
+        }
+        assertEquals("y".repeat(1000), assembler.getText());
+    }
+}
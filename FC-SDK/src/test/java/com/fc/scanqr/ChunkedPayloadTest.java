@@ -0,0 +1,223 @@
+package com.fc.scanqr;
+
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ChunkedPayloadTest {
+    private static final Map<EncodeHintType, Object> HINTS = new EnumMap<>(EncodeHintType.class);
+
+    static {
+        HINTS.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+    }
+
+    static void encodeAll(ChunkedPayload payload, FrameEncoder encoder) throws WriterException {
+        for (int i = 0; i < payload.getCount(); i++) {
+            encoder.encode(payload.getFrame(i));
+        }
+    }
+
+    /** Indices of the frames that would have to be encoded again. */
+    static List<Integer> misses(ChunkedPayload payload, MatrixCache cache, Map<EncodeHintType, ?> hints) {
+        List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < payload.getCount(); i++) {
+            if (cache.get(payload.getFrame(i), hints) == null) {
+                misses.add(i);
+            }
+        }
+        return misses;
+    }
+
+    static String replaceAt(String text, int offset, char c) {
+        return text.substring(0, offset) + c + text.substring(offset + 1);
+    }
+
+    @Test
+    public void singleFrame_hasNoHeader() {
+        ChunkedPayload payload = ChunkedPayload.split("hello", 400, 1);
+        assertEquals(1, payload.getCount());
+        assertEquals("hello", payload.getFrame(0));
+    }
+
+    @Test
+    public void singleFrameLikeAFrame_getsAHeader() {
+        for (String content : new String[] {"EQC:0:12345678:0:0:x", "EQF:ABC", "EQC:"}) {
+            ChunkedPayload payload = ChunkedPayload.split(content, 400, 1);
+            assertEquals(1, payload.getCount());
+            String frame = payload.getFrame(0);
+            assertTrue(frame, frame.startsWith(ChunkedPayload.PREFIX + "0:00000001:0:0:"));
+            ChunkAssembler assembler = new ChunkAssembler();
+            assertEquals(ChunkAssembler.Status.COMPLETE, assembler.add(frame));
+            assertEquals(content, assembler.getText());
+        }
+    }
+
+    @Test
+    public void planAndPrepare_frameReservedContent() {
+        String content = "EQF:" + "A".repeat(100);
+        CapacityPlanner.Plan plan = CapacityPlanner.plan(content, CapacityPlanner.Profile.BALANCED);
+        ChunkedPayload payload = ChunkedPayload.split(content, plan.getMaxFrameBytes(), 2);
+        assertEquals(1, payload.getCount());
+        assertTrue(payload.getFrame(0).length() <= plan.getMaxFrameBytes());
+
+        PreparedPayload prepared = PreparedPayload.prepare(content, CapacityPlanner.Profile.BALANCED, 2);
+        assertTrue(prepared.getPayload().getFrame(0).startsWith(ChunkedPayload.PREFIX));
+        ChunkAssembler assembler = new ChunkAssembler();
+        for (int i = 0; i < prepared.getPayload().getCount(); i++) {
+            assembler.add(prepared.getPayload().getFrame(i));
+        }
+        assertEquals(content, assembler.getText());
+    }
+
+    @Test
+    public void frames_fitByteBudget() {
+        String content = ContentChunkerTest.randomText(new Random(1), "a二ä: ", 20_000) + "😀";
+        ChunkedPayload payload = ChunkedPayload.split(content, 400, 1);
+        assertTrue(payload.getCount() > 1);
+        for (int i = 0; i < payload.getCount(); i++) {
+            assertTrue(payload.getFrame(i).getBytes(StandardCharsets.UTF_8).length <= 400);
+        }
+    }
+
+    @Test
+    public void chunkAt_findsChunkHoldingOffset() {
+        String content = ContentChunkerTest.randomText(new Random(4), "a二ä: ", 5_000);
+        ChunkedPayload payload = ChunkedPayload.split(content, 300, 1);
+        assertEquals(0, payload.chunkAt(0, content.length()));
+        assertEquals(payload.getCount() - 1, payload.chunkAt(content.length(), content.length()));
+        for (int offset = 0; offset < content.length(); offset += 97) {
+            int index = payload.chunkAt(offset, content.length());
+            String frame = payload.getFrame(index);
+            int dataStart = 0;
+            for (int field = 0; field < 7; field++) {
+                dataStart = frame.indexOf(':', dataStart) + 1;
+            }
+            String data = frame.substring(dataStart);
+            int start = content.indexOf(data);
+            assertTrue(start <= offset && offset < start + data.length());
+        }
+    }
+
+    @Test
+    public void sameLengthEdit_missesOnlyItsChunkAndTheLast() throws WriterException {
+        String content = ContentChunkerTest.randomText(new Random(1), "abc二ä: ", 20_000);
+        MatrixCache cache = new MatrixCache(64L * 1024 * 1024, null);
+        ChunkedPayload before = ChunkedPayload.split(content, 300, 7);
+        encodeAll(before, new FrameEncoder(HINTS, cache));
+
+        int offset = content.length() / 2;
+        String edited = replaceAt(content, offset, content.charAt(offset) == 'a' ? 'b' : 'a');
+        ChunkedPayload after = ChunkedPayload.split(edited, 300, 7);
+        assertEquals(before.getCount(), after.getCount());
+        int index = after.chunkAt(offset, edited.length());
+        assertEquals(Arrays.asList(index, after.getCount() - 1), misses(after, cache, HINTS));
+    }
+
+    @Test
+    public void insertion_missesFromItsChunkOn() throws WriterException {
+        String content = ContentChunkerTest.randomText(new Random(2), "abc二ä: ", 20_000);
+        MatrixCache cache = new MatrixCache(64L * 1024 * 1024, null);
+        encodeAll(ChunkedPayload.split(content, 300, 7), new FrameEncoder(HINTS, cache));
+
+        int offset = content.length() / 3;
+        String edited = content.substring(0, offset) + "xyz" + content.substring(offset);
+        ChunkedPayload after = ChunkedPayload.split(edited, 300, 7);
+        int index = after.chunkAt(offset, edited.length());
+        List<Integer> misses = misses(after, cache, HINTS);
+        assertEquals(index, (int) misses.get(0));
+        assertEquals(after.getCount() - index, misses.size());
+    }
+
+    @Test
+    public void splitFromPrevious_matchesFreshSplit() {
+        // Surrogate pairs and three-byte characters move chunk ends around the edit
+        String content = ContentChunkerTest.randomText(new Random(8), "ab二ä: \uD83D\uDE00", 20_000);
+        ChunkedPayload previous = ChunkedPayload.split(content, 300, 9);
+        Random random = new Random(9);
+        for (int n = 0; n < 40; n++) {
+            int offset = random.nextInt(content.length() + 1);
+            String edited;
+            switch (n % 4) {
+                case 0:
+                    edited = content.substring(0, offset) + "x\uD83D\uDE00" + content.substring(offset);
+                    break;
+                case 1:
+                    edited = content.substring(0, offset) + content.substring(Math.min(content.length(), offset + 7));
+                    break;
+                case 2:
+                    edited = offset < content.length() ? replaceAt(content, offset, '二') : content + "a";
+                    break;
+                default:
+                    edited = content.substring(0, Math.max(offset, content.length() - 500));
+                    break;
+            }
+            ChunkedPayload fresh = ChunkedPayload.split(edited, 300, 9);
+            ChunkedPayload incremental = ChunkedPayload.split(edited, 300, 9, previous);
+            assertEquals(fresh.getCount(), incremental.getCount());
+            for (int i = 0; i < fresh.getCount(); i++) {
+                assertEquals(fresh.getFrame(i), incremental.getFrame(i));
+            }
+            previous = incremental;
+            content = edited;
+        }
+    }
+
+    @Test
+    public void mixedVersionsUnderOneId_convergeOnNewerFrames() {
+        String content = ContentChunkerTest.randomText(new Random(7), "abcdef", 5_000);
+        String edited = replaceAt(content, 10, content.charAt(10) == 'a' ? 'b' : 'a');
+        ChunkedPayload first = ChunkedPayload.split(content, 300, 5);
+        ChunkedPayload second = ChunkedPayload.split(edited, 300, 5);
+
+        ChunkAssembler assembler = new ChunkAssembler();
+        assertEquals(ChunkAssembler.Status.ACCEPTED, assembler.add(first.getFrame(0)));
+        ChunkAssembler.Status status = null;
+        for (int i = 1; i < second.getCount(); i++) {
+            status = assembler.add(second.getFrame(i));
+        }
+        assertEquals(ChunkAssembler.Status.INVALID, status);
+        assertNull(assembler.getText());
+        assertEquals(second.getCount(), assembler.getReceivedCount());
+
+        // Only the stale chunk has to come round again
+        assertEquals(ChunkAssembler.Status.COMPLETE, assembler.add(second.getFrame(0)));
+        assertEquals(edited, assembler.getText());
+        assertEquals(ChunkAssembler.Status.COMPLETE, assembler.add(second.getFrame(1)));
+    }
+
+    @Test
+    public void appendedVersion_replacesTheOldEnd() {
+        String content = ContentChunkerTest.randomText(new Random(10), "abcdef", 5_000);
+        String edited = content + ContentChunkerTest.randomText(new Random(11), "abcdef", 700);
+        ChunkedPayload first = ChunkedPayload.split(content, 300, 5);
+        ChunkedPayload second = ChunkedPayload.split(edited, 300, 5);
+        assertTrue(second.getCount() > first.getCount());
+
+        ChunkAssembler assembler = new ChunkAssembler();
+        for (int i = 0; i < first.getCount(); i++) {
+            assembler.add(first.getFrame(i));
+        }
+        assertEquals(content, assembler.getText());
+        // The frames before the old end are the same and come in as duplicates
+        ChunkAssembler.Status status = null;
+        for (int i = second.getCount() - 1; i >= 0; i--) {
+            status = assembler.add(second.getFrame(i));
+            if (i >= first.getCount() - 1) {
+                assertNotEquals(ChunkAssembler.Status.DUPLICATE, status);
+            }
+        }
+        assertEquals(ChunkAssembler.Status.COMPLETE, status);
+        assertEquals(edited, assembler.getText());
+    }
+}
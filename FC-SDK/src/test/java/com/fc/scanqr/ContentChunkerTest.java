@@ -0,0 +1,107 @@
+package com.fc.scanqr;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ContentChunkerTest {
+
+    @Test
+    public void bmpText_matchesLegacySplit() {
+        Random random = new Random(42);
+        String[] alphabets = {
+                "abcdefghijklmnopqrstuvwxyz0123456789 {}\":,",
+                "äöüßéèñçøå",
+                "二维码内容一直扫生成清除复制扫描",
+                "a二ä{b维ö"
+        };
+        for (String alphabet : alphabets) {
+            for (int length : new int[] {1, 133, 399, 400, 401, 1200, 5000}) {
+                String content = randomText(random, alphabet, length);
+                for (int maxBytes : new int[] {3, 100, 400}) {
+                    assertEquals(legacySplit(content, maxBytes), toChunks(content, maxBytes));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void surrogatePairs_areNeverSplit() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            sb.append("a😀");  // 1 + 4 bytes
+        }
+        String content = sb.toString();
+        int[] bounds = ContentChunker.split(content, 400);
+        for (int i = 1; i + 1 < bounds.length; i++) {
+            assertFalse(Character.isLowSurrogate(content.charAt(bounds[i])));
+        }
+        for (String chunk : toChunks(content, 400)) {
+            assertTrue(chunk.getBytes(StandardCharsets.UTF_8).length <= 400);
+        }
+        assertEquals(content, String.join("", toChunks(content, 400)));
+    }
+
+    @Test
+    public void oversizedCodePoint_isEmittedAlone() {
+        assertEquals(List.of("😀", "😀"), toChunks("😀😀", 2));
+    }
+
+    @Test
+    public void emptyContent_hasNoChunks() {
+        assertArrayEquals(new int[] {0}, ContentChunker.split("", 400));
+    }
+
+    @Test
+    public void utf8Length_matchesEncoder() {
+        String content = "a二ä😀{";
+        assertEquals(content.getBytes(StandardCharsets.UTF_8).length, ContentChunker.utf8Length(content));
+    }
+
+    static String randomText(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    static List<String> toChunks(String content, int maxBytes) {
+        int[] bounds = ContentChunker.split(content, maxBytes);
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            chunks.add(content.substring(bounds[i], bounds[i + 1]));
+        }
+        return chunks;
+    }
+
+    // The per-character implementation previously in MainActivity
+    static List<String> legacySplit(String content, int maxBytes) {
+        List<String> chunks = new ArrayList<>();
+        int startIndex = 0;
+        while (startIndex < content.length()) {
+            int endIndex = startIndex;
+            int currentChunkBytes = 0;
+            while (endIndex < content.length()) {
+                String nextChar = content.substring(endIndex, Math.min(endIndex + 1, content.length()));
+                int nextCharBytes = nextChar.getBytes(StandardCharsets.UTF_8).length;
+                if (currentChunkBytes + nextCharBytes > maxBytes) {
+                    break;
+                }
+                currentChunkBytes += nextCharBytes;
+                endIndex++;
+            }
+            if (endIndex == startIndex) {
+                endIndex = startIndex + 1;
+            }
+            chunks.add(content.substring(startIndex, endIndex));
+            startIndex = endIndex;
+        }
+        return chunks;
+    }
+}
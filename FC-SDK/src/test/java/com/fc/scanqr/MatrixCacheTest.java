@@ -0,0 +1,88 @@
+package com.fc.scanqr;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MatrixCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Map<EncodeHintType, Object> hints(ErrorCorrectionLevel level) {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+        hints.put(EncodeHintType.ERROR_CORRECTION, level);
+        hints.put(EncodeHintType.MARGIN, 2);
+        return hints;
+    }
+
+    private static BitMatrix encode(String frame, Map<EncodeHintType, ?> hints) throws Exception {
+        return new MultiFormatWriter().encode(frame, BarcodeFormat.QR_CODE, 0, 0, hints);
+    }
+
+    @Test
+    public void key_dependsOnFrameAndHints() {
+        Map<EncodeHintType, Object> m = hints(ErrorCorrectionLevel.M);
+        assertEquals(MatrixCache.key("abc", m), MatrixCache.key("abc", hints(ErrorCorrectionLevel.M)));
+        assertNotEquals(MatrixCache.key("abc", m), MatrixCache.key("abd", m));
+        assertNotEquals(MatrixCache.key("abc", m), MatrixCache.key("abc", hints(ErrorCorrectionLevel.Q)));
+    }
+
+    @Test
+    public void persistedMatrix_survivesNewInstance() throws Exception {
+        File dir = folder.newFolder();
+        Map<EncodeHintType, Object> hints = hints(ErrorCorrectionLevel.M);
+        BitMatrix matrix = encode("bitcoin:1BvBMSEYstWetqTFn5Au4m4GFg7xJaNVN2?amount=0.1", hints);
+        new MatrixCache(1024 * 1024, dir).put("frame", hints, matrix);
+
+        MatrixCache restarted = new MatrixCache(1024 * 1024, dir);
+        assertEquals(matrix, restarted.get("frame", hints));
+        assertNull(restarted.get("frame", hints(ErrorCorrectionLevel.L)));
+    }
+
+    @Test
+    public void memory_isBoundedByBytes() throws Exception {
+        Map<EncodeHintType, Object> hints = hints(ErrorCorrectionLevel.L);
+        BitMatrix matrix = encode("x", hints);
+        MatrixCache cache = new MatrixCache(3 * MatrixCache.sizeOf(matrix), null);
+        for (int i = 0; i < 4; i++) {
+            cache.put("frame" + i, hints, matrix);
+        }
+        assertNull(cache.get("frame0", hints));
+        assertNotNull(cache.get("frame3", hints));
+    }
+
+    @Test
+    public void trim_removesLeastRecentlyUsedFiles() throws Exception {
+        File dir = folder.newFolder();
+        Map<EncodeHintType, Object> hints = hints(ErrorCorrectionLevel.L);
+        MatrixCache cache = new MatrixCache(1024 * 1024, dir);
+        for (int i = 0; i < 3; i++) {
+            cache.put("frame" + i, hints, encode("frame" + i, hints));
+        }
+        File[] files = dir.listFiles();
+        assertEquals(3, files.length);
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            file.setLastModified(now - 60_000);
+        }
+        new File(dir, MatrixCache.key("frame2", hints) + ".qrm").setLastModified(now);
+
+        cache.trim(files[0].length());
+        MatrixCache restarted = new MatrixCache(1024 * 1024, dir);
+        assertNull(restarted.get("frame0", hints));
+        assertNotNull(restarted.get("frame2", hints));
+    }
+}
@@ -0,0 +1,158 @@
+package com.fc.scanqr;
+
+import com.google.zxing.qrcode.decoder.Mode;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PayloadCodecTest {
+
+    @Test
+    public void corpus_roundTrips() {
+        for (Map.Entry<String, String> entry : corpus(new Random(1)).entrySet()) {
+            PayloadCodec.Packed packed = PayloadCodec.pack(entry.getValue());
+            assertNotNull(entry.getKey(), packed);
+            assertTrue(entry.getKey(), packed.getBytes().length < ContentChunker.utf8Length(entry.getValue()));
+            assertEquals(entry.getKey(), entry.getValue(), PayloadCodec.unpack(packed.getBytes(), packed.getFlags()));
+        }
+    }
+
+    @Test
+    public void hexAndBase64_areRepackedAsRawBytes() {
+        byte[] random = new byte[600];
+        new Random(2).nextBytes(random);
+        String base64 = PayloadCodec.encodeBase64(random);
+        PayloadCodec.Packed packed = PayloadCodec.pack(base64);
+        assertEquals(PayloadCodec.FORMAT_BASE64 << 1, packed.getFlags());
+        assertEquals(600, packed.getBytes().length);
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : random) hex.append(String.format("%02X", b));
+        packed = PayloadCodec.pack(hex.toString());
+        assertEquals(PayloadCodec.FORMAT_HEX_UPPER << 1, packed.getFlags());
+        assertEquals(hex.toString(), PayloadCodec.unpack(packed.getBytes(), packed.getFlags()));
+    }
+
+    @Test
+    public void ambiguousInput_staysText() {
+        assertNull(PayloadCodec.decodeHex("abCD"));
+        assertNull(PayloadCodec.decodeHex("abc"));
+        // Non-zero bits under the padding would not survive re-encoding
+        assertNull(PayloadCodec.decodeBase64("QR=="));
+        assertNotNull(PayloadCodec.decodeBase64("QQ=="));
+        assertNull(PayloadCodec.decodeBase64("QQ=A"));
+        assertNull(PayloadCodec.pack("hello"));
+    }
+
+    @Test
+    public void packFromPrevious_matchesFreshPack() {
+        String content = corpus(new Random(6)).get("prose");
+        PayloadCodec.Packed previous = PayloadCodec.pack(content);
+        for (int offset : new int[] {0, 5000, content.length() - 3, content.length()}) {
+            String edited = content.substring(0, offset) + "frames " + content.substring(offset);
+            PayloadCodec.Packed packed = PayloadCodec.pack(edited, previous);
+            assertEquals(previous.getFlags(), packed.getFlags());
+            assertArrayEquals(PayloadCodec.pack(edited).getBytes(), packed.getBytes());
+            assertArrayEquals(PayloadCodec.pack(edited).segmentEnds, packed.segmentEnds);
+        }
+        // Segments before the edit are copied, not deflated again
+        String appended = content + " offline";
+        PayloadCodec.Packed packed = PayloadCodec.pack(appended, previous);
+        int reused = content.getBytes(StandardCharsets.UTF_8).length / PayloadCodec.SEGMENT_BYTES;
+        assertTrue(reused > 0);
+        assertEquals(previous.segmentEnds[reused - 1], packed.segmentEnds[reused - 1]);
+        assertEquals(appended, PayloadCodec.unpack(packed.getBytes(), packed.getFlags()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void corruptDeflate_isRejected() {
+        PayloadCodec.Packed packed = PayloadCodec.pack(corpus(new Random(3)).get("json"));
+        byte[] bytes = packed.getBytes();
+        PayloadCodec.unpack(Arrays.copyOf(bytes, bytes.length / 2), packed.getFlags());
+    }
+
+    @Test
+    public void packedFrames_reassembleFromAnyOrder() {
+        String content = corpus(new Random(4)).get("json");
+        PayloadCodec.Packed packed = PayloadCodec.pack(content);
+        CapacityPlanner.Plan plan = CapacityPlanner.plan(packed, CapacityPlanner.Profile.BALANCED);
+        ChunkedPayload payload = ChunkedPayload.split(packed, plan.getMaxFrameBytes(), 1);
+        assertTrue(payload.getCount() <= plan.getFrameCount());
+        assertTrue(plan.getFrameCount() < CapacityPlanner.plan(content, CapacityPlanner.Profile.BALANCED).getFrameCount());
+
+        List<String> frames = new ArrayList<>();
+        for (int i = 0; i < payload.getCount(); i++) {
+            String frame = payload.getFrame(i);
+            assertTrue(frame.length() <= plan.getMaxFrameBytes());
+            assertEquals(Mode.ALPHANUMERIC, CapacityPlanner.chooseMode(frame));
+            frames.add(frame);
+        }
+        Collections.shuffle(frames, new Random(5));
+        ChunkAssembler assembler = new ChunkAssembler();
+        for (String frame : frames) {
+            assembler.add(frame);
+        }
+        assertTrue(assembler.isComplete());
+        assertEquals(content, assembler.getText());
+    }
+
+    @Test
+    public void smallPackedPayload_keepsItsHeader() {
+        PayloadCodec.Packed packed = PayloadCodec.pack(corpus(new Random(6)).get("hex"));
+        ChunkedPayload payload = ChunkedPayload.split(packed, 4000, 1);
+        assertEquals(1, payload.getCount());
+        ChunkAssembler assembler = new ChunkAssembler();
+        assertEquals(ChunkAssembler.Status.COMPLETE, assembler.add(payload.getFrame(0)));
+        assertEquals(PayloadCodec.unpack(packed.getBytes(), packed.getFlags()), assembler.getText());
+    }
+
+    /**
+     * Payloads of the kinds moved through the app: JSON records, hex and base64 blobs
+     * and prose.
+     */
+    static Map<String, String> corpus(Random random) {
+        StringBuilder json = new StringBuilder("[");
+        String[] names = {"alice", "bob", "carol", "dave", "erin", "frank"};
+        for (int i = 0; i < 150; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"id\":").append(1000 + i)
+                    .append(",\"name\":\"").append(names[random.nextInt(names.length)])
+                    .append("\",\"balance\":").append(random.nextInt(100_000) / 100.0)
+                    .append(",\"active\":").append(random.nextBoolean())
+                    .append(",\"tags\":[\"fc\",\"qr\"]}");
+        }
+        json.append(']');
+
+        byte[] jsonBytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : jsonBytes) hex.append(String.format("%02x", b));
+
+        StringBuilder prose = new StringBuilder();
+        String[] words = {"the", "quick", "payload", "is", "split", "into", "frames", "and", "scanned",
+                "back", "二维码", "transfer", "offline"};
+        for (int i = 0; i < 2000; i++) {
+            prose.append(words[random.nextInt(words.length)]).append(i % 12 == 11 ? ". " : " ");
+        }
+
+        byte[] keys = new byte[2048];
+        random.nextBytes(keys);
+
+        Map<String, String> corpus = new LinkedHashMap<>();
+        corpus.put("json", json.toString());
+        corpus.put("hex", hex.toString());
+        corpus.put("base64", PayloadCodec.encodeBase64(jsonBytes));
+        corpus.put("prose", prose.toString());
+        corpus.put("random base64", PayloadCodec.encodeBase64(keys));
+        return corpus;
+    }
+}
@@ -0,0 +1,89 @@
+package com.fc.scanqr;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+public class PngWriterTest {
+
+    private static BitMatrix encode(String content) throws WriterException {
+        return new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, 0, 0,
+                Map.of(EncodeHintType.CHARACTER_SET, "UTF-8", EncodeHintType.MARGIN, 2));
+    }
+
+    private static String decode(BufferedImage image) throws ReaderException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] plane = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                plane[y * width + x] = (byte) image.getRGB(x, y);
+            }
+        }
+        PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(plane, width, height, 0, 0, width, height,
+                false);
+        return new QRCodeReader().decode(new BinaryBitmap(new HybridBinarizer(source))).getText();
+    }
+
+    @Test
+    public void output_decodesBackToContent() throws IOException, WriterException, ReaderException {
+        String content = ContentChunkerTest.randomText(new Random(2), "abc二ä: ", 300);
+        BitMatrix matrix = encode(content);
+        for (int scale : new int[] {1, 3, 8}) {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(PngWriter.encode(matrix, scale)));
+            assertEquals(matrix.getWidth() * scale, image.getWidth());
+            assertEquals(matrix.getHeight() * scale, image.getHeight());
+            if (scale > 1) {
+                assertEquals(content, decode(image));
+            }
+        }
+    }
+
+    @Test
+    public void pixels_matchModules() throws IOException, WriterException {
+        // Odd width so rows end mid-byte
+        BitMatrix matrix = encode("pixels");
+        int scale = 3;
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(PngWriter.encode(matrix, scale)));
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int expected = matrix.get(x / scale, y / scale) ? 0xFF000000 : 0xFFFFFFFF;
+                assertEquals("pixel " + x + "," + y, expected, image.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void output_isFarSmallerThanArgbPng() throws IOException, WriterException {
+        BitMatrix matrix = encode(ContentChunkerTest.randomText(new Random(3), "0123456789abcdef", 400));
+        int scale = 461 / matrix.getWidth();
+        int size = matrix.getWidth() * scale;
+        BufferedImage argb = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        argb.setRGB(0, 0, size, size, new ModulePixels().fill(matrix, scale), 0, size);
+        ByteArrayOutputStream argbPng = new ByteArrayOutputStream();
+        ImageIO.write(argb, "png", argbPng);
+
+        byte[] png = PngWriter.encode(matrix, scale);
+        assertTrue(png.length + " vs " + argbPng.size(), png.length * 10 <= argbPng.size());
+    }
+}
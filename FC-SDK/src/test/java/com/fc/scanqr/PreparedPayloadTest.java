@@ -0,0 +1,132 @@
+package com.fc.scanqr;
+
+import com.google.zxing.WriterException;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PreparedPayloadTest {
+
+    private static String words(long seed, int length) {
+        String[] words = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta", "iota"};
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(length + 16);
+        while (sb.length() < length) {
+            sb.append(words[random.nextInt(words.length)]).append(random.nextInt(1000)).append(' ');
+        }
+        return sb.substring(0, length);
+    }
+
+    /**
+     * Number of frames of a deflated ASCII {@code text} that end before the deflate
+     * segment holding {@code offset}, and so depend only on the text before it.
+     */
+    private static int framesBeforeSegment(ChunkedPayload payload, String text, int offset) {
+        int segmentStart = offset / PayloadCodec.SEGMENT_BYTES * PayloadCodec.SEGMENT_BYTES;
+        byte[] before = text.substring(0, segmentStart).getBytes(StandardCharsets.US_ASCII);
+        // Less the final block closing the stream
+        int packedStart = before.length == 0 ? 0 : PayloadCodec.deflate(before).length - 2;
+        int count = 0;
+        while (ChunkFrame.parse(payload.getFrame(count)).end() <= packedStart) {
+            count++;
+        }
+        return count;
+    }
+
+    private static void assertMissesFrom(int first, List<Integer> misses, int count) {
+        assertFalse(misses.isEmpty());
+        assertTrue(misses.get(0) + " < " + first, misses.get(0) >= first);
+        for (int i = 0; i < misses.size(); i++) {
+            assertEquals(count - misses.size() + i, (int) misses.get(i));
+        }
+    }
+
+    @Test
+    public void typingAtTheEnd_keepsEarlierMatrices() throws WriterException {
+        String content = words(3, 60_000);
+        MatrixCache cache = new MatrixCache(64L * 1024 * 1024, null);
+        PreparedPayload before = PreparedPayload.prepare(content, CapacityPlanner.Profile.BALANCED, 11);
+        // Packed, since deflate saves frames on text like this
+        assertTrue(before.getPayload().getFrame(0).startsWith(ChunkedPayload.PREFIX + "1:"));
+        ChunkedPayloadTest.encodeAll(before.getPayload(), new FrameEncoder(before.getHints(), cache));
+
+        String edited = content + " omega";
+        PreparedPayload after = PreparedPayload.prepare(edited, CapacityPlanner.Profile.BALANCED, 11);
+        assertEquals(before.getHints(), after.getHints());
+        ChunkedPayload payload = after.getPayload();
+        int unchanged = framesBeforeSegment(payload, edited, content.length());
+        assertTrue(unchanged > payload.getCount() - 8);
+        assertMissesFrom(unchanged, ChunkedPayloadTest.misses(payload, cache, after.getHints()),
+                payload.getCount());
+    }
+
+    @Test
+    public void editInPackedPayload_keepsMatricesBeforeItsSegment() throws WriterException {
+        String content = words(4, 60_000);
+        MatrixCache cache = new MatrixCache(64L * 1024 * 1024, null);
+        PreparedPayload before = PreparedPayload.prepare(content, CapacityPlanner.Profile.BALANCED, 12);
+        ChunkedPayloadTest.encodeAll(before.getPayload(), new FrameEncoder(before.getHints(), cache));
+
+        int offset = content.length() * 3 / 4;
+        String edited = ChunkedPayloadTest.replaceAt(content, offset, content.charAt(offset) == 'a' ? 'b' : 'a');
+        PreparedPayload after = PreparedPayload.prepare(edited, CapacityPlanner.Profile.BALANCED, 12);
+        ChunkedPayload payload = after.getPayload();
+        int unchanged = framesBeforeSegment(payload, edited, offset);
+        assertTrue(unchanged > payload.getCount() / 2);
+        assertMissesFrom(unchanged, ChunkedPayloadTest.misses(payload, cache, after.getHints()),
+                payload.getCount());
+    }
+
+    @Test
+    public void prepareFromPrevious_matchesFreshPrepare() {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : words(7, 20_000).getBytes(StandardCharsets.US_ASCII)) {
+            hex.append(String.format("%02x", b));
+        }
+        String[] documents = {
+                words(6, 60_000),
+                hex.toString(),
+                ContentChunkerTest.randomText(new Random(8), "a二ä{b维ö 1", 8_000)
+        };
+        for (String content : documents) {
+            PreparedPayload previous = PreparedPayload.prepare(content, CapacityPlanner.Profile.BALANCED, 14);
+            for (int offset : new int[] {content.length(), content.length() / 2, 10}) {
+                String edited = content.substring(0, offset) + "0f" + content.substring(offset);
+                PreparedPayload fresh = PreparedPayload.prepare(edited, CapacityPlanner.Profile.BALANCED, 14);
+                PreparedPayload incremental =
+                        PreparedPayload.prepare(edited, CapacityPlanner.Profile.BALANCED, 14, previous);
+                assertEquals(fresh.getHints(), incremental.getHints());
+                assertEquals(fresh.getPayload().getCount(), incremental.getPayload().getCount());
+                for (int i = 0; i < fresh.getPayload().getCount(); i++) {
+                    assertEquals(fresh.getPayload().getFrame(i), incremental.getPayload().getFrame(i));
+                }
+                previous = incremental;
+                content = edited;
+            }
+        }
+    }
+
+    @Test
+    public void packedSegments_reassembleFromAnyOrder() {
+        String content = words(5, 60_000);
+        ChunkedPayload payload = PreparedPayload.prepare(content, CapacityPlanner.Profile.SCREEN_FAST, 13).getPayload();
+        assertTrue(payload.getCount() > 2);
+        List<String> frames = new ArrayList<>();
+        for (int i = 0; i < payload.getCount(); i++) {
+            frames.add(payload.getFrame(i));
+        }
+        Collections.shuffle(frames, new Random(6));
+        ChunkAssembler assembler = new ChunkAssembler();
+        for (String frame : frames) {
+            assembler.add(frame);
+        }
+        assertEquals(content, assembler.getText());
+    }
+}
@@ -0,0 +1,276 @@
+package com.fc.scanqr;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+public class QRStreamTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] randomBytes(long seed, int length) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static List<String> frames(byte[] bytes, CapacityPlanner.Profile profile) {
+        return frames(bytes, 42, profile);
+    }
+
+    private static List<String> frames(byte[] bytes, int payloadId, CapacityPlanner.Profile profile) {
+        return frames(new QRStreamEncoder(new ByteArrayInputStream(bytes), bytes.length, payloadId, profile));
+    }
+
+    private static List<String> frames(QRStreamEncoder encoder) {
+        List<String> frames = new ArrayList<>();
+        for (Iterator<String> it = encoder.frames(); it.hasNext(); ) {
+            frames.add(it.next());
+        }
+        return frames;
+    }
+
+    private static byte[] reassemble(List<String> frames) throws IOException {
+        ChunkAssembler assembler = new ChunkAssembler();
+        for (String frame : frames) {
+            assembler.add(frame);
+        }
+        assertTrue(assembler.isComplete());
+        byte[] bytes = PayloadCodec.decodeBase64(assembler.getText());
+        return bytes != null ? bytes : new byte[0];
+    }
+
+    @Test
+    public void shuffledFramesWithDuplicates_reassembleInFile() throws Exception {
+        byte[] bytes = randomBytes(1, 50_000);
+        List<String> frames = frames(bytes, CapacityPlanner.Profile.BALANCED);
+        frames.addAll(frames.subList(0, 5));
+        Collections.shuffle(frames, new Random(2));
+
+        File file = folder.newFile();
+        try (FileChannel channel = open(file)) {
+            QRStreamDecoder decoder = new QRStreamDecoder(channel);
+            for (String frame : frames) {
+                assertNotEquals(ChunkAssembler.Status.INVALID, decoder.add(frame));
+            }
+            assertTrue(decoder.isComplete());
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void smallStream_assemblesAsBase64() {
+        byte[] bytes = randomBytes(3, 3_000);
+        ChunkAssembler assembler = new ChunkAssembler();
+        ChunkAssembler.Status status = null;
+        for (String frame : frames(bytes, CapacityPlanner.Profile.PRINT_ROBUST)) {
+            status = assembler.add(frame);
+        }
+        assertEquals(ChunkAssembler.Status.COMPLETE, status);
+        assertEquals(PayloadCodec.encodeBase64(bytes), assembler.getText());
+    }
+
+    @Test
+    public void matrices_decodeToFrames() throws Exception {
+        byte[] bytes = randomBytes(4, 2_000);
+        List<String> frames = frames(bytes, CapacityPlanner.Profile.BALANCED);
+        QRStreamEncoder encoder = new QRStreamEncoder(new ByteArrayInputStream(bytes), bytes.length, 42,
+                CapacityPlanner.Profile.BALANCED);
+        int scale = 3;
+        for (String frame : frames) {
+            BitMatrix matrix = encoder.next();
+            int size = matrix.getWidth() * scale;
+            byte[] plane = new byte[size * size];
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    plane[y * size + x] = matrix.get(x / scale, y / scale) ? 0 : (byte) 0xFF;
+                }
+            }
+            PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(plane, size, size, 0, 0, size, size, false);
+            assertEquals(frame, new QRCodeReader().decode(new BinaryBitmap(new HybridBinarizer(source))).getText());
+        }
+        assertFalse(encoder.hasNext());
+    }
+
+    @Test
+    public void largeStream_roundTripsChunkByChunk() throws Exception {
+        long length = 8L * 1024 * 1024 + 17;
+        CRC32 expected = new CRC32();
+        QRStreamEncoder encoder = new QRStreamEncoder(new PatternStream(length, expected), length, 7,
+                CapacityPlanner.Profile.SCREEN_FAST);
+
+        File file = folder.newFile();
+        try (FileChannel channel = open(file)) {
+            QRStreamDecoder decoder = new QRStreamDecoder(channel);
+            for (Iterator<String> it = encoder.frames(); it.hasNext(); ) {
+                decoder.add(it.next());
+            }
+            assertTrue(decoder.isComplete());
+            assertEquals(length, decoder.getTotalBytes());
+        }
+        CRC32 actual = new CRC32();
+        actual.update(Files.readAllBytes(file.toPath()));
+        assertEquals(expected.getValue(), actual.getValue());
+    }
+
+    @Test
+    public void streamOfUnknownLength_endsAtTheLastChunk() throws Exception {
+        byte[] bytes = randomBytes(10, 30_000);
+        // Hands out a few bytes at a time, as a pipe does
+        InputStream pipe = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] buffer, int offset, int count) {
+                return super.read(buffer, offset, Math.min(count, 97));
+            }
+        };
+        List<String> frames = frames(new QRStreamEncoder(pipe, 42, CapacityPlanner.Profile.BALANCED));
+        assertTrue(frames.size() > 1);
+        assertArrayEquals(bytes, reassemble(frames));
+    }
+
+    @Test
+    public void chunkBoundaries_needNoEmptyLastFrame() throws Exception {
+        int chunkBytes = ChunkFrame.parse(frames(randomBytes(11, 20_000), CapacityPlanner.Profile.BALANCED).get(0))
+                .data.length;
+        for (int length : new int[] {0, 1, chunkBytes, 2 * chunkBytes}) {
+            byte[] bytes = randomBytes(12, length);
+            List<String> frames = frames(new QRStreamEncoder(new ByteArrayInputStream(bytes), 42,
+                    CapacityPlanner.Profile.BALANCED));
+            assertEquals(Math.max(1, (length + chunkBytes - 1) / chunkBytes), frames.size());
+            assertArrayEquals(bytes, reassemble(frames));
+        }
+    }
+
+    @Test
+    public void longStream_failsAgainstDeclaredLength() {
+        byte[] bytes = randomBytes(13, 5_000);
+        Iterator<String> frames = new QRStreamEncoder(new ByteArrayInputStream(bytes), 4_000, 1,
+                CapacityPlanner.Profile.BALANCED).frames();
+        try {
+            while (frames.hasNext()) frames.next();
+            fail();
+        } catch (UncheckedIOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void shortStream_fails() {
+        byte[] bytes = randomBytes(5, 500);
+        QRStreamEncoder encoder = new QRStreamEncoder(new ByteArrayInputStream(bytes), 5_000, 1,
+                CapacityPlanner.Profile.BALANCED);
+        Iterator<String> frames = encoder.frames();
+        try {
+            while (frames.hasNext()) frames.next();
+            fail();
+        } catch (UncheckedIOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void otherPayload_isRejected() throws Exception {
+        List<String> first = frames(randomBytes(6, 4_000), CapacityPlanner.Profile.BALANCED);
+        List<String> second = frames(Arrays.copyOf(randomBytes(7, 4_000), 3_000), 43,
+                CapacityPlanner.Profile.BALANCED);
+        try (FileChannel channel = open(folder.newFile())) {
+            QRStreamDecoder decoder = new QRStreamDecoder(channel);
+            assertEquals(ChunkAssembler.Status.ACCEPTED, decoder.add(first.get(0)));
+            assertEquals(ChunkAssembler.Status.INVALID, decoder.add(second.get(0)));
+        }
+    }
+
+    @Test
+    public void mixedVersionsUnderOneId_failChecksum() throws Exception {
+        byte[] bytes = randomBytes(8, 4_000);
+        byte[] edited = bytes.clone();
+        edited[0]++;
+        List<String> first = frames(bytes, CapacityPlanner.Profile.BALANCED);
+        List<String> second = frames(edited, CapacityPlanner.Profile.BALANCED);
+        assertTrue(second.size() > 1);
+        try (FileChannel channel = open(folder.newFile())) {
+            QRStreamDecoder decoder = new QRStreamDecoder(channel);
+            assertEquals(ChunkAssembler.Status.ACCEPTED, decoder.add(first.get(0)));
+            ChunkAssembler.Status status = null;
+            for (String frame : second.subList(1, second.size())) {
+                status = decoder.add(frame);
+            }
+            assertEquals(ChunkAssembler.Status.INVALID, status);
+            assertFalse(decoder.isComplete());
+        }
+    }
+
+    @Test
+    public void total_isKnownOnceLastFrameArrives() throws Exception {
+        byte[] bytes = randomBytes(9, 4_000);
+        List<String> frames = frames(bytes, CapacityPlanner.Profile.BALANCED);
+        try (FileChannel channel = open(folder.newFile())) {
+            QRStreamDecoder decoder = new QRStreamDecoder(channel);
+            decoder.add(frames.get(0));
+            assertEquals(0, decoder.getTotal());
+            assertEquals(-1, decoder.getTotalBytes());
+            decoder.add(frames.get(frames.size() - 1));
+            assertEquals(frames.size(), decoder.getTotal());
+            assertEquals(bytes.length, decoder.getTotalBytes());
+        }
+    }
+
+    private static FileChannel open(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /** Deterministic bytes of any length, generated as they are read. */
+    private static final class PatternStream extends InputStream {
+        private final long length;
+        private final CRC32 crc;
+        private long position;
+
+        PatternStream(long length, CRC32 crc) {
+            this.length = length;
+            this.crc = crc;
+        }
+
+        @Override
+        public int read() {
+            if (position == length) return -1;
+            int b = (int) ((position * 31 + (position >>> 9)) & 0xFF);
+            position++;
+            crc.update(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) {
+            if (position == length) return -1;
+            int n = (int) Math.min(count, length - position);
+            for (int i = 0; i < n; i++) {
+                buffer[offset + i] = (byte) read();
+            }
+            return n;
+        }
+    }
+}
@@ -14,6 +14,9 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+        // ScanHistorySearchBenchmark runs in the debuggable test build; compare its
+        // numbers across runs on one device, not with release timings
+        testInstrumentationRunnerArguments["androidx.benchmark.suppressErrors"] = "DEBUGGABLE,EMULATOR"
     }
 
     buildTypes {
@@ -24,6 +27,12 @@ android {
                 "proguard-rules.pro"
             )
         }
+        // Release-like build the macrobenchmark module installs and measures
+        create("benchmark") {
+            initWith(getByName("release"))
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
     }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
@@ -41,9 +50,12 @@ dependencies {
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
+    // Installs baseline-prof.txt on devices without Play Store profile delivery
+    implementation(libs.profileinstaller)
     
     // ZXing for QR code generation
     implementation(libs.core)
+    implementation(project(":FC-SDK"))
     
     // CameraX dependencies
     implementation(libs.camera.core)
@@ -58,4 +70,5 @@ dependencies {
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
+    androidTestImplementation(libs.benchmark.junit4)
 }
\ No newline at end of file
@@ -0,0 +1,228 @@
+package com.fc.scanqr;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Looper;
+import android.provider.MediaStore;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.zxing.common.BitMatrix;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs a {@link QRImageSaver} job against a stand-in for MediaStore that fails the
+ * rows it is told to: rows are inserted in one batch, written in parallel, and then
+ * published or deleted in a second batch, with the listener called on the main thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QRImageSaverInstrumentedTest {
+    private static final boolean PENDING_SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+
+    private QRImageSaver saver;
+
+    @After
+    public void tearDown() {
+        if (saver != null) {
+            saver.shutdown();
+        }
+    }
+
+    private static List<BitMatrix> matrices(int count) {
+        List<BitMatrix> matrices = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BitMatrix matrix = new BitMatrix(21);
+            matrix.set(i, i);
+            matrices.add(matrix);
+        }
+        return matrices;
+    }
+
+    private Recorder save(FakeStore store, int count) throws InterruptedException {
+        saver = new QRImageSaver(store);
+        Recorder recorder = new Recorder();
+        saver.save("ABCD1234", matrices(count), 2, recorder);
+        assertTrue(recorder.done.await(10, TimeUnit.SECONDS));
+        assertTrue(recorder.onMainThread);
+        return recorder;
+    }
+
+    @Test
+    public void failedRows_areDeletedAndTheRestPublished() throws InterruptedException {
+        FakeStore store = new FakeStore();
+        store.failedInserts.add(2);
+        store.failedWrites.add(4);
+
+        Recorder recorder = save(store, 6);
+
+        assertEquals(4, recorder.saved);
+        assertEquals(2, recorder.failed);
+        assertEquals(4, recorder.progressCalls);
+        assertEquals(4, recorder.lastProgress);
+        for (int i : new int[] {0, 1, 3, 5}) {
+            byte[] png = store.files.get(i).toByteArray();
+            assertTrue(png.length > 8);
+            assertEquals((byte) 0x89, png[0]);
+            assertEquals('P', png[1]);
+        }
+        assertFalse(store.files.containsKey(2));
+
+        // The row never inserted is left alone, the one not written is deleted
+        List<Integer> updated = new ArrayList<>();
+        List<Integer> deleted = new ArrayList<>();
+        for (ContentProviderOperation operation : store.published) {
+            int index = Integer.parseInt(operation.getUri().getLastPathSegment());
+            ContentValues values = operation.resolveValueBackReferences(new ContentProviderResult[0], 0);
+            if (values != null && values.containsKey(MediaStore.Images.Media.IS_PENDING)) {
+                assertEquals(0, (int) values.getAsInteger(MediaStore.Images.Media.IS_PENDING));
+                updated.add(index);
+            } else {
+                deleted.add(index);
+            }
+        }
+        assertEquals(PENDING_SUPPORTED ? 4 : 0, updated.size());
+        assertFalse(updated.contains(2));
+        assertFalse(updated.contains(4));
+        assertEquals(1, deleted.size());
+        assertEquals(4, (int) deleted.get(0));
+    }
+
+    @Test
+    public void rows_shareOneSaveTimeAndHaveDistinctNames() throws InterruptedException {
+        FakeStore store = new FakeStore();
+        save(store, 12);
+
+        assertEquals(12, new HashSet<>(store.names).size());
+        String prefix = store.names.get(0).substring(0, store.names.get(0).lastIndexOf('_') + 1);
+        assertTrue(prefix, prefix.matches("QR_ABCD1234_\\d{8}_\\d{9}_"));
+        for (int i = 0; i < store.names.size(); i++) {
+            assertEquals(prefix + String.format(Locale.ROOT, "%02d", i) + ".png", store.names.get(i));
+        }
+        assertEquals(PENDING_SUPPORTED, store.pendingInserts == 12);
+    }
+
+    @Test
+    public void failedInsertBatch_failsEveryRow() throws InterruptedException {
+        FakeStore store = new FakeStore();
+        store.failBatch = 1;
+
+        Recorder recorder = save(store, 3);
+
+        assertEquals(0, recorder.saved);
+        assertEquals(3, recorder.failed);
+        assertEquals(0, recorder.progressCalls);
+        assertTrue(store.files.isEmpty());
+    }
+
+    @Test
+    public void failedPublishBatch_leavesPendingRowsUnsaved() throws InterruptedException {
+        FakeStore store = new FakeStore();
+        store.failBatch = 2;
+
+        Recorder recorder = save(store, 3);
+
+        // Rows still pending are not visible; older releases have no pending state
+        assertEquals(PENDING_SUPPORTED ? 0 : 3, recorder.saved);
+        assertEquals(3 - recorder.saved, recorder.failed);
+        assertEquals(3, store.files.size());
+    }
+
+    /** Stands in for MediaStore, failing the rows and batches it is told to. */
+    private static final class FakeStore implements QRImageSaver.Store {
+        final Set<Integer> failedInserts = new HashSet<>();
+        final Set<Integer> failedWrites = new HashSet<>();
+        /** 1-based number of the batch to fail, or 0. */
+        int failBatch;
+        final List<String> names = new ArrayList<>();
+        final Map<Integer, ByteArrayOutputStream> files = new ConcurrentHashMap<>();
+        final List<ContentProviderOperation> published = new ArrayList<>();
+        int pendingInserts;
+        private int batches;
+
+        @Override
+        public synchronized ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+                throws OperationApplicationException {
+            if (++batches == failBatch) {
+                throw new OperationApplicationException("batch " + batches + " failed");
+            }
+            ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+            if (batches > 1) {
+                published.addAll(operations);
+                for (int i = 0; i < results.length; i++) {
+                    results[i] = new ContentProviderResult(1);
+                }
+                return results;
+            }
+            for (int i = 0; i < results.length; i++) {
+                ContentValues values = operations.get(i).resolveValueBackReferences(results, i);
+                names.add(values.getAsString(MediaStore.Images.Media.DISPLAY_NAME));
+                if (PENDING_SUPPORTED && Integer.valueOf(1).equals(values.getAsInteger(MediaStore.Images.Media.IS_PENDING))) {
+                    pendingInserts++;
+                }
+                // A result without a uri is a row the provider did not insert
+                results[i] = failedInserts.contains(i) ? new ContentProviderResult(0)
+                        : new ContentProviderResult(Uri.parse("content://media/external/images/media/" + i));
+            }
+            return results;
+        }
+
+        @Override
+        public OutputStream openOutputStream(Uri uri) throws IOException {
+            int index = Integer.parseInt(uri.getLastPathSegment());
+            if (failedWrites.contains(index)) {
+                throw new FileNotFoundException(uri.toString());
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            files.put(index, out);
+            return out;
+        }
+    }
+
+    /** Records the listener calls, which all arrive on the main thread. */
+    private static final class Recorder implements QRImageSaver.Listener {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile boolean onMainThread = true;
+        volatile int progressCalls;
+        volatile int lastProgress;
+        volatile int saved;
+        volatile int failed;
+
+        @Override
+        public void onProgress(int saved, int total) {
+            onMainThread &= Looper.myLooper() == Looper.getMainLooper();
+            progressCalls++;
+            lastProgress = Math.max(lastProgress, saved);
+        }
+
+        @Override
+        public void onComplete(int saved, int failed) {
+            onMainThread &= Looper.myLooper() == Looper.getMainLooper();
+            this.saved = saved;
+            this.failed = failed;
+            done.countDown();
+        }
+    }
+}
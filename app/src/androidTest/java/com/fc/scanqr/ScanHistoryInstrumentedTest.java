@@ -0,0 +1,248 @@
+package com.fc.scanqr;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs {@link ScanHistory} against a real SQLite database with its FTS4 index.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScanHistoryInstrumentedTest {
+    private static final String DATABASE_NAME = "scan_history_test.db";
+    private static final long NEVER_MS = TimeUnit.HOURS.toMillis(1);
+
+    private Context context;
+    private ScanHistory history;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (history != null) {
+            shutdown(history);
+        }
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    static List<ScanHistory.Entry> search(ScanHistory history, String query, int limit) throws InterruptedException {
+        AtomicReference<List<ScanHistory.Entry>> result = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        history.search(query, limit, entries -> {
+            result.set(entries);
+            done.countDown();
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return result.get();
+    }
+
+    /** Writes what is queued and waits until the database is closed. */
+    static void shutdown(ScanHistory history) throws InterruptedException {
+        history.shutdown();
+        assertTrue(history.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private static void record(ScanHistory history, String content) {
+        history.record(content, ScanHistory.Source.CAMERA, ScanHistory.Kind.PLAIN, 1, QRDecoder.Engine.ZXING);
+    }
+
+    /** Reads a count over a connection of its own, so nothing queued is flushed. */
+    private long count(String sql) {
+        try (SQLiteDatabase db = SQLiteDatabase.openDatabase(context.getDatabasePath(DATABASE_NAME).getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+             Cursor cursor = db.rawQuery(sql, null)) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+
+    private long awaitCount(String sql, long expected, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        long count = count(sql);
+        while (count != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            count = count(sql);
+        }
+        return count;
+    }
+
+    private static List<String> previews(List<ScanHistory.Entry> entries) {
+        List<String> previews = new ArrayList<>();
+        for (ScanHistory.Entry entry : entries) {
+            previews.add(entry.preview);
+        }
+        return previews;
+    }
+
+    @Test
+    public void repeatedScan_bumpsSeenCountAndLastSeen() throws InterruptedException {
+        history = new ScanHistory(context, DATABASE_NAME, NEVER_MS);
+        record(history, "https://example.com/a");
+        ScanHistory.Entry first = search(history, "", 10).get(0);
+        assertEquals(1, first.seenCount);
+        assertEquals(first.firstSeen, first.lastSeen);
+
+        Thread.sleep(5);
+        record(history, "https://example.com/a");
+        List<ScanHistory.Entry> entries = search(history, "", 10);
+        assertEquals(1, entries.size());
+        ScanHistory.Entry second = entries.get(0);
+        assertEquals(first.id, second.id);
+        assertEquals(2, second.seenCount);
+        assertEquals(first.firstSeen, second.firstSeen);
+        assertTrue(second.lastSeen > first.lastSeen);
+    }
+
+    @Test
+    public void repeatsWithinBatch_mergeIntoOneRow() throws InterruptedException {
+        history = new ScanHistory(context, DATABASE_NAME, NEVER_MS);
+        record(history, "alpha");
+        record(history, "beta");
+        record(history, "alpha");
+        record(history, "alpha");
+        List<ScanHistory.Entry> entries = search(history, "", 10);
+        assertEquals(2, entries.size());
+        assertEquals(1, count("SELECT count(*) FROM scans WHERE content = 'alpha'"));
+        for (ScanHistory.Entry entry : entries) {
+            assertEquals(entry.preview.equals("alpha") ? 3 : 1, entry.seenCount);
+        }
+    }
+
+    @Test
+    public void queuedScan_isWrittenAfterDelay() throws InterruptedException {
+        history = new ScanHistory(context, DATABASE_NAME, 200);
+        search(history, "", 1);  // Creates the database
+        record(history, "delayed");
+        assertEquals(0, count("SELECT count(*) FROM scans"));
+        assertEquals(1, awaitCount("SELECT count(*) FROM scans", 1, 5_000));
+    }
+
+    @Test
+    public void fullBatch_isWrittenAtOnce() throws InterruptedException {
+        history = new ScanHistory(context, DATABASE_NAME, NEVER_MS);
+        search(history, "", 1);
+        for (int i = 0; i < ScanHistory.MAX_BATCH - 1; i++) {
+            record(history, "scan " + i);
+        }
+        Thread.sleep(200);
+        assertEquals(0, count("SELECT count(*) FROM scans"));
+        record(history, "scan " + (ScanHistory.MAX_BATCH - 1));
+        assertEquals(ScanHistory.MAX_BATCH,
+                awaitCount("SELECT count(*) FROM scans", ScanHistory.MAX_BATCH, 5_000));
+    }
+
+    @Test
+    public void prefixSearch_findsMatchingRowsMostRecentFirst() throws InterruptedException {
+        history = new ScanHistory(context, DATABASE_NAME, NEVER_MS);
+        String[] scans = {
+                "Invoice 2026-001 paid",
+                "https://example.com/invoices/17",
+                "Meeting notes",
+                "INVOICE 2025-114 overdue",
+                "invoiced: 2026 March"
+        };
+        for (String scan : scans) {
+            record(history, scan);
+            Thread.sleep(5);
+        }
+
+        assertEquals(Arrays.asList("invoiced: 2026 March", "INVOICE 2025-114 overdue",
+                        "https://example.com/invoices/17", "Invoice 2026-001 paid"),
+                previews(search(history, "invoice", 10)));
+        assertEquals(Arrays.asList("invoiced: 2026 March", "Invoice 2026-001 paid"),
+                previews(search(history, "inv 2026", 10)));
+        assertEquals(Arrays.asList("invoiced: 2026 March"), previews(search(history, "inv 2026", 1)));
+        assertEquals(Arrays.asList("https://example.com/invoices/17"), previews(search(history, "example.com", 10)));
+        assertTrue(search(history, "receipt", 10).isEmpty());
+        // Nothing left to match lists the latest scans
+        assertEquals(scans.length, search(history, "\" *", 10).size());
+    }
+
+    @Test
+    public void longContent_isPreviewedAndLoadedWhole() throws InterruptedException {
+        history = new ScanHistory(context, DATABASE_NAME, NEVER_MS);
+        StringBuilder content = new StringBuilder("report");
+        while (content.length() < 5 * ScanHistory.PREVIEW_CHARS) {
+            content.append(" line ").append(content.length());
+        }
+        record(history, content.toString());
+        ScanHistory.Entry entry = search(history, "report", 10).get(0);
+        assertEquals(ScanHistory.PREVIEW_CHARS, entry.preview.length());
+        assertEquals(content.length(), entry.length);
+        assertEquals(content.toString(), load(history, entry.id));
+    }
+
+    @Test
+    public void contentPastCursorWindow_isKeptInAFileAndIndexedByItsStart() throws InterruptedException {
+        history = new ScanHistory(context, DATABASE_NAME, NEVER_MS);
+        // Far more than the 2 MB a cursor window holds
+        StringBuilder content = new StringBuilder("manifest");
+        while (content.length() < 3 * 1024 * 1024) {
+            content.append(" entry ").append(content.length());
+        }
+        content.append(" trailer");
+        record(history, content.toString());
+
+        ScanHistory.Entry entry = search(history, "manifest", 10).get(0);
+        assertEquals(content.length(), entry.length);
+        assertEquals(content.substring(0, ScanHistory.PREVIEW_CHARS), entry.preview);
+        assertEquals(content.toString(), load(history, entry.id));
+        // Only the start is indexed
+        assertTrue(search(history, "trailer", 10).isEmpty());
+        assertEquals(ScanHistory.INLINE_CHARS, count("SELECT max(length(content)) FROM scans"));
+
+        history.clear();
+        assertTrue(search(history, "", 10).isEmpty());
+        String[] files = context.getDatabasePath(DATABASE_NAME + "-content").list();
+        assertTrue(files == null || files.length == 0);
+    }
+
+    private static String load(ScanHistory history, long id) throws InterruptedException {
+        AtomicReference<String> loaded = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        history.load(id, text -> {
+            loaded.set(text);
+            done.countDown();
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return loaded.get();
+    }
+
+    @Test
+    public void clear_emptiesTableAndIndex() throws InterruptedException {
+        history = new ScanHistory(context, DATABASE_NAME, NEVER_MS);
+        record(history, "keep nothing");
+        record(history, "nothing kept");
+        assertEquals(2, search(history, "nothing", 10).size());
+
+        history.clear();
+        assertTrue(search(history, "nothing", 10).isEmpty());
+        assertEquals(0, count("SELECT count(*) FROM scans"));
+        // The index keeps a size row per document it holds
+        assertEquals(0, count("SELECT count(*) FROM scans_fts_docsize"));
+
+        record(history, "nothing new");
+        assertEquals(Arrays.asList("nothing new"), previews(search(history, "nothing", 10)));
+    }
+}
@@ -0,0 +1,140 @@
+package com.fc.scanqr;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Search latency of {@link ScanHistory} over 100k rows, measured from the call to the
+ * callback on the main thread. The rows are generated from a fixed seed and written
+ * through {@link ScanHistory#record}, so every run searches the same database. Run with
+ * <pre>
+ *   ./gradlew :app:connectedDebugAndroidTest \
+ *       -Pandroid.testInstrumentationRunnerArguments.class=com.fc.scanqr.ScanHistorySearchBenchmark
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScanHistorySearchBenchmark {
+    private static final String DATABASE_NAME = "scan_history_benchmark.db";
+    private static final int ROWS = 100_000;
+    private static final int LIMIT = 50;
+    private static final long POPULATE_TIMEOUT_MINUTES = 10;
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ne", "ru", "sa", "ti", "vo", "ze", "po", "da", "fi", "gu", "he", "jo", "ba"
+    };
+    private static final String[] WORDS = new String[4096];
+
+    static {
+        for (int i = 0; i < WORDS.length; i++) {
+            WORDS[i] = SYLLABLES[i & 15] + SYLLABLES[(i >> 4) & 15] + SYLLABLES[(i >> 8) & 15];
+        }
+    }
+
+    private static ScanHistory history;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    /** Picks common words far more often than rare ones, as in real text. */
+    private static String word(Random random) {
+        double r = random.nextDouble();
+        return WORDS[(int) (WORDS.length * r * r * r)];
+    }
+
+    static String content(int i, Random random) {
+        switch (i % 4) {
+            case 0:
+                return "https://shop" + random.nextInt(500) + ".example.com/item/" + i + "/"
+                        + Long.toHexString(random.nextLong());
+            case 1:
+                return String.format(Locale.ROOT, "Invoice %d-%05d %s %s", 2020 + random.nextInt(7), i,
+                        word(random), word(random));
+            case 2:
+                return "{\"id\":" + i + ",\"name\":\"" + word(random) + "\",\"tag\":\"" + word(random) + "\"}";
+            default:
+                StringBuilder note = new StringBuilder("Note ").append(i).append(':');
+                for (int n = 6 + random.nextInt(7); n > 0; n--) {
+                    note.append(' ').append(word(random));
+                }
+                return note.toString();
+        }
+    }
+
+    @BeforeClass
+    public static void populate() throws InterruptedException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        history = new ScanHistory(context, DATABASE_NAME, 250);
+        Random random = new Random(42);
+        for (int i = 0; i < ROWS; i++) {
+            history.record(content(i, random), ScanHistory.Source.CAMERA, ScanHistory.Kind.PLAIN, 1,
+                    QRDecoder.Engine.ZXING);
+        }
+        // A search runs after every batch queued before it, however long writing takes
+        CountDownLatch written = new CountDownLatch(1);
+        history.search("", 1, entries -> written.countDown());
+        assertTrue(written.await(POPULATE_TIMEOUT_MINUTES, TimeUnit.MINUTES));
+        try (SQLiteDatabase db = SQLiteDatabase.openDatabase(context.getDatabasePath(DATABASE_NAME).getPath(), null,
+                SQLiteDatabase.OPEN_READONLY)) {
+            assertEquals(ROWS, DatabaseUtils.queryNumEntries(db, "scans"));
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() throws InterruptedException {
+        history.shutdown();
+        assertTrue(history.awaitTermination(10, TimeUnit.SECONDS));
+        InstrumentationRegistry.getInstrumentation().getTargetContext().deleteDatabase(DATABASE_NAME);
+    }
+
+    private void measure(String query) throws InterruptedException {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            ScanHistoryInstrumentedTest.search(history, query, LIMIT);
+        }
+    }
+
+    @Test
+    public void latest() throws InterruptedException {
+        measure("");
+    }
+
+    /** A quarter of the rows match and are sorted by time. */
+    @Test
+    public void commonPrefix() throws InterruptedException {
+        measure("http");
+    }
+
+    @Test
+    public void twoWords() throws InterruptedException {
+        measure("invoice 2024");
+    }
+
+    @Test
+    public void rareWord() throws InterruptedException {
+        measure(WORDS[WORDS.length - 1]);
+    }
+
+    @Test
+    public void noMatch() throws InterruptedException {
+        measure("qqq");
+    }
+}
@@ -0,0 +1,121 @@
+package com.fc.scanqr;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Combines the codes found across a batch of images into one text. Values are added
+ * image by image in selection order; chunks of a {@link ChunkedPayload} are reassembled
+ * in chunk order whatever image they came from, and the payload takes the place of its
+ * first chunk. Identical plain codes found in several images are kept once, unless
+ * the collector is made to keep duplicates.
+ * Not thread-safe.
+ */
+public class BatchCollector {
+    private final List<Object> parts = new ArrayList<>();
+    private final Map<String, ChunkAssembler> assemblers = new LinkedHashMap<>();
+    private final Set<String> plainValues = new HashSet<>();
+    private final String separator;
+    private final boolean keepDuplicates;
+    private FountainDecoder fountainDecoder;
+    private int invalidCount;
+
+    public BatchCollector() {
+        this("", false);
+    }
+
+    /**
+     * @param separator      text put between parts
+     * @param keepDuplicates keep every plain code, for identical codes that are still
+     *                       distinct items, such as labels on a sheet
+     */
+    public BatchCollector(String separator, boolean keepDuplicates) {
+        this.separator = separator;
+        this.keepDuplicates = keepDuplicates;
+    }
+
+    public void add(List<String> values) {
+        for (String value : values) {
+            add(value);
+        }
+    }
+
+    public void add(String value) {
+        if (ChunkAssembler.isChunk(value)) {
+            String payloadId = ChunkAssembler.payloadIdOf(value);
+            ChunkAssembler assembler = payloadId == null ? null : assemblers.get(payloadId);
+            if (assembler == null) {
+                assembler = new ChunkAssembler();
+                if (assembler.add(value) == ChunkAssembler.Status.INVALID) {
+                    invalidCount++;
+                    return;
+                }
+                assemblers.put(payloadId, assembler);
+                parts.add(assembler);
+            } else if (assembler.add(value) == ChunkAssembler.Status.INVALID) {
+                invalidCount++;
+            }
+        } else if (FountainDecoder.isFrame(value)) {
+            if (fountainDecoder == null) {
+                fountainDecoder = new FountainDecoder();
+                parts.add(fountainDecoder);
+            }
+            try {
+                fountainDecoder.addFrame(value);
+            } catch (IllegalArgumentException e) {
+                invalidCount++;
+            }
+        } else if (plainValues.add(value) || keepDuplicates) {
+            parts.add(value);
+        }
+    }
+
+    /**
+     * Returns the combined text of every plain code and every complete payload.
+     */
+    public String getText() {
+        StringBuilder sb = new StringBuilder();
+        boolean first = true;
+        for (Object part : parts) {
+            String text;
+            if (part instanceof String) {
+                text = (String) part;
+            } else if (part instanceof ChunkAssembler) {
+                text = ((ChunkAssembler) part).getText();
+            } else {
+                byte[] payload = ((FountainDecoder) part).getPayload();
+                text = payload == null ? null : new String(payload, StandardCharsets.UTF_8);
+            }
+            if (text != null) {
+                sb.append(first ? "" : separator).append(text);
+                first = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the number of chunked or fountain-coded payloads still missing parts.
+     */
+    public int getIncompleteCount() {
+        int count = 0;
+        for (ChunkAssembler assembler : assemblers.values()) {
+            if (!assembler.isComplete()) count++;
+        }
+        if (fountainDecoder != null && fountainDecoder.getPayload() == null) count++;
+        return count;
+    }
+
+    public int getInvalidCount() {
+        return invalidCount;
+    }
+
+    public boolean isEmpty() {
+        return parts.isEmpty();
+    }
+}
@@ -0,0 +1,133 @@
+package com.fc.scanqr;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Scans picked images for QR codes on a small pool of background threads. Each worker
+ * holds at most one downsampled bitmap at a time (see {@link GalleryImageDecoder}), so
+ * peak memory depends on the pool size only, not on how many images are selected.
+ */
+public class BatchImageScanner {
+    static final int MAX_WORKERS = 3;
+
+    /**
+     * Creates the decoder a worker uses for one image; called from worker threads.
+     */
+    public interface DecoderFactory {
+        QRDecoder create();
+    }
+
+    public interface Listener {
+        void onProgress(int scanned, int total);
+
+        /**
+         * @param values codes found in each image, in selection order; empty for images
+         *               without a code or that failed to decode
+         * @param failed number of images that could not be read
+         */
+        void onComplete(List<List<String>> values, int failed);
+    }
+
+    private final ContentResolver resolver;
+    private final int workerCount = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors()));
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Job currentJob;
+
+    public BatchImageScanner(ContentResolver resolver) {
+        this.resolver = resolver;
+        executor = new ThreadPoolExecutor(workerCount, workerCount, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "qr-import");
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts scanning {@code uris}, cancelling any batch still in flight. Listener
+     * callbacks run on the main thread and stop once the batch is cancelled.
+     */
+    public void start(List<Uri> uris, DecoderFactory decoderFactory, Listener listener) {
+        cancel();
+        Job job = new Job(uris, decoderFactory, listener);
+        currentJob = job;
+        int workers = Math.min(workerCount, uris.size());
+        for (int i = 0; i < workers; i++) {
+            executor.execute(job::run);
+        }
+    }
+
+    public void cancel() {
+        if (currentJob != null) {
+            currentJob.cancelled = true;
+            currentJob = null;
+        }
+    }
+
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private final class Job {
+        private final List<Uri> uris;
+        private final DecoderFactory decoderFactory;
+        private final Listener listener;
+        private final AtomicReferenceArray<List<String>> values;
+        private final AtomicInteger nextIndex = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private int delivered;  // main thread only
+        private volatile boolean cancelled;
+
+        Job(List<Uri> uris, DecoderFactory decoderFactory, Listener listener) {
+            this.uris = uris;
+            this.decoderFactory = decoderFactory;
+            this.listener = listener;
+            this.values = new AtomicReferenceArray<>(uris.size());
+        }
+
+        void run() {
+            int index;
+            while (!cancelled && (index = nextIndex.getAndIncrement()) < uris.size()) {
+                List<String> found;
+                try {
+                    found = new GalleryImageDecoder(resolver, decoderFactory.create()).decode(uris.get(index));
+                } catch (IOException | RuntimeException e) {
+                    failed.incrementAndGet();
+                    found = Collections.emptyList();
+                }
+                values.set(index, found);
+                mainHandler.post(() -> {
+                    if (cancelled) return;
+                    listener.onProgress(++delivered, uris.size());
+                    if (delivered == uris.size()) {
+                        listener.onComplete(collect(), failed.get());
+                    }
+                });
+            }
+        }
+
+        private List<List<String>> collect() {
+            List<List<String>> all = new ArrayList<>(values.length());
+            for (int i = 0; i < values.length(); i++) {
+                all.add(values.get(i));
+            }
+            return all;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.fc.scanqr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Follows codes across camera frames by position, so that each code on a sheet is
+ * reported once while the camera sweeps over it, and identical codes printed side by
+ * side still count as separate codes.
+ * <p>
+ * Each frame's detections are matched, nearest first, to known codes of the same value.
+ * Known positions are first moved by the median shift of codes that appear once in
+ * the frame, which follows the sweep. A detection only starts a new code when more
+ * copies of its value are in view together than have been seen before, so a code that
+ * leaves the view and comes back is not reported again. Analyzer thread only.
+ */
+class CodeTracker {
+    /** Detections of one value closer than this, as a fraction of the frame, are one symbol. */
+    static final float MIN_SEPARATION = 0.02f;
+
+    static final class Track {
+        final String value;
+        final String format;
+        float x;
+        float y;
+        int hits = 1;
+
+        Track(QRDecoder.Detection detection) {
+            value = detection.value;
+            format = detection.format;
+            x = detection.x;
+            y = detection.y;
+        }
+    }
+
+    private final List<Track> tracks = new ArrayList<>();
+    private final Map<String, List<Track>> tracksByValue = new HashMap<>();
+
+    /**
+     * Matches one frame's detections to the known codes and returns the detections of
+     * codes seen for the first time, in frame order.
+     */
+    List<QRDecoder.Detection> update(List<QRDecoder.Detection> detections) {
+        Map<String, List<QRDecoder.Detection>> frame = new LinkedHashMap<>();
+        for (QRDecoder.Detection detection : detections) {
+            List<QRDecoder.Detection> group = frame.get(detection.value);
+            if (group == null) {
+                group = new ArrayList<>();
+                frame.put(detection.value, group);
+            }
+            if (!isNear(group, detection)) {
+                group.add(detection);
+            }
+        }
+
+        // Codes unique both in the frame and so far show how far the camera moved
+        List<Float> shiftsX = new ArrayList<>();
+        List<Float> shiftsY = new ArrayList<>();
+        for (List<QRDecoder.Detection> group : frame.values()) {
+            List<Track> known = tracksByValue.get(group.get(0).value);
+            if (group.size() == 1 && known != null && known.size() == 1) {
+                shiftsX.add(group.get(0).x - known.get(0).x);
+                shiftsY.add(group.get(0).y - known.get(0).y);
+            }
+        }
+        float shiftX = median(shiftsX);
+        float shiftY = median(shiftsY);
+        for (Track track : tracks) {
+            track.x += shiftX;
+            track.y += shiftY;
+        }
+
+        List<QRDecoder.Detection> found = new ArrayList<>();
+        for (List<QRDecoder.Detection> group : frame.values()) {
+            match(group, found);
+        }
+        return found;
+    }
+
+    /**
+     * Codes seen so far, in the order they were first seen.
+     */
+    List<Track> getTracks() {
+        return Collections.unmodifiableList(tracks);
+    }
+
+    int size() {
+        return tracks.size();
+    }
+
+    void clear() {
+        tracks.clear();
+        tracksByValue.clear();
+    }
+
+    private void match(List<QRDecoder.Detection> group, List<QRDecoder.Detection> found) {
+        String value = group.get(0).value;
+        List<Track> known = tracksByValue.get(value);
+        if (known == null) {
+            known = new ArrayList<>();
+            tracksByValue.put(value, known);
+        }
+
+        // Every detection-track pair, nearest first
+        int trackCount = known.size();
+        float[] distances = new float[group.size() * trackCount];
+        Integer[] pairs = new Integer[distances.length];
+        for (int d = 0; d < group.size(); d++) {
+            for (int t = 0; t < trackCount; t++) {
+                int pair = d * trackCount + t;
+                distances[pair] = distance(group.get(d), known.get(t));
+                pairs[pair] = pair;
+            }
+        }
+        Arrays.sort(pairs, (a, b) -> Float.compare(distances[a], distances[b]));
+
+        boolean[] detectionMatched = new boolean[group.size()];
+        boolean[] trackMatched = new boolean[trackCount];
+        for (int pair : pairs) {
+            int d = pair / trackCount;
+            int t = pair % trackCount;
+            if (detectionMatched[d] || trackMatched[t]) continue;
+            detectionMatched[d] = true;
+            trackMatched[t] = true;
+            Track track = known.get(t);
+            track.x = group.get(d).x;
+            track.y = group.get(d).y;
+            track.hits++;
+        }
+        for (int d = 0; d < group.size(); d++) {
+            if (detectionMatched[d]) continue;
+            Track track = new Track(group.get(d));
+            known.add(track);
+            tracks.add(track);
+            found.add(group.get(d));
+        }
+    }
+
+    private static boolean isNear(List<QRDecoder.Detection> group, QRDecoder.Detection detection) {
+        for (QRDecoder.Detection other : group) {
+            if (Math.abs(other.x - detection.x) < MIN_SEPARATION && Math.abs(other.y - detection.y) < MIN_SEPARATION) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static float distance(QRDecoder.Detection detection, Track track) {
+        float dx = detection.x - track.x;
+        float dy = detection.y - track.y;
+        return dx * dx + dy * dy;
+    }
+
+    private static float median(List<Float> values) {
+        if (values.isEmpty()) return 0;
+        Collections.sort(values);
+        int middle = values.size() / 2;
+        return values.size() % 2 == 1 ? values.get(middle) : (values.get(middle - 1) + values.get(middle)) / 2;
+    }
+}
@@ -0,0 +1,47 @@
+package com.fc.scanqr;
+
+/**
+ * Append-only text that hands out the same {@link String} until it changes, so a large
+ * document is copied at most once per change however many times it is read.
+ */
+public class ContentBuffer {
+    /** How far past the cut a window start may move to land on a line start. */
+    static final int LINE_SEARCH = 256;
+
+    private final StringBuilder text = new StringBuilder();
+    private String snapshot = "";
+
+    public void append(CharSequence s) {
+        if (s.length() == 0) return;
+        text.append(s);
+        snapshot = null;
+    }
+
+    public int length() {
+        return text.length();
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        return text.subSequence(start, end);
+    }
+
+    /**
+     * Start of the last at most {@code maxChars} characters, moved forward to just
+     * after a line break when one is near and never inside a surrogate pair.
+     */
+    public int windowStart(int maxChars) {
+        int start = text.length() - maxChars;
+        if (start <= 0) return 0;
+        int limit = Math.min(text.length(), start + LINE_SEARCH);
+        for (int i = start; i < limit; i++) {
+            if (text.charAt(i) == '\n') return i + 1;
+        }
+        return Character.isLowSurrogate(text.charAt(start)) ? start + 1 : start;
+    }
+
+    @Override
+    public String toString() {
+        if (snapshot == null) snapshot = text.toString();
+        return snapshot;
+    }
+}
@@ -0,0 +1,83 @@
+package com.fc.scanqr;
+
+import android.text.Editable;
+import android.text.method.KeyListener;
+import android.widget.EditText;
+
+/**
+ * The text area's content. Appends go into the {@link Editable} in place instead of
+ * replacing the whole text, so their cost follows the appended text, not the document.
+ * <p>
+ * Once the content outgrows {@link #VIEW_LIMIT} it moves into a {@link ContentBuffer}
+ * and the text area becomes a read-only window onto its tail; Make and Copy still see
+ * everything through {@link #getContent}. Clearing returns to normal editing.
+ */
+public class ContentEditor {
+    static final int VIEW_LIMIT = 64 * 1024;
+
+    private final EditText editText;
+    private final KeyListener keyListener;
+    private ContentBuffer buffer;  // null while the text area holds everything
+
+    public ContentEditor(EditText editText) {
+        this.editText = editText;
+        this.keyListener = editText.getKeyListener();
+    }
+
+    /**
+     * Appends {@code text} to the end of the content.
+     *
+     * @return true if the text area just switched to showing only the tail
+     */
+    public boolean append(CharSequence text) {
+        Editable editable = editText.getText();
+        if (buffer == null && editable.length() + text.length() <= VIEW_LIMIT) {
+            editable.append(text);
+            return false;
+        }
+
+        boolean switched = buffer == null;
+        if (switched) {
+            buffer = new ContentBuffer();
+            buffer.append(editable);
+            editText.setKeyListener(null);
+        }
+        int viewStart = buffer.length() - editable.length();
+        buffer.append(text);
+        int start = buffer.windowStart(VIEW_LIMIT);
+        if (text.length() >= VIEW_LIMIT) {
+            editable.replace(0, editable.length(), buffer.subSequence(start, buffer.length()));
+        } else {
+            editable.append(text);
+            if (start > viewStart) editable.delete(0, start - viewStart);
+        }
+        return switched;
+    }
+
+    public void clear() {
+        if (buffer != null) {
+            buffer = null;
+            editText.setKeyListener(keyListener);
+        }
+        editText.getText().clear();
+    }
+
+    public boolean isTruncated() {
+        return buffer != null;
+    }
+
+    /**
+     * The full content. Repeated calls without changes return the same string.
+     */
+    public String getContent() {
+        return buffer != null ? buffer.toString() : editText.getText().toString();
+    }
+
+    /**
+     * The cursor position within the full content.
+     */
+    public int getCursor() {
+        int selection = Math.max(0, editText.getSelectionStart());
+        return buffer != null ? buffer.length() - editText.getText().length() + selection : selection;
+    }
+}
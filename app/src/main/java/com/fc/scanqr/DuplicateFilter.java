@@ -0,0 +1,46 @@
+package com.fc.scanqr;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Suppresses values already seen within a time window. Not thread-safe.
+ */
+public class DuplicateFilter {
+    private static final int MAX_ENTRIES = 512;
+
+    private final long windowMillis;
+    private final LinkedHashMap<String, Long> lastSeen = new LinkedHashMap<>(16, 0.75f, true);
+
+    public DuplicateFilter(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Records {@code value} and returns true if it was not seen in the last window.
+     */
+    public boolean accept(String value, long nowMillis) {
+        expire(nowMillis);
+        Long previous = lastSeen.put(value, nowMillis);
+        if (lastSeen.size() > MAX_ENTRIES) {
+            Iterator<String> eldest = lastSeen.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        return previous == null;
+    }
+
+    public void clear() {
+        lastSeen.clear();
+    }
+
+    private void expire(long nowMillis) {
+        // Access order keeps the least recently seen values first
+        Iterator<Map.Entry<String, Long>> it = lastSeen.entrySet().iterator();
+        while (it.hasNext()) {
+            if (nowMillis - it.next().getValue() < windowMillis) break;
+            it.remove();
+        }
+    }
+}
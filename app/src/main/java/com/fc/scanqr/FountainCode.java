@@ -0,0 +1,89 @@
+package com.fc.scanqr;
+
+import java.util.Random;
+
+/**
+ * Shared parameters of the rateless (LT) code used for animated QR transfers.
+ * <p>
+ * A frame is {@link #PREFIX} followed by the Base45 encoding of
+ * <pre>
+ *   version(1) payloadLength(4) payloadCrc32(4) blockSize(2) sequence(4) data(blockSize)
+ * </pre>
+ * The first {@code blockCount} sequence numbers carry the source blocks unchanged;
+ * later ones carry the XOR of a pseudo-random set of blocks whose size follows the
+ * robust soliton distribution, so any sufficiently large subset of frames rebuilds the
+ * payload.
+ */
+final class FountainCode {
+    static final String PREFIX = ChunkedPayload.FOUNTAIN_PREFIX;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 15;
+
+    private static final double SOLITON_C = 0.1;
+    private static final double SOLITON_DELTA = 0.05;
+
+    private final int blockCount;
+    private final double[] degreeCdf;
+
+    FountainCode(int blockCount) {
+        this.blockCount = blockCount;
+        this.degreeCdf = robustSolitonCdf(blockCount);
+    }
+
+    static int blockCount(int payloadLength, int blockSize) {
+        return Math.max(1, (payloadLength + blockSize - 1) / blockSize);
+    }
+
+    /**
+     * Returns the source blocks combined into frame {@code sequence}.
+     */
+    int[] blocksFor(int sequence) {
+        if (sequence < blockCount) {
+            return new int[] {sequence};
+        }
+        Random random = new Random(sequence * 0x9E3779B97F4A7C15L);
+        double u = random.nextDouble();
+        int degree = 1;
+        while (degree < blockCount && degreeCdf[degree] < u) {
+            degree++;
+        }
+
+        // Partial Fisher-Yates over a lazily materialized identity permutation
+        int[] blocks = new int[degree];
+        java.util.HashMap<Integer, Integer> swapped = new java.util.HashMap<>();
+        for (int i = 0; i < degree; i++) {
+            int j = i + random.nextInt(blockCount - i);
+            int valueJ = swapped.getOrDefault(j, j);
+            int valueI = swapped.getOrDefault(i, i);
+            swapped.put(j, valueI);
+            blocks[i] = valueJ;
+        }
+        return blocks;
+    }
+
+    private static double[] robustSolitonCdf(int k) {
+        double[] mu = new double[k + 1];
+        double r = SOLITON_C * Math.log(k / SOLITON_DELTA) * Math.sqrt(k);
+        int spike = r > 0 ? (int) Math.min(k, Math.max(1, Math.round(k / r))) : k;
+        double sum = 0;
+        for (int d = 1; d <= k; d++) {
+            double rho = d == 1 ? 1.0 / k : 1.0 / ((double) d * (d - 1));
+            double tau = 0;
+            if (d < spike) {
+                tau = r / ((double) d * k);
+            } else if (d == spike) {
+                tau = r * Math.log(r / SOLITON_DELTA) / k;
+            }
+            mu[d] = rho + Math.max(0, tau);
+            sum += mu[d];
+        }
+        double[] cdf = new double[k + 1];
+        double acc = 0;
+        for (int d = 1; d <= k; d++) {
+            acc += mu[d] / sum;
+            cdf[d] = acc;
+        }
+        cdf[k] = 1.0;
+        return cdf;
+    }
+}
@@ -0,0 +1,206 @@
+package com.fc.scanqr;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Rebuilds a payload from fountain-coded frames received in any order, with any
+ * frames missing, using a peeling (belief propagation) decoder.
+ * <p>
+ * Frames of a different payload reset the decoder. Not thread-safe.
+ */
+public class FountainDecoder {
+    private int payloadLength = -1;
+    private int payloadCrc;
+    private int blockSize;
+    private int blockCount;
+    private FountainCode code;
+
+    private byte[][] blocks;
+    private int decodedCount;
+    private List<List<Symbol>> symbolsByBlock;
+    private final Set<Integer> seenSequences = new HashSet<>();
+
+    private static final class Symbol {
+        final byte[] data;
+        final int[] blocks;
+        int remaining;
+
+        Symbol(byte[] data, int[] blocks) {
+            this.data = data;
+            this.blocks = blocks;
+            this.remaining = blocks.length;
+        }
+    }
+
+    public static boolean isFrame(String text) {
+        return text != null && text.startsWith(FountainCode.PREFIX);
+    }
+
+    /**
+     * Adds a frame in QR text form.
+     *
+     * @return true if the frame was new
+     * @throws IllegalArgumentException if the text is not a valid frame
+     */
+    public boolean addFrame(String text) {
+        if (!isFrame(text)) {
+            throw new IllegalArgumentException("Not a fountain frame");
+        }
+        return addFrame(Base45.decode(text, FountainCode.PREFIX.length(), text.length()));
+    }
+
+    /**
+     * Adds a binary frame.
+     *
+     * @return true if the frame was new
+     * @throws IllegalArgumentException if the frame is malformed
+     */
+    public boolean addFrame(byte[] frame) {
+        if (frame.length < FountainCode.HEADER_SIZE) {
+            throw new IllegalArgumentException("Frame too short: " + frame.length);
+        }
+        ByteBuffer header = ByteBuffer.wrap(frame, 0, FountainCode.HEADER_SIZE);
+        int version = header.get();
+        int length = header.getInt();
+        int crc = header.getInt();
+        int size = header.getShort() & 0xFFFF;
+        int sequence = header.getInt();
+        if (version != FountainCode.VERSION || length < 0 || size == 0
+                || frame.length != FountainCode.HEADER_SIZE + size || sequence < 0) {
+            throw new IllegalArgumentException("Unsupported frame");
+        }
+
+        if (length != payloadLength || crc != payloadCrc || size != blockSize) {
+            reset(length, crc, size);
+        }
+        if (isComplete() || !seenSequences.add(sequence)) {
+            return false;
+        }
+
+        byte[] data = new byte[size];
+        System.arraycopy(frame, FountainCode.HEADER_SIZE, data, 0, size);
+        Symbol symbol = new Symbol(data, code.blocksFor(sequence));
+        for (int block : symbol.blocks) {
+            if (blocks[block] != null) {
+                xor(data, blocks[block]);
+                symbol.remaining--;
+            }
+        }
+        if (symbol.remaining == 0) {
+            return true;
+        }
+        if (symbol.remaining == 1) {
+            peel(symbol);
+        } else {
+            for (int block : symbol.blocks) {
+                if (blocks[block] == null) {
+                    symbolsByBlock.get(block).add(symbol);
+                }
+            }
+        }
+        return true;
+    }
+
+    public boolean isComplete() {
+        return blockCount > 0 && decodedCount == blockCount;
+    }
+
+    public float getProgress() {
+        return blockCount == 0 ? 0f : (float) decodedCount / blockCount;
+    }
+
+    public int getReceivedCount() {
+        return seenSequences.size();
+    }
+
+    /**
+     * Returns the rebuilt payload, or null if it is incomplete or fails its checksum.
+     */
+    public byte[] getPayload() {
+        if (!isComplete()) {
+            return null;
+        }
+        byte[] payload = new byte[payloadLength];
+        for (int i = 0; i < blockCount; i++) {
+            int start = i * blockSize;
+            System.arraycopy(blocks[i], 0, payload, start, Math.min(blockSize, payloadLength - start));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue() == payloadCrc ? payload : null;
+    }
+
+    public void reset() {
+        payloadLength = -1;
+        blockCount = 0;
+        decodedCount = 0;
+        blocks = null;
+        symbolsByBlock = null;
+        seenSequences.clear();
+    }
+
+    private void reset(int length, int crc, int size) {
+        reset();
+        payloadLength = length;
+        payloadCrc = crc;
+        blockSize = size;
+        blockCount = FountainCode.blockCount(length, size);
+        code = new FountainCode(blockCount);
+        blocks = new byte[blockCount][];
+        symbolsByBlock = new ArrayList<>(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            symbolsByBlock.add(new ArrayList<>(2));
+        }
+    }
+
+    /**
+     * Resolves a symbol with a single unknown block and propagates the newly known
+     * blocks through every symbol that references them.
+     */
+    private void peel(Symbol first) {
+        ArrayDeque<Symbol> ready = new ArrayDeque<>();
+        ready.add(first);
+        while (!ready.isEmpty()) {
+            Symbol symbol = ready.poll();
+            if (symbol.remaining != 1) {
+                continue;
+            }
+            int block = -1;
+            for (int b : symbol.blocks) {
+                if (blocks[b] == null) {
+                    block = b;
+                    break;
+                }
+            }
+            if (block < 0) {
+                continue;
+            }
+            blocks[block] = symbol.data;
+            symbol.remaining = 0;
+            decodedCount++;
+
+            List<Symbol> dependents = symbolsByBlock.set(block, null);
+            for (Symbol dependent : dependents) {
+                if (dependent == symbol || dependent.remaining == 0) {
+                    continue;
+                }
+                xor(dependent.data, symbol.data);
+                if (--dependent.remaining == 1) {
+                    ready.add(dependent);
+                }
+            }
+        }
+    }
+
+    private static void xor(byte[] target, byte[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] ^= source[i];
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.fc.scanqr;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Produces an endless stream of fountain-coded frames for a payload.
+ * See {@link FountainCode} for the frame layout.
+ */
+public class FountainEncoder {
+    private final byte[] payload;
+    private final int blockSize;
+    private final int blockCount;
+    private final int payloadCrc;
+    private final FountainCode code;
+
+    public FountainEncoder(byte[] payload, int blockSize) {
+        if (blockSize <= 0 || blockSize > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        this.payload = payload;
+        this.blockSize = blockSize;
+        this.blockCount = FountainCode.blockCount(payload.length, blockSize);
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        this.payloadCrc = (int) crc.getValue();
+        this.code = new FountainCode(blockCount);
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Binary frame for {@code sequence}. Sequences below {@link #getBlockCount()}
+     * carry the source blocks in order.
+     */
+    public byte[] frame(int sequence) {
+        ByteBuffer frame = ByteBuffer.allocate(FountainCode.HEADER_SIZE + blockSize);
+        frame.put((byte) FountainCode.VERSION)
+                .putInt(payload.length)
+                .putInt(payloadCrc)
+                .putShort((short) blockSize)
+                .putInt(sequence);
+        byte[] out = frame.array();
+        for (int block : code.blocksFor(sequence)) {
+            int start = block * blockSize;
+            int end = Math.min(payload.length, start + blockSize);
+            for (int i = start, o = FountainCode.HEADER_SIZE; i < end; i++, o++) {
+                out[o] ^= payload[i];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Frame for {@code sequence} as QR text (alphanumeric mode).
+     */
+    public String frameText(int sequence) {
+        byte[] frame = frame(sequence);
+        StringBuilder sb = new StringBuilder(FountainCode.PREFIX.length() + Base45.encodedLength(frame.length));
+        sb.append(FountainCode.PREFIX);
+        Base45.appendTo(sb, frame, 0, frame.length);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.fc.scanqr;
+
+/**
+ * Decides which camera frames are sent to the detector. At most one detection is in
+ * flight at a time, and after each detection the next frame is admitted only once the
+ * detector has been idle for a share of its measured latency: a small share while codes
+ * are being found, a larger one while the scene is empty, to save CPU and battery.
+ * <p>
+ * {@link #tryAcquire} and {@link #release} may be called from different threads.
+ */
+public class FrameThrottle {
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private final double activeDutyCycle;
+    private final double idleDutyCycle;
+
+    private boolean inFlight;
+    private long acquiredAt;
+    private long nextAllowedAt;
+    private double averageLatencyNanos;
+    private long framesAnalyzed;
+    private long framesDropped;
+
+    /**
+     * @param activeDutyCycle share of time spent detecting while codes are found, in (0, 1]
+     * @param idleDutyCycle   share of time spent detecting while nothing is found, in (0, 1]
+     */
+    public FrameThrottle(double activeDutyCycle, double idleDutyCycle) {
+        if (activeDutyCycle <= 0 || activeDutyCycle > 1 || idleDutyCycle <= 0 || idleDutyCycle > 1) {
+            throw new IllegalArgumentException("Duty cycles must be in (0, 1]");
+        }
+        this.activeDutyCycle = activeDutyCycle;
+        this.idleDutyCycle = idleDutyCycle;
+    }
+
+    /**
+     * Returns true if the frame arriving at {@code nowNanos} should be analyzed; the
+     * caller must then call {@link #release} when the detection finishes.
+     */
+    public synchronized boolean tryAcquire(long nowNanos) {
+        if (inFlight || nowNanos < nextAllowedAt) {
+            framesDropped++;
+            return false;
+        }
+        inFlight = true;
+        acquiredAt = nowNanos;
+        framesAnalyzed++;
+        return true;
+    }
+
+    public synchronized void release(long nowNanos, boolean found) {
+        if (!inFlight) return;
+        inFlight = false;
+        long latency = Math.max(0, nowNanos - acquiredAt);
+        averageLatencyNanos = averageLatencyNanos == 0
+                ? latency
+                : averageLatencyNanos + LATENCY_SMOOTHING * (latency - averageLatencyNanos);
+        double dutyCycle = found ? activeDutyCycle : idleDutyCycle;
+        nextAllowedAt = nowNanos + (long) (averageLatencyNanos * (1 / dutyCycle - 1));
+    }
+
+    public synchronized void reset() {
+        inFlight = false;
+        nextAllowedAt = 0;
+        averageLatencyNanos = 0;
+        framesAnalyzed = 0;
+        framesDropped = 0;
+    }
+
+    public synchronized long getAverageLatencyNanos() {
+        return (long) averageLatencyNanos;
+    }
+
+    public synchronized long getFramesAnalyzed() {
+        return framesAnalyzed;
+    }
+
+    public synchronized long getFramesDropped() {
+        return framesDropped;
+    }
+}
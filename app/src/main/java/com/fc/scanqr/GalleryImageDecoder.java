@@ -0,0 +1,207 @@
+package com.fc.scanqr;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Build;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds QR codes in a picked image without ever decoding it at full resolution.
+ * <p>
+ * The bounds are read first and the image is decoded downsampled to about
+ * {@link #DETECTION_SIZE} on the long side. If nothing is found it is retried at up to
+ * twice that resolution, capped at {@link #RETRY_MAX_PIXELS}, and finally as overlapping
+ * tiles so that a small code in a large photo still covers enough pixels. Every code
+ * found by the first successful pass is returned. A pass the decoder does not answer
+ * within {@link #PASS_TIMEOUT_MS} counts as finding nothing. Blocks until done, so call
+ * it off the main thread.
+ */
+public class GalleryImageDecoder {
+    static final int DETECTION_SIZE = 1600;
+    static final int TILE_GRID = 2;
+    /** The retry bitmap and the decoder's pixel copy each take 4 bytes per pixel. */
+    static final int RETRY_MAX_PIXELS = 4_000_000;
+    static final long PASS_TIMEOUT_MS = 10_000;
+
+    private final ContentResolver resolver;
+    private final QRDecoder decoder;
+
+    public GalleryImageDecoder(ContentResolver resolver, QRDecoder decoder) {
+        this.resolver = resolver;
+        this.decoder = decoder;
+    }
+
+    /**
+     * @return the values found, empty if the image has no readable code
+     * @throws IOException if the image cannot be read or the decoder fails
+     */
+    public List<String> decode(Uri uri) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = open(uri)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        int width = bounds.outWidth;
+        int height = bounds.outHeight;
+        if (width <= 0 || height <= 0) {
+            throw new IOException("Unsupported image: " + uri);
+        }
+
+        int sampleSize = sampleSize(Math.max(width, height), DETECTION_SIZE);
+        List<String> values = decodeSampled(uri, sampleSize);
+        // Skipped when the cap leaves no finer power of two; the tiles still look closer
+        int retrySampleSize = Math.max(sampleSize / 2, pixelSampleSize(width, height, RETRY_MAX_PIXELS));
+        if (values.isEmpty() && retrySampleSize < sampleSize) {
+            values = decodeSampled(uri, retrySampleSize);
+        }
+        if (values.isEmpty() && sampleSize > 2) {
+            values = decodeTiles(uri, width, height);
+        }
+        return values;
+    }
+
+    /**
+     * Returns the smallest power of two that brings {@code longSide} down to at most
+     * {@code target}.
+     */
+    static int sampleSize(int longSide, int target) {
+        int sampleSize = 1;
+        while (longSide / sampleSize > target) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Returns the smallest power of two that brings a {@code width x height} image down
+     * to at most {@code maxPixels}.
+     */
+    static int pixelSampleSize(int width, int height, long maxPixels) {
+        int sampleSize = 1;
+        while ((long) (width / sampleSize) * (height / sampleSize) > maxPixels) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Splits the image into a {@code grid x grid} layout of tiles plus the tiles straddling
+     * their seams, so a code cut by one seam lies whole in another tile. Each entry is
+     * {@code {left, top, right, bottom}}.
+     */
+    static int[][] tiles(int width, int height, int grid) {
+        int tileWidth = width / grid;
+        int tileHeight = height / grid;
+        int steps = 2 * grid - 1;
+        int[][] tiles = new int[steps * steps][];
+        int i = 0;
+        for (int row = 0; row < steps; row++) {
+            for (int column = 0; column < steps; column++) {
+                int left = column * tileWidth / 2;
+                int top = row * tileHeight / 2;
+                int right = column == steps - 1 ? width : left + tileWidth;
+                int bottom = row == steps - 1 ? height : top + tileHeight;
+                tiles[i++] = new int[] {left, top, right, bottom};
+            }
+        }
+        return tiles;
+    }
+
+    private List<String> decodeSampled(Uri uri, int sampleSize) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        Bitmap bitmap;
+        try (InputStream in = open(uri)) {
+            bitmap = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (bitmap == null) {
+            throw new IOException("Cannot decode image: " + uri);
+        }
+        return decodeAndRecycle(bitmap);
+    }
+
+    private List<String> decodeTiles(Uri uri, int width, int height) throws IOException {
+        int[][] tiles = tiles(width, height, TILE_GRID);
+        BitmapRegionDecoder regionDecoder;
+        try (InputStream in = open(uri)) {
+            regionDecoder = newRegionDecoder(in);
+        }
+        if (regionDecoder == null) {
+            return Collections.emptyList();
+        }
+        // Keep going after a hit: other tiles may hold further codes
+        Set<String> found = new LinkedHashSet<>();
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            for (int[] tile : tiles) {
+                options.inSampleSize = sampleSize(Math.max(tile[2] - tile[0], tile[3] - tile[1]), DETECTION_SIZE);
+                Bitmap bitmap = regionDecoder.decodeRegion(new Rect(tile[0], tile[1], tile[2], tile[3]), options);
+                if (bitmap != null) {
+                    found.addAll(decodeAndRecycle(bitmap));
+                }
+            }
+            return new ArrayList<>(found);
+        } finally {
+            regionDecoder.recycle();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static BitmapRegionDecoder newRegionDecoder(InputStream in) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return BitmapRegionDecoder.newInstance(in);
+        }
+        return BitmapRegionDecoder.newInstance(in, false);
+    }
+
+    private List<String> decodeAndRecycle(Bitmap bitmap) throws IOException {
+        CountDownLatch done = new CountDownLatch(1);
+        List<String> found = new ArrayList<>();
+        boolean[] failed = new boolean[1];
+        decoder.decode(bitmap, (values, success) -> {
+            found.addAll(values);
+            failed[0] = !success;
+            done.countDown();
+        });
+        try {
+            if (!done.await(PASS_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                // The decoder may still be reading the bitmap, so it is left to the GC
+                return Collections.emptyList();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding");
+        } finally {
+            // Only this class ever references the bitmap; the decoder is done with it
+            if (done.getCount() == 0) {
+                bitmap.recycle();
+            }
+        }
+        if (failed[0]) {
+            throw new IOException("Decoder failed");
+        }
+        return found;
+    }
+
+    private InputStream open(Uri uri) throws IOException {
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+        return in;
+    }
+}
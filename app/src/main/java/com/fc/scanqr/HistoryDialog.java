@@ -0,0 +1,140 @@
+package com.fc.scanqr;
+
+import android.content.Context;
+import android.text.Editable;
+import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.text.format.DateUtils;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.EditText;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Searchable list of {@link ScanHistory} entries, refreshed as the user types. Only the
+ * latest query's results are shown. Picking an entry loads its full content and hands
+ * it to the listener.
+ */
+class HistoryDialog {
+    static final int MAX_RESULTS = 100;
+
+    interface Listener {
+        void onPicked(String content);
+    }
+
+    private final Context context;
+    private final ScanHistory history;
+    private final Listener listener;
+    private final EntryAdapter adapter = new EntryAdapter();
+    private TextView emptyView;
+    private int generation;
+
+    HistoryDialog(Context context, ScanHistory history, Listener listener) {
+        this.context = context;
+        this.history = history;
+        this.listener = listener;
+    }
+
+    void show() {
+        View view = LayoutInflater.from(context).inflate(R.layout.dialog_history, null);
+        EditText searchView = view.findViewById(R.id.historySearch);
+        ListView listView = view.findViewById(R.id.historyList);
+        emptyView = view.findViewById(R.id.historyEmpty);
+        listView.setAdapter(adapter);
+
+        AlertDialog dialog = new AlertDialog.Builder(context)
+                .setTitle(R.string.history)
+                .setView(view)
+                .setNegativeButton(R.string.cancel, null)
+                .setNeutralButton(R.string.history_clear, (d, which) -> {
+                    history.clear();
+                    Toast.makeText(context, context.getString(R.string.history_cleared), Toast.LENGTH_SHORT).show();
+                })
+                .create();
+
+        listView.setOnItemClickListener((parent, itemView, position, id) -> {
+            dialog.dismiss();
+            history.load(id, content -> {
+                if (content != null) {
+                    listener.onPicked(content);
+                }
+            });
+        });
+        searchView.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                search(s.toString());
+            }
+        });
+        search("");
+        dialog.show();
+    }
+
+    private void search(String query) {
+        int token = ++generation;
+        history.search(query, MAX_RESULTS, entries -> {
+            if (token != generation) return;
+            adapter.setEntries(entries);
+            emptyView.setVisibility(entries.isEmpty() ? View.VISIBLE : View.GONE);
+        });
+    }
+
+    private final class EntryAdapter extends BaseAdapter {
+        private List<ScanHistory.Entry> entries = new ArrayList<>();
+
+        void setEntries(List<ScanHistory.Entry> entries) {
+            this.entries = entries;
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public int getCount() {
+            return entries.size();
+        }
+
+        @Override
+        public ScanHistory.Entry getItem(int position) {
+            return entries.get(position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return entries.get(position).id;
+        }
+
+        @Override
+        public boolean hasStableIds() {
+            return true;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            View view = convertView != null ? convertView
+                    : LayoutInflater.from(context).inflate(android.R.layout.simple_list_item_2, parent, false);
+            TextView contentView = view.findViewById(android.R.id.text1);
+            TextView detailsView = view.findViewById(android.R.id.text2);
+            ScanHistory.Entry entry = getItem(position);
+            contentView.setMaxLines(2);
+            contentView.setEllipsize(TextUtils.TruncateAt.END);
+            contentView.setText(entry.preview);
+            detailsView.setText(context.getString(R.string.history_item_details,
+                    DateUtils.getRelativeTimeSpanString(entry.lastSeen), entry.seenCount, entry.length));
+            return view;
+        }
+    }
+}
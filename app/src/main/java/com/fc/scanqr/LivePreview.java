@@ -0,0 +1,152 @@
+package com.fc.scanqr;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shows the QR code of the chunk under the cursor while the user types.
+ * <p>
+ * Edits are debounced and only that chunk is encoded, on a single background thread; a
+ * newer edit supersedes any encode still in flight. The payload is prepared again from
+ * the previous one, so chunking and deflate start at the edited chunk, and the matrix
+ * goes through the shared {@link MatrixCache}. Frames before an edit stay the same under
+ * one payload id, so Make afterwards encodes only the frames the edit changed.
+ */
+public class LivePreview {
+    static final long DEBOUNCE_MS = 300;
+
+    private final ContentEditor editor;
+    private final ImageView imageView;
+    private final TextView labelView;
+    private final MatrixCache matrixCache;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final QRBitmapRenderer renderer = new QRBitmapRenderer();
+    private final Runnable refresh = this::refresh;
+    private CapacityPlanner.Profile profile = CapacityPlanner.Profile.BALANCED;
+    private int payloadId;
+    private boolean enabled;
+    /** Last payload prepared; only touched on the executor thread. */
+    private PreparedPayload prepared;
+
+    public LivePreview(ContentEditor editor, ImageView imageView, TextView labelView, MatrixCache matrixCache) {
+        this.editor = editor;
+        this.imageView = imageView;
+        this.labelView = labelView;
+        this.matrixCache = matrixCache;
+        executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "qr-preview");
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        mainHandler.removeCallbacks(refresh);
+        generation.incrementAndGet();
+        if (enabled) {
+            refresh();
+        } else {
+            imageView.setVisibility(View.GONE);
+            labelView.setVisibility(View.GONE);
+            imageView.setImageDrawable(null);
+        }
+    }
+
+    public void setProfile(CapacityPlanner.Profile profile) {
+        this.profile = profile;
+        if (enabled) refresh();
+    }
+
+    /**
+     * Sets the payload id frames are built with; use the one Make uses so they share
+     * matrices.
+     */
+    public void setPayloadId(int payloadId) {
+        this.payloadId = payloadId;
+        if (enabled) refresh();
+    }
+
+    /**
+     * Schedules a refresh once the text or cursor has been still for {@link #DEBOUNCE_MS}.
+     */
+    public void onEdited() {
+        if (!enabled) return;
+        mainHandler.removeCallbacks(refresh);
+        mainHandler.postDelayed(refresh, DEBOUNCE_MS);
+    }
+
+    public void shutdown() {
+        setEnabled(false);
+        executor.shutdownNow();
+    }
+
+    private void refresh() {
+        String content = editor.getContent();
+        int cursor = editor.getCursor();
+        CapacityPlanner.Profile currentProfile = profile;
+        int currentPayloadId = payloadId;
+        int token = generation.incrementAndGet();
+        if (content.isEmpty()) {
+            imageView.setVisibility(View.GONE);
+            labelView.setVisibility(View.GONE);
+            return;
+        }
+        executor.execute(() -> {
+            if (token != generation.get()) return;
+            prepared = PreparedPayload.prepare(content, currentProfile, currentPayloadId, prepared);
+            ChunkedPayload payload = prepared.getPayload();
+            int index = payload.chunkAt(cursor, content.length());
+            String frame = payload.getFrame(index);
+            FrameEncoder encoder = new FrameEncoder(prepared.getHints(), matrixCache);
+            BitMatrix matrix;
+            long start = QRMetrics.begin(QRMetrics.Stage.ENCODE);
+            try {
+                matrix = encoder.encode(frame);
+                QRMetrics.count(QRMetrics.Counter.CODES_ENCODED);
+            } catch (WriterException e) {
+                return;
+            } finally {
+                QRMetrics.end(QRMetrics.Stage.ENCODE, start);
+            }
+            if (token != generation.get()) return;
+            Bitmap bitmap = renderer.render(matrix, 1, null);
+            int count = payload.getCount();
+            mainHandler.post(() -> {
+                if (token != generation.get()) return;
+                show(bitmap, index, count);
+            });
+        });
+    }
+
+    private void show(Bitmap bitmap, int index, int count) {
+        // One pixel per module; scale up without smoothing
+        BitmapDrawable drawable = new BitmapDrawable(imageView.getResources(), bitmap);
+        drawable.setFilterBitmap(false);
+        imageView.setImageDrawable(drawable);
+        imageView.setVisibility(View.VISIBLE);
+        labelView.setText(labelView.getContext().getString(R.string.live_preview_chunk, index + 1, count));
+        labelView.setVisibility(View.VISIBLE);
+    }
+}
@@ -0,0 +1,139 @@
+package com.fc.scanqr;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import com.google.android.gms.tasks.Task;
+import com.google.mlkit.vision.barcode.BarcodeScanner;
+import com.google.mlkit.vision.barcode.BarcodeScannerOptions;
+import com.google.mlkit.vision.barcode.BarcodeScanning;
+import com.google.mlkit.vision.barcode.common.Barcode;
+import com.google.mlkit.vision.common.InputImage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Decodes with the ML Kit barcode scanner. The client, and with it the detection model,
+ * is created on first use. Callbacks run on {@code callbackExecutor}.
+ */
+public class MLKitDecoder implements QRDecoder {
+    private final Executor callbackExecutor;
+    private final boolean extraFormats;
+    private BarcodeScanner scanner;
+
+    public MLKitDecoder(Executor callbackExecutor) {
+        this(callbackExecutor, false);
+    }
+
+    public MLKitDecoder(Executor callbackExecutor, boolean extraFormats) {
+        this.callbackExecutor = callbackExecutor;
+        this.extraFormats = extraFormats;
+    }
+
+    @Override
+    public Engine getEngine() {
+        return Engine.ML_KIT;
+    }
+
+    @Override
+    public void decode(byte[] nv21, int width, int height, int rotationDegrees, Callback callback) {
+        process(InputImage.fromByteArray(nv21, width, height, rotationDegrees, InputImage.IMAGE_FORMAT_NV21),
+                callback);
+    }
+
+    @Override
+    public void decode(Bitmap bitmap, Callback callback) {
+        process(InputImage.fromBitmap(bitmap, 0), callback);
+    }
+
+    @Override
+    public void detect(byte[] nv21, int width, int height, int rotationDegrees, DetectionCallback callback) {
+        InputImage image = InputImage.fromByteArray(nv21, width, height, rotationDegrees,
+                InputImage.IMAGE_FORMAT_NV21);
+        // Boxes are reported in the upright image
+        boolean rotated = rotationDegrees % 180 != 0;
+        float uprightWidth = rotated ? height : width;
+        float uprightHeight = rotated ? width : height;
+        Task<List<Barcode>> task = getScanner().process(image);
+        task.addOnCompleteListener(callbackExecutor, result -> {
+            if (!result.isSuccessful()) {
+                QRMetrics.failed(result.getException());
+                callback.onResult(Collections.emptyList(), false);
+                return;
+            }
+            List<Detection> detections = new ArrayList<>();
+            for (Barcode barcode : result.getResult()) {
+                Rect box = barcode.getBoundingBox();
+                if (barcode.getRawValue() == null || box == null) continue;
+                detections.add(new Detection(barcode.getRawValue(), formatName(barcode.getFormat()),
+                        box.exactCenterX() / uprightWidth, box.exactCenterY() / uprightHeight));
+            }
+            callback.onResult(detections, true);
+        });
+    }
+
+    @Override
+    public void warmUp() {
+        getScanner();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scanner != null) {
+            scanner.close();
+            scanner = null;
+        }
+    }
+
+    private void process(InputImage image, Callback callback) {
+        Task<List<Barcode>> task = getScanner().process(image);
+        task.addOnCompleteListener(callbackExecutor, result -> {
+            if (!result.isSuccessful()) {
+                QRMetrics.failed(result.getException());
+                callback.onResult(Collections.emptyList(), false);
+                return;
+            }
+            List<String> values = new ArrayList<>();
+            for (Barcode barcode : result.getResult()) {
+                if (barcode.getRawValue() != null) {
+                    values.add(barcode.getRawValue());
+                }
+            }
+            callback.onResult(values, true);
+        });
+    }
+
+    private synchronized BarcodeScanner getScanner() {
+        if (scanner == null) {
+            BarcodeScannerOptions.Builder builder = new BarcodeScannerOptions.Builder();
+            if (extraFormats) {
+                builder.setBarcodeFormats(Barcode.FORMAT_QR_CODE, Barcode.FORMAT_DATA_MATRIX, Barcode.FORMAT_AZTEC,
+                        Barcode.FORMAT_CODE_128);
+            } else {
+                builder.setBarcodeFormats(Barcode.FORMAT_QR_CODE);
+            }
+            BarcodeScannerOptions options = builder.build();
+            scanner = BarcodeScanning.getClient(options);
+        }
+        return scanner;
+    }
+
+    /**
+     * Names formats the way ZXing's {@code BarcodeFormat} does.
+     */
+    private static String formatName(int format) {
+        switch (format) {
+            case Barcode.FORMAT_DATA_MATRIX:
+                return "DATA_MATRIX";
+            case Barcode.FORMAT_AZTEC:
+                return "AZTEC";
+            case Barcode.FORMAT_CODE_128:
+                return "CODE_128";
+            default:
+                return "QR_CODE";
+        }
+    }
+}
@@ -3,23 +3,26 @@ package com.fc.scanqr;
 import android.Manifest;
 import android.content.ClipData;
 import android.content.ClipboardManager;
-import android.content.ContentValues;
 import android.content.Context;
-import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Environment;
-import android.provider.MediaStore;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.text.Editable;
 import android.text.TextWatcher;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.ImageView;
+import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -29,11 +32,13 @@ import androidx.annotation.NonNull;
 import androidx.annotation.OptIn;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.camera.core.Camera;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ExperimentalGetImage;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
+import androidx.camera.core.ZoomState;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.app.ActivityCompat;
@@ -41,60 +46,87 @@ import androidx.core.content.ContextCompat;
 import androidx.viewpager2.widget.ViewPager2;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.mlkit.vision.barcode.BarcodeScanner;
-import com.google.mlkit.vision.barcode.BarcodeScannerOptions;
-import com.google.mlkit.vision.barcode.BarcodeScanning;
-import com.google.mlkit.vision.barcode.common.Barcode;
-import com.google.mlkit.vision.common.InputImage;
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.MultiFormatWriter;
 import com.google.zxing.WriterException;
 import com.google.zxing.common.BitMatrix;
-import com.google.zxing.EncodeHintType;
-import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @OptIn(markerClass = ExperimentalGetImage.class)
 public class MainActivity extends AppCompatActivity {
     private static final int PERMISSION_REQUEST_CODE = 100;
+    private static final String PREFS_NAME = "settings";
+    private static final String PREF_DECODER_ENGINE = "decoder_engine";
+    private static final String PREF_DENSITY_PROFILE = "density_profile";
+    private static final String PREF_METRICS_OVERLAY = "metrics_overlay";
+    private static final String PREF_MULTI_DETECT = "multi_detect";
+    private static final String PREF_EXTRA_FORMATS = "extra_formats";
+    /** Kept across rotation so frames already shown or cached stay valid. */
+    private static final String STATE_PAYLOAD_ID = "payload_id";
+    private static final int QR_OFFSCREEN_PAGE_LIMIT = 1;
+    private static final int FOUNTAIN_BLOCK_SIZE = 400;
+    private static final long DUPLICATE_WINDOW_MS = 2000;
+    // Async trace section from the Scan tap to the first analyzed frame, read by macrobenchmark
+    private static final String TRACE_SCAN_FIRST_FRAME = "ScanFirstFrame";
+    private static final int MATRIX_CACHE_BYTES = 4 * 1024 * 1024;
     private static final String[] REQUIRED_PERMISSIONS = Build.VERSION.SDK_INT <= Build.VERSION_CODES.P ?
             new String[] { Manifest.permission.CAMERA, Manifest.permission.WRITE_EXTERNAL_STORAGE } :
             new String[] { Manifest.permission.CAMERA };
 
     private PreviewView previewView;
     private View scanAreaOverlay;
+    private View scanRegionView;
     private EditText qrContentEditText;
     private View scanButton;
     private View makeButton;
     private View clearButton;
     private View copyButton;
     private View galleryButton;
-    private View scanNotification;
+    private View livePreviewButton;
+    private View historyButton;
+    private TextView scanNotification;
 
+    private ListenableFuture<ProcessCameraProvider> cameraProviderFuture;
     private ProcessCameraProvider cameraProvider;
-    private BarcodeScanner barcodeScanner;
+    private boolean startScanWhenCameraReady;
+    private Camera camera;
+    private volatile QRDecoder decoder;
     private ExecutorService cameraExecutor;
+    private BatchImageScanner batchImageScanner;
+    private QRImageSaver qrImageSaver;
+    private ContentEditor contentEditor;
+    private MatrixCache matrixCache;
+    private QREncodePipeline encodePipeline;
+    private LivePreview livePreview;
+    private int payloadId;
+    private MetricsOverlay metricsOverlay;
+    private ScanHistory scanHistory;
+    private final FountainDecoder fountainDecoder = new FountainDecoder();
+    private final ChunkAssembler chunkAssembler = new ChunkAssembler();
+    private final FrameThrottle frameThrottle = new FrameThrottle(1.0, 0.5);
+    private final DuplicateFilter duplicateFilter = new DuplicateFilter(DUPLICATE_WINDOW_MS);  // analyzer thread only
+    private final RegionCropper regionCropper = new RegionCropper();  // analyzer thread only
+    private final CodeTracker codeTracker = new CodeTracker();  // analyzer thread only
+    private final List<String> sheetValues = new ArrayList<>();
+    private volatile boolean multiDetect;
+    private boolean extraFormats;
+    private volatile int previewWidth;
+    private volatile int previewHeight;
     private boolean isScanningEnabled = false;
+    private final AtomicBoolean awaitingFirstFrame = new AtomicBoolean();
 
-    private final ActivityResultLauncher<Intent> galleryLauncher = registerForActivityResult(
-            new ActivityResultContracts.StartActivityForResult(),
-            result -> {
-                if (result.getResultCode() == RESULT_OK && result.getData() != null) {
-                    Uri imageUri = result.getData().getData();
-                    if (imageUri != null) {
-                        scanQRFromImage(imageUri);
-                    }
+    private final ActivityResultLauncher<String> galleryLauncher = registerForActivityResult(
+            new ActivityResultContracts.GetMultipleContents(),
+            uris -> {
+                if (uris != null && !uris.isEmpty()) {
+                    scanQRFromImages(uris);
                 }
             });
 
@@ -111,35 +143,81 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         initializeViews();
+        payloadId = savedInstanceState != null ? savedInstanceState.getInt(STATE_PAYLOAD_ID) : new Random().nextInt();
+        livePreview.setPayloadId(payloadId);
         setupListeners();
-        initializeCamera();
+        scheduleWarmUp();
+    }
+
+    /**
+     * Nothing on the generate path needs the camera or the detection model, so they are
+     * prepared only once the first frame is drawn and the main thread goes idle.
+     */
+    private void scheduleWarmUp() {
+        Looper.myQueue().addIdleHandler(() -> {
+            if (!isDestroyed()) {
+                initializeCamera();
+                QRDecoder warmDecoder = decoder;
+                cameraExecutor.execute(warmDecoder::warmUp);
+            }
+            return false;
+        });
     }
 
     private void initializeViews() {
         previewView = findViewById(R.id.previewView);
         scanAreaOverlay = findViewById(R.id.scanAreaOverlay);
+        scanRegionView = findViewById(R.id.scanRegionView);
         qrContentEditText = findViewById(R.id.qrContentEditText);
         scanButton = findViewById(R.id.scanButtonContainer);
         makeButton = findViewById(R.id.makeButtonContainer);
         clearButton = findViewById(R.id.clearButtonContainer);
         copyButton = findViewById(R.id.copyButtonContainer);
         galleryButton = findViewById(R.id.galleryButton);
+        livePreviewButton = findViewById(R.id.livePreviewButton);
+        historyButton = findViewById(R.id.historyButton);
         scanNotification = findViewById(R.id.scanNotification);
 
-        // Initialize barcode scanner
-        BarcodeScannerOptions options = new BarcodeScannerOptions.Builder()
-                .setBarcodeFormats(Barcode.FORMAT_QR_CODE)
-                .build();
-        barcodeScanner = BarcodeScanning.getClient(options);
         cameraExecutor = Executors.newSingleThreadExecutor();
+        batchImageScanner = new BatchImageScanner(getContentResolver());
+        qrImageSaver = new QRImageSaver(getContentResolver());
+        scanHistory = new ScanHistory(this);
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        multiDetect = prefs.getBoolean(PREF_MULTI_DETECT, false);
+        extraFormats = prefs.getBoolean(PREF_EXTRA_FORMATS, false);
+        decoder = createDecoder(loadDecoderEngine());
+        matrixCache = new MatrixCache(MATRIX_CACHE_BYTES, new File(getCacheDir(), "qr-matrices"));
+        encodePipeline = new QREncodePipeline();
+        contentEditor = new ContentEditor(qrContentEditText);
+        livePreview = new LivePreview(contentEditor, findViewById(R.id.livePreviewImage),
+                findViewById(R.id.livePreviewLabel), matrixCache);
+        metricsOverlay = new MetricsOverlay(findViewById(R.id.metricsOverlay));
+        metricsOverlay.setShown(getSharedPreferences(PREFS_NAME, MODE_PRIVATE)
+                .getBoolean(PREF_METRICS_OVERLAY, false));
     }
 
     private void setupListeners() {
         scanButton.setOnClickListener(v -> toggleScanning());
+        scanButton.setOnLongClickListener(v -> {
+            showDecoderChooser();
+            return true;
+        });
         makeButton.setOnClickListener(v -> generateQRCode());
-        clearButton.setOnClickListener(v -> qrContentEditText.setText(""));
+        makeButton.setOnLongClickListener(v -> {
+            showProfileChooser();
+            return true;
+        });
+        clearButton.setOnClickListener(v -> {
+            contentEditor.clear();
+            // A new document; frames of the old one must not be taken for its chunks
+            payloadId = new Random().nextInt();
+            livePreview.setPayloadId(payloadId);
+        });
         copyButton.setOnClickListener(v -> copyToClipboard());
         galleryButton.setOnClickListener(v -> openGallery());
+        livePreviewButton.setOnClickListener(v -> toggleLivePreview());
+        historyButton.setOnClickListener(v -> new HistoryDialog(this, scanHistory, this::appendScannedText).show());
+        setupZoomGestures();
 
         qrContentEditText.addTextChangedListener(new TextWatcher() {
             @Override
@@ -152,22 +230,186 @@ public class MainActivity extends AppCompatActivity {
             public void afterTextChanged(Editable s) {
                 if (qrContentEditText.hasFocus()) {
                     stopScanning();
+                    encodePipeline.cancel();
                 }
+                livePreview.onEdited();
             }
         });
+        // Follow the cursor to the chunk it is in
+        qrContentEditText.setOnClickListener(v -> livePreview.onEdited());
     }
 
+    private void toggleLivePreview() {
+        if (livePreview.isEnabled()) {
+            livePreview.setEnabled(false);
+            return;
+        }
+        stopScanning();
+        livePreview.setProfile(loadDensityProfile());
+        livePreview.setEnabled(true);
+    }
+
+    /**
+     * Starts CameraX initialization if it has not started yet. A scan requested in the
+     * meantime begins as soon as the provider is ready.
+     */
     private void initializeCamera() {
-        ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(this);
-        cameraProviderFuture.addListener(() -> {
+        if (cameraProviderFuture != null) return;
+        ListenableFuture<ProcessCameraProvider> future = ProcessCameraProvider.getInstance(this);
+        cameraProviderFuture = future;
+        future.addListener(() -> {
             try {
-                cameraProvider = cameraProviderFuture.get();
+                cameraProvider = future.get();
             } catch (ExecutionException | InterruptedException e) {
+                cameraProviderFuture = null;
+                startScanWhenCameraReady = false;
                 Toast.makeText(this, getString(R.string.error_scanning_qr), Toast.LENGTH_SHORT).show();
+                return;
+            }
+            if (startScanWhenCameraReady && !isDestroyed()) {
+                startScanWhenCameraReady = false;
+                startScanning();
             }
         }, ContextCompat.getMainExecutor(this));
     }
 
+    private QRDecoder createDecoder(QRDecoder.Engine engine) {
+        return engine == QRDecoder.Engine.ZXING ? new ZXingDecoder(false, extraFormats)
+                : new MLKitDecoder(cameraExecutor, extraFormats);
+    }
+
+    private QRDecoder.Engine loadDecoderEngine() {
+        String name = getSharedPreferences(PREFS_NAME, MODE_PRIVATE)
+                .getString(PREF_DECODER_ENGINE, QRDecoder.Engine.ML_KIT.name());
+        try {
+            return QRDecoder.Engine.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return QRDecoder.Engine.ML_KIT;
+        }
+    }
+
+    /**
+     * Lets the user switch detection backends; the title shows the current one's
+     * average latency per analyzed frame for comparison. Two more items toggle
+     * multi-code scanning and extra formats, and the neutral button toggles the
+     * metrics overlay.
+     */
+    private void showDecoderChooser() {
+        QRDecoder.Engine[] engines = QRDecoder.Engine.values();
+        String[] labels = new String[engines.length + 2];
+        for (int i = 0; i < engines.length; i++) {
+            labels[i] = getDecoderLabel(engines[i]);
+        }
+        labels[engines.length] = getToggleLabel(R.string.multi_detect, multiDetect);
+        labels[engines.length + 1] = getToggleLabel(R.string.extra_formats, extraFormats);
+        long latencyMs = frameThrottle.getAverageLatencyNanos() / 1_000_000L;
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.decoder_title, getDecoderLabel(decoder.getEngine()), latencyMs))
+                .setItems(labels, (dialog, which) -> {
+                    if (which < engines.length) {
+                        setDecoderEngine(engines[which]);
+                    } else if (which == engines.length) {
+                        setMultiDetect(!multiDetect);
+                    } else {
+                        setExtraFormats(!extraFormats);
+                    }
+                })
+                .setNeutralButton(metricsOverlay.isShown() ? R.string.metrics_hide : R.string.metrics_show,
+                        (dialog, which) -> toggleMetricsOverlay())
+                .create()
+                .show();
+    }
+
+    private String getToggleLabel(int labelId, boolean on) {
+        return (on ? "✓ " : "") + getString(labelId);
+    }
+
+    private void setMultiDetect(boolean enabled) {
+        getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                .putBoolean(PREF_MULTI_DETECT, enabled)
+                .apply();
+        if (isScanningEnabled) {
+            stopScanning();
+        }
+        multiDetect = enabled;
+    }
+
+    private void setExtraFormats(boolean enabled) {
+        getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                .putBoolean(PREF_EXTRA_FORMATS, enabled)
+                .apply();
+        extraFormats = enabled;
+        QRDecoder previous = decoder;
+        decoder = createDecoder(previous.getEngine());
+        cameraExecutor.execute(previous::close);
+    }
+
+    private void toggleMetricsOverlay() {
+        boolean shown = !metricsOverlay.isShown();
+        metricsOverlay.setShown(shown);
+        getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                .putBoolean(PREF_METRICS_OVERLAY, shown)
+                .apply();
+    }
+
+    private String getDecoderLabel(QRDecoder.Engine engine) {
+        return getString(engine == QRDecoder.Engine.ZXING ? R.string.decoder_zxing : R.string.decoder_ml_kit);
+    }
+
+    private void setDecoderEngine(QRDecoder.Engine engine) {
+        if (engine == decoder.getEngine()) return;
+        getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                .putString(PREF_DECODER_ENGINE, engine.name())
+                .apply();
+        QRDecoder previous = decoder;
+        decoder = createDecoder(engine);
+        frameThrottle.reset();
+        // Close on the analyzer thread so a frame in flight finishes with the old backend
+        cameraExecutor.execute(previous::close);
+    }
+
+    private CapacityPlanner.Profile loadDensityProfile() {
+        String name = getSharedPreferences(PREFS_NAME, MODE_PRIVATE)
+                .getString(PREF_DENSITY_PROFILE, CapacityPlanner.Profile.BALANCED.name());
+        try {
+            return CapacityPlanner.Profile.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return CapacityPlanner.Profile.BALANCED;
+        }
+    }
+
+    /**
+     * Lets the user pick how dense generated codes are; the title shows the current profile.
+     */
+    private void showProfileChooser() {
+        CapacityPlanner.Profile[] profiles = CapacityPlanner.Profile.values();
+        String[] labels = new String[profiles.length];
+        for (int i = 0; i < profiles.length; i++) {
+            labels[i] = getProfileLabel(profiles[i]);
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.density_title, getProfileLabel(loadDensityProfile())))
+                .setItems(labels, (dialog, which) -> {
+                    getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                            .putString(PREF_DENSITY_PROFILE, profiles[which].name())
+                            .apply();
+                    livePreview.setProfile(profiles[which]);
+                })
+                .create()
+                .show();
+    }
+
+    private String getProfileLabel(CapacityPlanner.Profile profile) {
+        switch (profile) {
+            case SCREEN_FAST:
+                return getString(R.string.density_screen_fast);
+            case PRINT_ROBUST:
+                return getString(R.string.density_print_robust);
+            default:
+                return getString(R.string.density_balanced);
+        }
+    }
+
     private void toggleScanning() {
         if (!isScanningEnabled) {
             if (checkPermissions()) {
@@ -228,189 +470,390 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void startScanning() {
-        if (cameraProvider == null) return;
+        livePreview.setEnabled(false);
+        if (awaitingFirstFrame.compareAndSet(false, true) && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(TRACE_SCAN_FIRST_FRAME, 0);
+        }
+        if (cameraProvider == null) {
+            startScanWhenCameraReady = true;
+            initializeCamera();
+            return;
+        }
 
-        Preview preview = new Preview.Builder().build();
+        Preview preview = new Preview.Builder()
+                .setResolutionSelector(ScanConfig.previewResolutionSelector())
+                .build();
         CameraSelector cameraSelector = new CameraSelector.Builder()
                 .requireLensFacing(CameraSelector.LENS_FACING_BACK)
                 .build();
 
         ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
+                .setResolutionSelector(ScanConfig.analysisResolutionSelector())
                 .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                 .build();
 
+        frameThrottle.reset();
+        cameraExecutor.execute(duplicateFilter::clear);
+        cameraExecutor.execute(codeTracker::clear);
+        sheetValues.clear();
         imageAnalysis.setAnalyzer(cameraExecutor, this::analyzeImage);
 
         try {
             cameraProvider.unbindAll();
-            cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageAnalysis);
+            camera = cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageAnalysis);
             preview.setSurfaceProvider(previewView.getSurfaceProvider());
 
             isScanningEnabled = true;
             previewView.setVisibility(View.VISIBLE);
             scanAreaOverlay.setVisibility(View.GONE);
-            scanNotification.setVisibility(View.GONE);
+            if (multiDetect) {
+                scanNotification.setText(getString(R.string.multi_scan_progress, 0));
+                scanNotification.setVisibility(View.VISIBLE);
+            } else {
+                scanNotification.setVisibility(View.GONE);
+            }
+            previewView.post(this::updateScanRegion);
         } catch (Exception e) {
             Toast.makeText(this, getString(R.string.error_scanning_qr), Toast.LENGTH_SHORT).show();
         }
     }
 
+    /**
+     * Sizes the scan frame drawn over the preview to the region cropped for detection.
+     */
+    private void updateScanRegion() {
+        previewWidth = previewView.getWidth();
+        previewHeight = previewView.getHeight();
+        int side = (int) (ScanConfig.REGION_FRACTION * Math.min(previewWidth, previewHeight));
+        ViewGroup.LayoutParams params = scanRegionView.getLayoutParams();
+        params.width = side;
+        params.height = side;
+        scanRegionView.setLayoutParams(params);
+        // A sheet is read from the whole frame
+        scanRegionView.setVisibility(isScanningEnabled && !multiDetect ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Pinch to zoom and double tap to toggle zoom on the preview, for small or dense codes.
+     */
+    private void setupZoomGestures() {
+        ScaleGestureDetector scaleDetector = new ScaleGestureDetector(this,
+                new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                    @Override
+                    public boolean onScale(@NonNull ScaleGestureDetector detector) {
+                        ZoomState zoomState = camera == null ? null : camera.getCameraInfo().getZoomState().getValue();
+                        if (zoomState == null) return false;
+                        float ratio = zoomState.getZoomRatio() * detector.getScaleFactor();
+                        camera.getCameraControl().setZoomRatio(Math.max(zoomState.getMinZoomRatio(),
+                                Math.min(zoomState.getMaxZoomRatio(), ratio)));
+                        return true;
+                    }
+                });
+        GestureDetector tapDetector = new GestureDetector(this, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDoubleTap(@NonNull MotionEvent e) {
+                ZoomState zoomState = camera == null ? null : camera.getCameraInfo().getZoomState().getValue();
+                if (zoomState == null) return false;
+                float target = zoomState.getZoomRatio() > 1f ? 1f
+                        : Math.min(ScanConfig.DOUBLE_TAP_ZOOM_RATIO, zoomState.getMaxZoomRatio());
+                camera.getCameraControl().setZoomRatio(target);
+                return true;
+            }
+        });
+        previewView.setOnTouchListener((v, event) -> {
+            scaleDetector.onTouchEvent(event);
+            tapDetector.onTouchEvent(event);
+            return true;
+        });
+    }
+
     private void stopScanning() {
+        finishSheet();
+        startScanWhenCameraReady = false;
+        endFirstFrameTrace();
         if (cameraProvider != null) {
             cameraProvider.unbindAll();
         }
+        camera = null;
         isScanningEnabled = false;
         previewView.setVisibility(View.GONE);
+        scanRegionView.setVisibility(View.GONE);
         scanAreaOverlay.setVisibility(View.VISIBLE);
+        scanNotification.setText(R.string.scan_notification);
         scanNotification.setVisibility(View.VISIBLE);
     }
 
+    private void endFirstFrameTrace() {
+        if (awaitingFirstFrame.compareAndSet(true, false) && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(TRACE_SCAN_FIRST_FRAME, 0);
+        }
+    }
+
     @OptIn(markerClass = ExperimentalGetImage.class)
     private void analyzeImage(ImageProxy imageProxy) {
+        endFirstFrameTrace();
+        if (!frameThrottle.tryAcquire(SystemClock.elapsedRealtimeNanos())) {
+            QRMetrics.count(QRMetrics.Counter.FRAMES_DROPPED);
+            imageProxy.close();
+            return;
+        }
+        QRMetrics.count(QRMetrics.Counter.FRAMES_ANALYZED);
+        long start = QRMetrics.begin(QRMetrics.Stage.DECODE);
+        FrameResult result = null;
         try {
-            InputImage image = InputImage.fromMediaImage(
-                    imageProxy.getImage(),
-                    imageProxy.getImageInfo().getRotationDegrees()
-            );
-
-            barcodeScanner.process(image)
-                    .addOnSuccessListener(barcodes -> {
-                        for (Barcode barcode : barcodes) {
-                            if (barcode.getRawValue() != null) {
-                                runOnUiThread(() -> {
-                                    String currentText = qrContentEditText.getText().toString();
-                                    String newText = currentText + barcode.getRawValue();
-                                    qrContentEditText.setText(newText);
-                                });
-                                stopScanning();
-                                break;
-                            }
-                        }
-                    })
-                    .addOnCompleteListener(task -> imageProxy.close());
+            // Only the scan region's luminance goes to the detector
+            int rotation = imageProxy.getImageInfo().getRotationDegrees();
+            ImageProxy.PlaneProxy luminance = imageProxy.getPlanes()[0];
+            if (multiDetect) {
+                SheetResult sheetResult = new SheetResult(imageProxy, start);
+                result = sheetResult;
+                detectSheet(imageProxy, rotation, luminance, sheetResult);
+                return;
+            }
+            int[] region = RegionCropper.centeredSquare(imageProxy.getWidth(), imageProxy.getHeight(),
+                    rotation, previewWidth, previewHeight, ScanConfig.REGION_FRACTION);
+            byte[] nv21 = regionCropper.cropToNv21(luminance.getBuffer(), luminance.getRowStride(), region);
+            DecodeResult decodeResult = new DecodeResult(imageProxy, start);
+            result = decodeResult;
+            decoder.decode(nv21, region[2], region[3], rotation, decodeResult);
         } catch (Exception e) {
+            if (result != null) {
+                result.endDecode();
+            } else {
+                QRMetrics.end(QRMetrics.Stage.DECODE, start);
+            }
+            QRMetrics.failed(e);
+            frameThrottle.release(SystemClock.elapsedRealtimeNanos(), false);
             imageProxy.close();
         }
     }
 
-    private void generateQRCode() {
-        String content = qrContentEditText.getText().toString();
-        if (content.isEmpty()) {
-            Toast.makeText(this, getString(R.string.error_creating_qr), Toast.LENGTH_SHORT).show();
-            return;
+    /**
+     * Multi-code mode: reads every code in the whole frame and reports only codes the
+     * tracker has not seen before. Values are kept until scanning stops.
+     */
+    private void detectSheet(ImageProxy imageProxy, int rotation, ImageProxy.PlaneProxy luminance,
+                             SheetResult result) {
+        int[] region = {0, 0, imageProxy.getWidth() & ~1, imageProxy.getHeight() & ~1};
+        byte[] nv21 = regionCropper.cropToNv21(luminance.getBuffer(), luminance.getRowStride(), region);
+        decoder.detect(nv21, region[2], region[3], rotation, result);
+    }
+
+    /**
+     * Receives the result of one analyzed frame. The callback ends the frame's decode
+     * stage and may then throw into {@link #analyzeImage}'s catch, so the object that is
+     * already allocated per frame also records that the stage has ended.
+     */
+    private abstract static class FrameResult {
+        final ImageProxy imageProxy;
+        private final long start;
+        private boolean decodeEnded;  // guarded by this
+
+        FrameResult(ImageProxy imageProxy, long start) {
+            this.imageProxy = imageProxy;
+            this.start = start;
         }
 
-        List<Bitmap> qrBitmaps = new ArrayList<>();
+        synchronized void endDecode() {
+            if (!decodeEnded) {
+                decodeEnded = true;
+                QRMetrics.end(QRMetrics.Stage.DECODE, start);
+            }
+        }
+    }
 
-        try {
-            // Create encoding hints for UTF-8
-            Map<EncodeHintType, Object> hints = new HashMap<>();
-            hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
-            hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M);
-            hints.put(EncodeHintType.MARGIN, 2);
-
-            // Split content into chunks if it exceeds 400 bytes
-            byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
-            if (contentBytes.length > 400) {
-                List<String> chunks = splitContent(content);
-                for (String chunk : chunks) {
-                    BitMatrix bitMatrix = new MultiFormatWriter().encode(
-                            chunk,
-                            BarcodeFormat.QR_CODE,
-                            461,
-                            461,
-                            hints
-                    );
-                    qrBitmaps.add(createBitmapFromBitMatrix(bitMatrix));
+    /** Filters on the analyzer thread and posts only new values to the UI, in one batch. */
+    private final class DecodeResult extends FrameResult implements QRDecoder.Callback {
+        DecodeResult(ImageProxy imageProxy, long start) {
+            super(imageProxy, start);
+        }
+
+        @Override
+        public void onResult(List<String> values, boolean success) {
+            endDecode();
+            if (!values.isEmpty()) {
+                QRMetrics.count(QRMetrics.Counter.FRAMES_DECODED);
+            }
+            List<String> newValues = new ArrayList<>();
+            long now = SystemClock.elapsedRealtime();
+            for (String value : values) {
+                if (duplicateFilter.accept(value, now)) {
+                    newValues.add(value);
                 }
-            } else {
-                BitMatrix bitMatrix = new MultiFormatWriter().encode(
-                        content,
-                        BarcodeFormat.QR_CODE,
-                        461,
-                        461,
-                        hints
-                );
-                qrBitmaps.add(createBitmapFromBitMatrix(bitMatrix));
             }
-
-            if (!qrBitmaps.isEmpty()) {
-                showQRDialog(qrBitmaps);
-            } else {
-                Toast.makeText(this, getString(R.string.error_creating_qr), Toast.LENGTH_SHORT).show();
+            frameThrottle.release(SystemClock.elapsedRealtimeNanos(), !values.isEmpty());
+            imageProxy.close();
+            if (!newValues.isEmpty()) {
+                runOnUiThread(() -> handleScannedValues(newValues));
             }
-        } catch (WriterException e) {
-            Toast.makeText(this, getString(R.string.error_creating_qr), Toast.LENGTH_SHORT).show();
         }
     }
 
-    private List<String> splitContent(String content) {
-        List<String> chunks = new ArrayList<>();
-        int maxBytes = 400;  // Maximum bytes per QR code
-        
-        int startIndex = 0;
-        while (startIndex < content.length()) {
-            int endIndex = startIndex;
-            int currentChunkBytes = 0;
-            
-            // Try to add characters until we hit the byte limit
-            while (endIndex < content.length()) {
-                String nextChar = content.substring(endIndex, Math.min(endIndex + 1, content.length()));
-                int nextCharBytes = nextChar.getBytes(StandardCharsets.UTF_8).length;
-                
-                // If adding next character would exceed the limit, break
-                if (currentChunkBytes + nextCharBytes > maxBytes) {
-                    break;
-                }
-                
-                currentChunkBytes += nextCharBytes;
-                endIndex++;
+    private final class SheetResult extends FrameResult implements QRDecoder.DetectionCallback {
+        SheetResult(ImageProxy imageProxy, long start) {
+            super(imageProxy, start);
+        }
+
+        @Override
+        public void onResult(List<QRDecoder.Detection> detections, boolean success) {
+            endDecode();
+            if (!detections.isEmpty()) {
+                QRMetrics.count(QRMetrics.Counter.FRAMES_DECODED);
             }
-            
-            // If we couldn't add even one character (shouldn't happen with 400 byte limit)
-            if (endIndex == startIndex) {
-                endIndex = startIndex + 1;  // Force include at least one character
+            List<QRDecoder.Detection> found = codeTracker.update(detections);
+            frameThrottle.release(SystemClock.elapsedRealtimeNanos(), !detections.isEmpty());
+            imageProxy.close();
+            if (!found.isEmpty()) {
+                List<String> values = new ArrayList<>(found.size());
+                for (QRDecoder.Detection detection : found) {
+                    values.add(detection.value);
+                }
+                runOnUiThread(() -> addSheetValues(values));
             }
-            
-            // Add the chunk
-            chunks.add(content.substring(startIndex, endIndex));
-            startIndex = endIndex;
         }
-        
-        return chunks;
     }
 
-    private Bitmap createBitmapFromBitMatrix(BitMatrix bitMatrix) {
-        int width = bitMatrix.getWidth();
-        int height = bitMatrix.getHeight();
-        int[] pixels = new int[width * height];
-        
-        // Convert bit matrix to pixel array
-        for (int y = 0; y < height; y++) {
-            int offset = y * width;
-            for (int x = 0; x < width; x++) {
-                pixels[offset + x] = bitMatrix.get(x, y) ? 0xFF000000 : 0xFFFFFFFF;
+    private void addSheetValues(List<String> values) {
+        if (!isScanningEnabled || !multiDetect) return;
+        sheetValues.addAll(values);
+        scanNotification.setText(getString(R.string.multi_scan_progress, sheetValues.size()));
+        scanNotification.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Emits the codes collected in multi-code mode as one batch, in the order they were
+     * first seen. Identical codes at different places are all kept.
+     */
+    private void finishSheet() {
+        if (sheetValues.isEmpty()) return;
+        List<String> values = new ArrayList<>(sheetValues);
+        sheetValues.clear();
+        BatchCollector collector = new BatchCollector("\n", true);
+        collector.add(values);
+        if (collector.isEmpty()) return;
+        recordScan(collector.getText(), ScanHistory.Source.CAMERA, ScanHistory.Kind.BATCH, values.size());
+        appendScannedText(collector.getText());
+    }
+
+    private void handleScannedValues(List<String> rawValues) {
+        for (String rawValue : rawValues) {
+            if (!isScanningEnabled) return;
+            if (FountainDecoder.isFrame(rawValue)) {
+                receiveFountainFrame(rawValue);
+            } else if (ChunkAssembler.isChunk(rawValue)) {
+                receiveChunk(rawValue);
+            } else {
+                recordScan(rawValue, ScanHistory.Source.CAMERA, ScanHistory.Kind.PLAIN, 1);
+                appendScannedText(rawValue);
+                stopScanning();
             }
         }
-        
-        // Create the bitmap
-        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
-        
-        return bitmap;
     }
 
-    private void showQRDialog(List<Bitmap> qrBitmaps) {
+    private void receiveFountainFrame(String frame) {
+        if (!isScanningEnabled) return;
+        try {
+            fountainDecoder.addFrame(frame);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+
+        if (!fountainDecoder.isComplete()) {
+            scanNotification.setText(getString(R.string.receiving_progress,
+                    (int) (fountainDecoder.getProgress() * 100)));
+            scanNotification.setVisibility(View.VISIBLE);
+            return;
+        }
+
+        byte[] payload = fountainDecoder.getPayload();
+        int frames = fountainDecoder.getReceivedCount();
+        fountainDecoder.reset();
+        if (payload == null) {
+            Toast.makeText(this, getString(R.string.error_scanning_qr), Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String text = new String(payload, StandardCharsets.UTF_8);
+        recordScan(text, ScanHistory.Source.CAMERA, ScanHistory.Kind.FOUNTAIN, frames);
+        appendScannedText(text);
+        stopScanning();
+    }
+
+    /**
+     * Feeds one frame of a multi-part code to the assembler. The camera keeps running
+     * until every chunk has arrived with a valid checksum.
+     */
+    private void receiveChunk(String frame) {
+        if (!isScanningEnabled) return;
+        ChunkAssembler.Status status = chunkAssembler.add(frame);
+        if (status == ChunkAssembler.Status.INVALID) return;
+
+        if (status != ChunkAssembler.Status.COMPLETE) {
+            scanNotification.setText(chunkProgress());
+            scanNotification.setVisibility(View.VISIBLE);
+            return;
+        }
+
+        recordScan(chunkAssembler.getText(), ScanHistory.Source.CAMERA, ScanHistory.Kind.CHUNKED,
+                chunkAssembler.getTotal());
+        appendScannedText(chunkAssembler.getText());
+        chunkAssembler.reset();
+        stopScanning();
+    }
+
+    /**
+     * Queues a scanned value for the history; the write happens in the background.
+     */
+    private void recordScan(String text, ScanHistory.Source source, ScanHistory.Kind kind, int symbols) {
+        scanHistory.record(text, source, kind, symbols, decoder.getEngine());
+    }
+
+    private void appendScannedText(String text) {
+        if (contentEditor.append(text)) {
+            Toast.makeText(this, getString(R.string.content_truncated, ContentEditor.VIEW_LIMIT),
+                    Toast.LENGTH_LONG).show();
+        }
+    }
+
+    private void generateQRCode() {
+        String content = contentEditor.getContent();
+        if (content.isEmpty()) {
+            Toast.makeText(this, getString(R.string.error_creating_qr), Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        CapacityPlanner.Profile profile = loadDensityProfile();
+        PreparedPayload prepared = PreparedPayload.prepare(content, profile, payloadId);
+        ChunkedPayload payload = prepared.getPayload();
+        QRPagerAdapter adapter = new QRPagerAdapter(payload.getCount(), QR_OFFSCREEN_PAGE_LIMIT);
+
+        encodePipeline.start(payload, new FrameEncoder(prepared.getHints(), matrixCache), new QREncodePipeline.Listener() {
+            @Override
+            public void onChunkEncoded(int index, BitMatrix bitMatrix) {
+                adapter.setMatrix(index, bitMatrix);
+                if (index == 0) {
+                    showQRDialog(adapter, payload.getPayloadIdHex(), content, profile.getModulePixels());
+                }
+            }
+
+            @Override
+            public void onComplete() {}
+
+            @Override
+            public void onError(WriterException e) {
+                Toast.makeText(MainActivity.this, getString(R.string.error_creating_qr), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void showQRDialog(QRPagerAdapter adapter, String payloadIdHex, String content, int modulePixels) {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         View dialogView = getLayoutInflater().inflate(R.layout.dialog_qr_display, null);
         
         ViewPager2 viewPager = dialogView.findViewById(R.id.qrViewPager);
         TextView pageIndicator = dialogView.findViewById(R.id.pageIndicator);
         
-        viewPager.setOffscreenPageLimit(1);
+        viewPager.setOffscreenPageLimit(QR_OFFSCREEN_PAGE_LIMIT);
         viewPager.setUserInputEnabled(true);
-        
-        QRPagerAdapter adapter = new QRPagerAdapter(qrBitmaps);
         viewPager.setAdapter(adapter);
         
         // Get the text color based on the current theme
@@ -425,25 +868,37 @@ public class MainActivity extends AppCompatActivity {
             textColor = 0xFF000000;
         }
         
-        if (qrBitmaps.size() > 1) {
+        int pageCount = adapter.getItemCount();
+        if (pageCount > 1) {
             pageIndicator.setVisibility(View.VISIBLE);
-            pageIndicator.setText(String.format("1/%d", qrBitmaps.size()));
+            pageIndicator.setText(String.format("1/%d", pageCount));
             pageIndicator.setTextColor(textColor);
             
             viewPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
                 @Override
                 public void onPageSelected(int position) {
-                    pageIndicator.setText(String.format("%d/%d", position + 1, qrBitmaps.size()));
+                    pageIndicator.setText(String.format("%d/%d", position + 1, pageCount));
                 }
             });
         } else {
             pageIndicator.setVisibility(View.GONE);
         }
+
+        QRAnimator animator = setupAnimation(dialogView, viewPager, pageIndicator, content);
         
         builder.setView(dialogView)
                .setPositiveButton(android.R.string.ok, null)
                .setNeutralButton(R.string.save, (dialog, which) -> {
-                   saveQRCodes(qrBitmaps);
+                   if (adapter.isComplete()) {
+                       saveQRCodes(payloadIdHex, adapter.getMatrices(), modulePixels);
+                   } else {
+                       Toast.makeText(this, getString(R.string.qr_still_generating), Toast.LENGTH_SHORT).show();
+                   }
+               })
+               .setOnDismissListener(dialog -> {
+                   encodePipeline.cancel();
+                   animator.stop();
+                   adapter.release();
                });
         
         AlertDialog dialog = builder.create();
@@ -454,33 +909,82 @@ public class MainActivity extends AppCompatActivity {
         dialog.getButton(AlertDialog.BUTTON_NEUTRAL).setTextColor(textColor);
     }
 
-    private void saveQRCodes(List<Bitmap> qrBitmaps) {
-        int index = 0;
-        for (Bitmap bitmap : qrBitmaps) {
-            String fileName = "QR_" + System.currentTimeMillis() + "_" + index + ".png";
+    /**
+     * Wires the animate toggle that replaces the pager with fountain-coded frames of
+     * {@code content} cycling at the rate picked on the seek bar.
+     */
+    private QRAnimator setupAnimation(View dialogView, ViewPager2 viewPager, TextView pageIndicator,
+                                      String content) {
+        ImageView animationView = dialogView.findViewById(R.id.qrAnimationView);
+        TextView animateButton = dialogView.findViewById(R.id.animateButton);
+        SeekBar fpsSeekBar = dialogView.findViewById(R.id.fpsSeekBar);
+        TextView fpsLabel = dialogView.findViewById(R.id.fpsLabel);
+
+        QRAnimator animator = new QRAnimator(animationView,
+                new FountainEncoder(content.getBytes(StandardCharsets.UTF_8), FOUNTAIN_BLOCK_SIZE));
+        fpsSeekBar.setMax(QRAnimator.MAX_FPS - 1);
+        fpsSeekBar.setProgress(animator.getFps() - 1);
+        fpsLabel.setText(getString(R.string.fps_label, animator.getFps()));
+        fpsSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                animator.setFps(progress + 1);
+                fpsLabel.setText(getString(R.string.fps_label, animator.getFps()));
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {}
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {}
+        });
+
+        int pagerIndicatorVisibility = pageIndicator.getVisibility();
+        animateButton.setOnClickListener(v -> {
+            boolean animate = !animator.isRunning();
+            if (animate) {
+                animator.start();
+            } else {
+                animator.stop();
+            }
+            int animatingVisibility = animate ? View.VISIBLE : View.GONE;
+            animationView.setVisibility(animatingVisibility);
+            fpsSeekBar.setVisibility(animatingVisibility);
+            fpsLabel.setVisibility(animatingVisibility);
+            viewPager.setVisibility(animate ? View.INVISIBLE : View.VISIBLE);
+            pageIndicator.setVisibility(animate ? View.GONE : pagerIndicatorVisibility);
+            animateButton.setText(animate ? R.string.stop_animation : R.string.animate);
+        });
+        return animator;
+    }
 
-            ContentValues values = new ContentValues();
-            values.put(MediaStore.Images.Media.DISPLAY_NAME, fileName);
-            values.put(MediaStore.Images.Media.MIME_TYPE, "image/png");
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                values.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_PICTURES);
+    private void saveQRCodes(String payloadIdHex, List<BitMatrix> qrMatrices, int modulePixels) {
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setMessage(getString(R.string.save_progress, 0, qrMatrices.size()))
+                .setCancelable(false)
+                .create();
+        progressDialog.show();
+        qrImageSaver.save(payloadIdHex, qrMatrices, modulePixels, new QRImageSaver.Listener() {
+            @Override
+            public void onProgress(int saved, int total) {
+                progressDialog.setMessage(getString(R.string.save_progress, saved, total));
             }
 
-            Uri imageUri = getContentResolver().insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
-            if (imageUri != null) {
-                try (OutputStream out = getContentResolver().openOutputStream(imageUri)) {
-                    bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
-                    Toast.makeText(this, getString(R.string.qr_saved), Toast.LENGTH_SHORT).show();
-                } catch (IOException e) {
-                    Toast.makeText(this, getString(R.string.error_saving_qr), Toast.LENGTH_SHORT).show();
+            @Override
+            public void onComplete(int saved, int failed) {
+                progressDialog.dismiss();
+                if (failed == 0) {
+                    Toast.makeText(MainActivity.this, getString(R.string.qr_saved_count, saved), Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(MainActivity.this, getString(R.string.qr_saved_partial, saved, failed),
+                            Toast.LENGTH_LONG).show();
                 }
             }
-            index++;
-        }
+        });
     }
 
     private void copyToClipboard() {
-        String content = qrContentEditText.getText().toString();
+        String content = contentEditor.getContent();
         if (!content.isEmpty()) {
             ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
             ClipData clip = ClipData.newPlainText("QR Content", content);
@@ -489,38 +993,124 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void openGallery() {
-        Intent intent = new Intent(Intent.ACTION_PICK, MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
-        galleryLauncher.launch(intent);
+        galleryLauncher.launch("image/*");
     }
 
-    private void scanQRFromImage(Uri imageUri) {
-        try {
-            InputStream inputStream = getContentResolver().openInputStream(imageUri);
-            Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-            InputImage image = InputImage.fromBitmap(bitmap, 0);
-
-            barcodeScanner.process(image)
-                    .addOnSuccessListener(barcodes -> {
-                        if (!barcodes.isEmpty()) {
-                            Barcode barcode = barcodes.get(0);
-                            if (barcode.getRawValue() != null) {
-                                String currentText = qrContentEditText.getText().toString();
-                                String newText = currentText + barcode.getRawValue();
-                                qrContentEditText.setText(newText);
-                            }
-                        } else {
-                            Toast.makeText(this, getString(R.string.no_qr_detected), Toast.LENGTH_SHORT).show();
-                        }
-                    })
-                    .addOnFailureListener(e -> Toast.makeText(this, getString(R.string.error_scanning_qr), Toast.LENGTH_SHORT).show());
-        } catch (IOException e) {
+    private void scanQRFromImages(List<Uri> imageUris) {
+        // ZXing instances are single-threaded, and still images deserve the slower search
+        QRDecoder sharedDecoder = decoder;
+        BatchImageScanner.DecoderFactory decoderFactory = sharedDecoder.getEngine() == QRDecoder.Engine.ZXING
+                ? () -> new ZXingDecoder(true, extraFormats) : () -> sharedDecoder;
+
+        AlertDialog progressDialog = null;
+        if (imageUris.size() > 1) {
+            progressDialog = new AlertDialog.Builder(this)
+                    .setMessage(getString(R.string.import_progress, 0, imageUris.size()))
+                    .setCancelable(false)
+                    .setNegativeButton(R.string.cancel, (dialog, which) -> batchImageScanner.cancel())
+                    .create();
+            progressDialog.show();
+        }
+        AlertDialog shownDialog = progressDialog;
+        batchImageScanner.start(imageUris, decoderFactory, new BatchImageScanner.Listener() {
+            @Override
+            public void onProgress(int scanned, int total) {
+                if (shownDialog != null) {
+                    shownDialog.setMessage(getString(R.string.import_progress, scanned, total));
+                }
+            }
+
+            @Override
+            public void onComplete(List<List<String>> values, int failed) {
+                if (shownDialog != null) {
+                    shownDialog.dismiss();
+                }
+                if (isDestroyed()) return;
+                if (values.size() == 1) {
+                    receiveGalleryValues(values.get(0), failed > 0);
+                } else {
+                    receiveBatch(values, failed);
+                }
+            }
+        });
+    }
+
+    private void receiveGalleryValues(List<String> values, boolean failed) {
+        if (failed) {
+            Toast.makeText(this, getString(R.string.error_scanning_qr), Toast.LENGTH_SHORT).show();
+        } else if (values.isEmpty()) {
+            Toast.makeText(this, getString(R.string.no_qr_detected), Toast.LENGTH_SHORT).show();
+        }
+        for (String rawValue : values) {
+            if (ChunkAssembler.isChunk(rawValue)) {
+                receiveGalleryChunk(rawValue);
+            } else {
+                recordScan(rawValue, ScanHistory.Source.GALLERY, ScanHistory.Kind.PLAIN, 1);
+                appendScannedText(rawValue);
+            }
+        }
+    }
+
+    private void receiveBatch(List<List<String>> values, int failed) {
+        BatchCollector collector = new BatchCollector();
+        int symbols = 0;
+        for (List<String> imageValues : values) {
+            collector.add(imageValues);
+            symbols += imageValues.size();
+        }
+        if (collector.isEmpty()) {
+            Toast.makeText(this, getString(R.string.no_qr_detected), Toast.LENGTH_SHORT).show();
+            return;
+        }
+        recordScan(collector.getText(), ScanHistory.Source.GALLERY, ScanHistory.Kind.BATCH, symbols);
+        appendScannedText(collector.getText());
+        int incomplete = collector.getIncompleteCount();
+        if (incomplete > 0 || failed > 0) {
+            Toast.makeText(this, getString(R.string.import_summary, values.size() - failed, failed, incomplete),
+                    Toast.LENGTH_LONG).show();
+        }
+    }
+
+    private void receiveGalleryChunk(String frame) {
+        ChunkAssembler.Status status = chunkAssembler.add(frame);
+        if (status == ChunkAssembler.Status.INVALID) {
             Toast.makeText(this, getString(R.string.error_scanning_qr), Toast.LENGTH_SHORT).show();
+        } else if (status == ChunkAssembler.Status.COMPLETE) {
+            recordScan(chunkAssembler.getText(), ScanHistory.Source.GALLERY, ScanHistory.Kind.CHUNKED,
+                    chunkAssembler.getTotal());
+            appendScannedText(chunkAssembler.getText());
+            chunkAssembler.reset();
+        } else {
+            Toast.makeText(this, chunkProgress(), Toast.LENGTH_SHORT).show();
         }
     }
 
+    /**
+     * The chunk count is known only once the last frame has been scanned.
+     */
+    private String chunkProgress() {
+        int total = chunkAssembler.getTotal();
+        return total == 0
+                ? getString(R.string.chunk_progress_open, chunkAssembler.getReceivedCount())
+                : getString(R.string.chunk_progress, chunkAssembler.getReceivedCount(), total);
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(STATE_PAYLOAD_ID, payloadId);
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        cameraExecutor.execute(decoder::close);
         cameraExecutor.shutdown();
+        batchImageScanner.shutdown();
+        qrImageSaver.shutdown();
+        encodePipeline.shutdown();
+        livePreview.shutdown();
+        metricsOverlay.release();
+        scanHistory.shutdown();
     }
 }
\ No newline at end of file
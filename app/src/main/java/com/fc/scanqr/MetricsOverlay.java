@@ -0,0 +1,106 @@
+package com.fc.scanqr;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Debug overlay showing {@link QRMetrics}, refreshed once a second while shown. Metrics
+ * are recorded only while it is shown. Tapping it exports the figures as JSON to the
+ * app's external files directory, where {@code adb pull} can reach them, and offers
+ * them to share.
+ * <p>
+ * Allocation figures come from the runtime's own GC counters, read on refresh only,
+ * so nothing is added to the hot paths.
+ */
+class MetricsOverlay {
+    private static final long REFRESH_MS = 1000;
+    private static final String STAT_BYTES_ALLOCATED = "art.gc.bytes-allocated";
+    private static final String STAT_GC_COUNT = "art.gc.gc-count";
+
+    private final TextView view;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable refresh = this::refresh;
+    private long allocatedBaseline;
+    private long gcBaseline;
+
+    MetricsOverlay(TextView view) {
+        this.view = view;
+        view.setOnClickListener(v -> export());
+    }
+
+    boolean isShown() {
+        return view.getVisibility() == View.VISIBLE;
+    }
+
+    void setShown(boolean shown) {
+        handler.removeCallbacks(refresh);
+        QRMetrics.setEnabled(shown);
+        view.setVisibility(shown ? View.VISIBLE : View.GONE);
+        if (shown) {
+            allocatedBaseline = runtimeStat(STAT_BYTES_ALLOCATED);
+            gcBaseline = runtimeStat(STAT_GC_COUNT);
+            refresh();
+        }
+    }
+
+    void release() {
+        handler.removeCallbacks(refresh);
+    }
+
+    private void refresh() {
+        view.setText(QRMetrics.report(allocatedBytes(), gcCount()));
+        handler.postDelayed(refresh, REFRESH_MS);
+    }
+
+    private void export() {
+        Context context = view.getContext();
+        String json = QRMetrics.toJson(allocatedBytes(), gcCount());
+        File dir = context.getExternalFilesDir(null);
+        File file = new File(dir != null ? dir : context.getFilesDir(),
+                "qr-metrics-" + System.currentTimeMillis() + ".json");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Toast.makeText(context, context.getString(R.string.metrics_export_failed), Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Toast.makeText(context, context.getString(R.string.metrics_exported, file.getPath()), Toast.LENGTH_LONG).show();
+
+        Intent share = new Intent(Intent.ACTION_SEND)
+                .setType("application/json")
+                .putExtra(Intent.EXTRA_SUBJECT, file.getName())
+                .putExtra(Intent.EXTRA_TEXT, json);
+        context.startActivity(Intent.createChooser(share, context.getString(R.string.metrics_export)));
+    }
+
+    private long allocatedBytes() {
+        long allocated = runtimeStat(STAT_BYTES_ALLOCATED);
+        return allocated < 0 || allocatedBaseline < 0 ? -1 : allocated - allocatedBaseline;
+    }
+
+    private long gcCount() {
+        long count = runtimeStat(STAT_GC_COUNT);
+        return count < 0 || gcBaseline < 0 ? -1 : count - gcBaseline;
+    }
+
+    private static long runtimeStat(String name) {
+        String value = Debug.getRuntimeStat(name);
+        try {
+            return value == null ? -1 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.fc.scanqr;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.ImageView;
+
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cycles fountain-coded frames of a payload through an {@link ImageView} at a fixed
+ * frame rate. The next frame is encoded on a background thread while the current one
+ * is shown, and two bitmaps are alternated so the visible one is never overwritten.
+ * Frames go through a {@link FrameEncoder} without a cache, since no fountain frame is
+ * shown twice.
+ */
+public class QRAnimator {
+    public static final int DEFAULT_FPS = 8;
+    public static final int MAX_FPS = 20;
+
+    private final ImageView imageView;
+    private final FountainEncoder encoder;
+    private final FrameEncoder frameEncoder;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final QRBitmapRenderer renderer = new QRBitmapRenderer();
+    private final Bitmap[] bitmaps = new Bitmap[2];
+    private ExecutorService encodeExecutor;
+
+    private int fps = DEFAULT_FPS;
+    private int nextSequence;
+    private int shownBitmap;
+    private BitMatrix pendingFrame;
+    private boolean encoding;
+    private boolean running;
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            if (!running) return;
+            if (pendingFrame != null) {
+                show(pendingFrame);
+                pendingFrame = null;
+            }
+            encodeNext();
+            mainHandler.postDelayed(this, 1000L / fps);
+        }
+    };
+
+    public QRAnimator(ImageView imageView, FountainEncoder encoder) {
+        this.imageView = imageView;
+        this.encoder = encoder;
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.L);
+        hints.put(EncodeHintType.MARGIN, 2);
+        frameEncoder = new FrameEncoder(hints, null);
+    }
+
+    public void setFps(int fps) {
+        this.fps = Math.max(1, Math.min(MAX_FPS, fps));
+    }
+
+    public int getFps() {
+        return fps;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        encodeExecutor = Executors.newSingleThreadExecutor();
+        mainHandler.post(tick);
+    }
+
+    public void stop() {
+        running = false;
+        mainHandler.removeCallbacks(tick);
+        if (encodeExecutor != null) {
+            encodeExecutor.shutdownNow();
+            encodeExecutor = null;
+        }
+        encoding = false;
+        pendingFrame = null;
+    }
+
+    private void encodeNext() {
+        if (encoding || pendingFrame != null) return;
+        encoding = true;
+        int sequence = nextSequence++;
+        ExecutorService executor = encodeExecutor;
+        executor.execute(() -> {
+            BitMatrix frame;
+            long start = QRMetrics.begin(QRMetrics.Stage.ENCODE);
+            try {
+                frame = frameEncoder.encode(encoder.frameText(sequence));
+                QRMetrics.count(QRMetrics.Counter.CODES_ENCODED);
+            } catch (WriterException e) {
+                frame = null;
+            } finally {
+                QRMetrics.end(QRMetrics.Stage.ENCODE, start);
+            }
+            BitMatrix encoded = frame;
+            mainHandler.post(() -> {
+                if (!running || executor != encodeExecutor) return;
+                encoding = false;
+                pendingFrame = encoded;
+            });
+        });
+    }
+
+    private void show(BitMatrix frame) {
+        shownBitmap ^= 1;
+        bitmaps[shownBitmap] = renderer.render(frame, 1, bitmaps[shownBitmap]);
+        BitmapDrawable drawable = new BitmapDrawable(imageView.getResources(), bitmaps[shownBitmap]);
+        drawable.setFilterBitmap(false);
+        imageView.setImageDrawable(drawable);
+    }
+}
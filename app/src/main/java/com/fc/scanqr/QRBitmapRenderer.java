@@ -0,0 +1,49 @@
+package com.fc.scanqr;
+
+import android.graphics.Bitmap;
+
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Renders a module-resolution {@link BitMatrix} (one bit per QR module, as produced by
+ * encoding with a requested size of 0) into a bitmap with {@code scale} pixels per module.
+ * Pixels are expanded by {@link ModulePixels}, whose buffers are kept between calls, so
+ * an instance is not thread-safe.
+ */
+public class QRBitmapRenderer {
+    static final int BLACK = ModulePixels.BLACK;
+    static final int WHITE = ModulePixels.WHITE;
+
+    private final ModulePixels modulePixels = new ModulePixels();
+
+    /**
+     * Renders into {@code reuse} when it is a mutable bitmap of the right size,
+     * or into a new bitmap otherwise.
+     */
+    public Bitmap render(BitMatrix bitMatrix, int scale, Bitmap reuse) {
+        long start = QRMetrics.begin(QRMetrics.Stage.RENDER);
+        int width = bitMatrix.getWidth() * scale;
+        int height = bitMatrix.getHeight() * scale;
+        int[] pixels = fillPixels(bitMatrix, scale);
+
+        Bitmap bitmap;
+        if (reuse != null && reuse.isMutable() && !reuse.isRecycled()
+                && reuse.getWidth() == width && reuse.getHeight() == height) {
+            bitmap = reuse;
+        } else {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            QRMetrics.count(QRMetrics.Counter.BITMAPS_ALLOCATED);
+        }
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+        QRMetrics.end(QRMetrics.Stage.RENDER, start);
+        return bitmap;
+    }
+
+    /**
+     * Expands {@code bitMatrix} into the reusable ARGB pixel buffer and returns it.
+     * Only the first {@code width * scale * height * scale} entries are valid.
+     */
+    int[] fillPixels(BitMatrix bitMatrix, int scale) {
+        return modulePixels.fill(bitMatrix, scale);
+    }
+}
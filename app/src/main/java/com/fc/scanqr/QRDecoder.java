@@ -0,0 +1,71 @@
+package com.fc.scanqr;
+
+import android.graphics.Bitmap;
+
+import java.util.List;
+
+/**
+ * A QR detection backend. Camera frames are passed as NV21 buffers of the scan region;
+ * backends that only need luminance read the first {@code width * height} bytes.
+ * Backends created with extra formats also read Data Matrix, Aztec and Code 128.
+ */
+public interface QRDecoder {
+    enum Engine {
+        ML_KIT,
+        ZXING
+    }
+
+    interface Callback {
+        /**
+         * @param values  raw values of the codes found, empty if none
+         * @param success false if the backend failed rather than finding nothing
+         */
+        void onResult(List<String> values, boolean success);
+    }
+
+    /**
+     * A code found by {@link #detect}. The center of the symbol is given as a fraction
+     * of the image's width and height, in the backend's own orientation, which stays
+     * the same from frame to frame.
+     */
+    final class Detection {
+        public final String value;
+        public final String format;
+        public final float x;
+        public final float y;
+
+        public Detection(String value, String format, float x, float y) {
+            this.value = value;
+            this.format = format;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    interface DetectionCallback {
+        /**
+         * @param detections every code found, empty if none
+         * @param success    false if the backend failed rather than finding nothing
+         */
+        void onResult(List<Detection> detections, boolean success);
+    }
+
+    Engine getEngine();
+
+    void decode(byte[] nv21, int width, int height, int rotationDegrees, Callback callback);
+
+    /**
+     * Finds every code in the frame with its position, for scanning a sheet of codes.
+     */
+    void detect(byte[] nv21, int width, int height, int rotationDegrees, DetectionCallback callback);
+
+    void decode(Bitmap bitmap, Callback callback);
+
+    /**
+     * Loads whatever the first decode would otherwise wait for. May block, so call it
+     * off the main thread.
+     */
+    void warmUp();
+
+    void close();
+}
@@ -0,0 +1,114 @@
+package com.fc.scanqr;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Encodes the chunks of a payload into module-resolution QR matrices on a bounded pool
+ * of background threads and posts each result to the main thread as soon as it is ready.
+ * <p>
+ * The pool has one thread per core and every job submits at most that many workers,
+ * which pull chunk indices in ascending order so the first page is always among the
+ * first results. Workers of a cancelled job exit after the chunk they are encoding.
+ * Frames are encoded with a {@link FrameEncoder}, so cached ones come back without encoding.
+ */
+public class QREncodePipeline {
+    public interface Listener {
+        void onChunkEncoded(int index, BitMatrix bitMatrix);
+
+        void onComplete();
+
+        void onError(WriterException e);
+    }
+
+    private final int workerCount = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Job currentJob;
+
+    public QREncodePipeline() {
+        executor = new ThreadPoolExecutor(workerCount, workerCount, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "qr-encode");
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts encoding the frames of {@code source}, cancelling any job still in flight.
+     * Listener callbacks run on the main thread and stop once the job is cancelled.
+     */
+    public void start(FrameSource source, FrameEncoder encoder, Listener listener) {
+        cancel();
+        Job job = new Job(source, encoder, listener);
+        currentJob = job;
+        int workers = Math.min(workerCount, job.count);
+        for (int i = 0; i < workers; i++) {
+            executor.execute(job::run);
+        }
+    }
+
+    public void cancel() {
+        if (currentJob != null) {
+            currentJob.cancelled = true;
+            currentJob = null;
+        }
+    }
+
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private final class Job {
+        private final FrameSource source;
+        private final FrameEncoder encoder;
+        private final Listener listener;
+        private final int count;
+        private final AtomicInteger nextIndex = new AtomicInteger();
+        private int delivered;  // main thread only
+        private volatile boolean cancelled;
+        private volatile boolean failed;
+
+        Job(FrameSource source, FrameEncoder encoder, Listener listener) {
+            this.source = source;
+            this.encoder = encoder;
+            this.listener = listener;
+            this.count = source.getCount();
+        }
+
+        void run() {
+            int index;
+            while (!cancelled && !failed && (index = nextIndex.getAndIncrement()) < count) {
+                long start = QRMetrics.begin(QRMetrics.Stage.ENCODE);
+                try {
+                    BitMatrix encoded = encoder.encode(source.getFrame(index));
+                    QRMetrics.count(QRMetrics.Counter.CODES_ENCODED);
+                    int encodedIndex = index;
+                    mainHandler.post(() -> {
+                        if (cancelled) return;
+                        listener.onChunkEncoded(encodedIndex, encoded);
+                        if (++delivered == count) listener.onComplete();
+                    });
+                } catch (WriterException e) {
+                    failed = true;
+                    mainHandler.post(() -> {
+                        if (!cancelled) listener.onError(e);
+                    });
+                } finally {
+                    QRMetrics.end(QRMetrics.Stage.ENCODE, start);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.fc.scanqr;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.provider.MediaStore;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Saves the QR codes of a payload to the shared Pictures collection in the background.
+ * <p>
+ * All rows are inserted in one batch, hidden as pending on Android 10 and later, then
+ * written in parallel as 1-bit PNGs by {@link PngWriter}; a second batch publishes the
+ * files that were written and deletes the rest. Files are named
+ * {@code QR_<payload id>_<save time>_<sequence>.png}; the time, to the millisecond,
+ * keeps a second save of the same payload from colliding with the first, which
+ * MediaStore would otherwise rename with a {@code " (1)"} suffix.
+ */
+public class QRImageSaver {
+    static final int MAX_WORKERS = 4;
+
+    public interface Listener {
+        void onProgress(int saved, int total);
+
+        void onComplete(int saved, int failed);
+    }
+
+    /** The MediaStore calls a save makes, so that tests can stand in for them. */
+    interface Store {
+        ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+                throws RemoteException, OperationApplicationException;
+
+        OutputStream openOutputStream(Uri uri) throws IOException;
+    }
+
+    private final Store store;
+    private final int workerCount = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors()));
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public QRImageSaver(ContentResolver resolver) {
+        this(new Store() {
+            @Override
+            public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+                    throws RemoteException, OperationApplicationException {
+                return resolver.applyBatch(MediaStore.AUTHORITY, operations);
+            }
+
+            @Override
+            public OutputStream openOutputStream(Uri uri) throws IOException {
+                return resolver.openOutputStream(uri);
+            }
+        });
+    }
+
+    QRImageSaver(Store store) {
+        this.store = store;
+        executor = new ThreadPoolExecutor(workerCount, workerCount, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "qr-save");
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Saves {@code matrices} with {@code modulePixels} pixels per module. Listener
+     * callbacks run on the main thread.
+     */
+    public void save(String payloadIdHex, List<BitMatrix> matrices, int modulePixels, Listener listener) {
+        Job job = new Job(payloadIdHex, System.currentTimeMillis(), matrices, modulePixels, listener);
+        executor.execute(job::begin);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    static String fileName(String payloadIdHex, long savedAt, int index, int count) {
+        int digits = Integer.toString(Math.max(1, count - 1)).length();
+        return String.format(Locale.ROOT, "QR_%s_%tY%<tm%<td_%<tH%<tM%<tS%<tL_%0" + digits + "d.png",
+                payloadIdHex, savedAt, index);
+    }
+
+    private final class Job {
+        private final String payloadIdHex;
+        private final long savedAt;
+        private final List<BitMatrix> matrices;
+        private final int modulePixels;
+        private final Listener listener;
+        private final int count;
+        private final boolean pendingSupported = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+        private final AtomicInteger nextIndex = new AtomicInteger();
+        private final AtomicInteger finished = new AtomicInteger();
+        private final AtomicInteger saved = new AtomicInteger();
+        private Uri[] uris;
+        private boolean[] written;
+
+        Job(String payloadIdHex, long savedAt, List<BitMatrix> matrices, int modulePixels, Listener listener) {
+            this.payloadIdHex = payloadIdHex;
+            this.savedAt = savedAt;
+            this.matrices = matrices;
+            this.modulePixels = modulePixels;
+            this.listener = listener;
+            this.count = matrices.size();
+        }
+
+        void begin() {
+            ArrayList<ContentProviderOperation> inserts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ContentValues values = new ContentValues();
+                values.put(MediaStore.Images.Media.DISPLAY_NAME, fileName(payloadIdHex, savedAt, i, count));
+                values.put(MediaStore.Images.Media.MIME_TYPE, "image/png");
+                if (pendingSupported) {
+                    values.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_PICTURES);
+                    values.put(MediaStore.Images.Media.IS_PENDING, 1);
+                }
+                inserts.add(ContentProviderOperation.newInsert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI)
+                        .withValues(values)
+                        .build());
+            }
+            try {
+                ContentProviderResult[] results = store.applyBatch(inserts);
+                uris = new Uri[count];
+                for (int i = 0; i < count; i++) {
+                    uris[i] = results[i].uri;
+                }
+            } catch (RemoteException | OperationApplicationException | RuntimeException e) {
+                mainHandler.post(() -> listener.onComplete(0, count));
+                return;
+            }
+            written = new boolean[count];
+            int workers = Math.min(workerCount, count);
+            for (int i = 0; i < workers; i++) {
+                executor.execute(this::write);
+            }
+        }
+
+        void write() {
+            int index;
+            while ((index = nextIndex.getAndIncrement()) < count) {
+                if (uris[index] != null) {
+                    long start = QRMetrics.begin(QRMetrics.Stage.SAVE);
+                    try (OutputStream out = store.openOutputStream(uris[index])) {
+                        if (out != null) {
+                            PngWriter.write(matrices.get(index), modulePixels, out);
+                            written[index] = true;
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        written[index] = false;
+                    } finally {
+                        QRMetrics.end(QRMetrics.Stage.SAVE, start);
+                    }
+                }
+                if (written[index]) {
+                    QRMetrics.count(QRMetrics.Counter.IMAGES_SAVED);
+                    int savedCount = saved.incrementAndGet();
+                    mainHandler.post(() -> listener.onProgress(savedCount, count));
+                }
+                if (finished.incrementAndGet() == count) {
+                    publish();
+                }
+            }
+        }
+
+        /**
+         * Runs on whichever worker finishes last, so every write is visible here.
+         */
+        private void publish() {
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (uris[i] == null) continue;
+                if (!written[i]) {
+                    operations.add(ContentProviderOperation.newDelete(uris[i]).build());
+                } else if (pendingSupported) {
+                    operations.add(ContentProviderOperation.newUpdate(uris[i])
+                            .withValue(MediaStore.Images.Media.IS_PENDING, 0)
+                            .build());
+                }
+            }
+            int savedCount = saved.get();
+            if (!operations.isEmpty()) {
+                try {
+                    store.applyBatch(operations);
+                } catch (RemoteException | OperationApplicationException | RuntimeException e) {
+                    savedCount = pendingSupported ? 0 : savedCount;
+                }
+            }
+            int published = savedCount;
+            mainHandler.post(() -> listener.onComplete(published, count - published));
+        }
+    }
+}
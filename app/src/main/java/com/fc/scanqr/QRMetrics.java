@@ -0,0 +1,196 @@
+package com.fc.scanqr;
+
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide scan and generate metrics: a {@link LatencyHistogram} per {@link Stage},
+ * event {@link Counter}s, and a Trace section around every stage for systrace and
+ * Perfetto.
+ * <p>
+ * Trace sections are always emitted; they cost next to nothing unless a trace is being
+ * recorded. Latencies and counts are only kept while metrics are enabled, so with the
+ * debug overlay off a stage costs one clock read and a volatile read.
+ */
+final class QRMetrics {
+    private static final String TAG = "QRMetrics";
+
+    enum Stage {
+        /** Detection of one camera frame; ML Kit finishes it asynchronously. */
+        DECODE("QR decode", true),
+        /** One frame of text to a module matrix. */
+        ENCODE("QR encode", false),
+        /** One module matrix to a bitmap. */
+        RENDER("QR render", false),
+        /** One PNG written to the shared Pictures collection. */
+        SAVE("QR save", false);
+
+        final String traceName;
+        final boolean async;
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        Stage(String traceName, boolean async) {
+            this.traceName = traceName;
+            this.async = async;
+        }
+    }
+
+    enum Counter {
+        FRAMES_ANALYZED,
+        /** Frames closed unanalyzed because the detector was still busy. */
+        FRAMES_DROPPED,
+        /** Analyzed frames with at least one code. */
+        FRAMES_DECODED,
+        FRAMES_FAILED,
+        CODES_ENCODED,
+        /** Bitmaps that could not reuse an existing one. */
+        BITMAPS_ALLOCATED,
+        IMAGES_SAVED
+    }
+
+    private static final AtomicLongArray counts = new AtomicLongArray(Counter.values().length);
+    // Counted even when disabled, to rate-limit failure logging
+    private static final AtomicLong failures = new AtomicLong();
+    private static volatile boolean enabled;
+    private static volatile long enabledAtNanos;
+
+    private QRMetrics() {}
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts or stops recording. Enabling starts a fresh measurement period.
+     */
+    static void setEnabled(boolean enable) {
+        if (enable && !enabled) {
+            reset();
+        }
+        enabled = enable;
+    }
+
+    static void reset() {
+        for (Stage stage : Stage.values()) {
+            stage.histogram.reset();
+        }
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        enabledAtNanos = System.nanoTime();
+    }
+
+    /**
+     * Opens the stage's Trace section and returns the start time to pass to
+     * {@link #end}. Synchronous stages must end on the same thread.
+     */
+    static long begin(Stage stage) {
+        long start = System.nanoTime();
+        if (!stage.async) {
+            Trace.beginSection(stage.traceName);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(stage.traceName, (int) start);
+        }
+        return start;
+    }
+
+    static void end(Stage stage, long start) {
+        if (!stage.async) {
+            Trace.endSection();
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(stage.traceName, (int) start);
+        }
+        if (enabled) {
+            stage.histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    static void count(Counter counter) {
+        if (enabled) {
+            counts.incrementAndGet(counter.ordinal());
+        }
+    }
+
+    static long get(Counter counter) {
+        return counts.get(counter.ordinal());
+    }
+
+    /**
+     * Counts a failed frame and logs it. Logging backs off to the 1st, 2nd, 4th, 8th...
+     * failure so a detector failing on every frame cannot flood the log.
+     */
+    static void failed(Throwable e) {
+        count(Counter.FRAMES_FAILED);
+        long failure = failures.incrementAndGet();
+        if ((failure & (failure - 1)) == 0) {
+            Log.w(TAG, "Frame analysis failed (" + failure + " so far)", e);
+        }
+    }
+
+    /**
+     * Multi-line summary for the debug overlay. {@code allocatedBytes} and
+     * {@code gcCount} are the runtime's figures since enabling, or negative if unknown.
+     */
+    static String report(long allocatedBytes, long gcCount) {
+        double seconds = elapsedSeconds();
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%.0f s  frames %d analyzed  %d dropped  %d decoded  %d failed",
+                seconds, get(Counter.FRAMES_ANALYZED), get(Counter.FRAMES_DROPPED),
+                get(Counter.FRAMES_DECODED), get(Counter.FRAMES_FAILED)));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = stage.histogram;
+            out.append(String.format(Locale.ROOT, "%n%-6s n=%d p50=%.1f p95=%.1f max=%.1f ms  %.1f/s",
+                    stage.name().toLowerCase(Locale.ROOT), histogram.getCount(),
+                    millis(histogram.getPercentileNanos(50)), millis(histogram.getPercentileNanos(95)),
+                    millis(histogram.getMaxNanos()), histogram.getCount() / seconds));
+        }
+        out.append(String.format(Locale.ROOT, "%nbitmaps %d  saved %d", get(Counter.BITMAPS_ALLOCATED),
+                get(Counter.IMAGES_SAVED)));
+        if (allocatedBytes >= 0) {
+            out.append(String.format(Locale.ROOT, "  alloc %.1f MB/s  gc %d",
+                    allocatedBytes / (1024.0 * 1024.0) / seconds, gcCount));
+        }
+        return out.toString();
+    }
+
+    /**
+     * The same figures as {@link #report} as a JSON object, for export.
+     */
+    static String toJson(long allocatedBytes, long gcCount) {
+        StringBuilder out = new StringBuilder("{");
+        out.append(String.format(Locale.ROOT, "\"elapsed_ms\":%d", (long) (elapsedSeconds() * 1000)));
+        out.append(",\"counters\":{");
+        for (Counter counter : Counter.values()) {
+            out.append(counter.ordinal() == 0 ? "" : ",").append('"')
+                    .append(counter.name().toLowerCase(Locale.ROOT)).append("\":").append(get(counter));
+        }
+        out.append("},\"stages\":{");
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = stage.histogram;
+            out.append(stage.ordinal() == 0 ? "" : ",");
+            out.append(String.format(Locale.ROOT,
+                    "\"%s\":{\"count\":%d,\"mean_us\":%d,\"p50_us\":%d,\"p95_us\":%d,\"p99_us\":%d,\"max_us\":%d}",
+                    stage.name().toLowerCase(Locale.ROOT), histogram.getCount(), histogram.getMeanNanos() / 1000,
+                    histogram.getPercentileNanos(50) / 1000, histogram.getPercentileNanos(95) / 1000,
+                    histogram.getPercentileNanos(99) / 1000, histogram.getMaxNanos() / 1000));
+        }
+        out.append('}');
+        if (allocatedBytes >= 0) {
+            out.append(",\"allocated_bytes\":").append(allocatedBytes).append(",\"gc_count\":").append(gcCount);
+        }
+        return out.append('}').toString();
+    }
+
+    private static double elapsedSeconds() {
+        return Math.max(1e-3, (System.nanoTime() - enabledAtNanos) / 1e9);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -1,19 +1,84 @@
 package com.fc.scanqr;
 
 import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Pages of encoded QR codes. The adapter keeps only the compact {@link BitMatrix}
+ * of each chunk and renders bitmaps for the pages around the current one, so memory
+ * stays flat no matter how many chunks a payload has.
+ * <p>
+ * Bitmaps are only referenced by views attached to the window and by a small LRU
+ * cache sized to the visible window; evicted bitmaps are reused for the next render.
+ */
 public class QRPagerAdapter extends RecyclerView.Adapter<QRPagerAdapter.QRViewHolder> {
-    private final List<Bitmap> qrBitmaps;
+    private static final int MAX_RECYCLED_BITMAPS = 2;
+
+    private final BitMatrix[] qrMatrices;
+    private final LruCache<Integer, Bitmap> bitmapCache;
+    private final ArrayDeque<Bitmap> recycledBitmaps = new ArrayDeque<>();
+    private final QRBitmapRenderer renderer = new QRBitmapRenderer();
+    private int readyCount;
+
+    /**
+     * Creates an adapter with {@code count} pages that are filled in with
+     * {@link #setMatrix} as the codes are encoded. {@code offscreenPageLimit}
+     * must match the limit set on the {@code ViewPager2}.
+     */
+    public QRPagerAdapter(int count, int offscreenPageLimit) {
+        this.qrMatrices = new BitMatrix[count];
+        this.bitmapCache = new LruCache<Integer, Bitmap>(2 * offscreenPageLimit + 2) {
+            @Override
+            protected void entryRemoved(boolean evicted, Integer key, Bitmap oldValue, Bitmap newValue) {
+                if (evicted && recycledBitmaps.size() < MAX_RECYCLED_BITMAPS) {
+                    recycledBitmaps.push(oldValue);
+                }
+            }
+        };
+    }
+
+    public void setMatrix(int position, BitMatrix matrix) {
+        if (qrMatrices[position] == null) {
+            readyCount++;
+        }
+        qrMatrices[position] = matrix;
+        bitmapCache.remove(position);
+        notifyItemChanged(position);
+    }
+
+    public boolean isComplete() {
+        return readyCount == qrMatrices.length;
+    }
+
+    public List<BitMatrix> getMatrices() {
+        List<BitMatrix> matrices = new ArrayList<>(qrMatrices.length);
+        for (BitMatrix matrix : qrMatrices) {
+            if (matrix != null) {
+                matrices.add(matrix);
+            }
+        }
+        return matrices;
+    }
 
-    public QRPagerAdapter(List<Bitmap> qrBitmaps) {
-        this.qrBitmaps = qrBitmaps;
+    /**
+     * Drops every cached bitmap. Call when the pager is no longer shown.
+     */
+    public void release() {
+        bitmapCache.evictAll();
+        recycledBitmaps.clear();
     }
 
     @NonNull
@@ -26,12 +91,35 @@ public class QRPagerAdapter extends RecyclerView.Adapter<QRPagerAdapter.QRViewHo
 
     @Override
     public void onBindViewHolder(@NonNull QRViewHolder holder, int position) {
-        holder.imageView.setImageBitmap(qrBitmaps.get(position));
+        holder.setBitmap(getBitmap(position));
+    }
+
+    @Override
+    public void onViewAttachedToWindow(@NonNull QRViewHolder holder) {
+        int position = holder.getBindingAdapterPosition();
+        if (position != RecyclerView.NO_POSITION) {
+            holder.setBitmap(getBitmap(position));
+        }
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(@NonNull QRViewHolder holder) {
+        // Detached views must not keep a bitmap that may be evicted and reused
+        holder.imageView.setImageDrawable(null);
     }
 
     @Override
     public int getItemCount() {
-        return qrBitmaps.size();
+        return qrMatrices.length;
+    }
+
+    private Bitmap getBitmap(int position) {
+        Bitmap bitmap = bitmapCache.get(position);
+        if (bitmap == null && qrMatrices[position] != null) {
+            bitmap = renderer.render(qrMatrices[position], 1, recycledBitmaps.poll());
+            bitmapCache.put(position, bitmap);
+        }
+        return bitmap;
     }
 
     static class QRViewHolder extends RecyclerView.ViewHolder {
@@ -41,5 +129,16 @@ public class QRPagerAdapter extends RecyclerView.Adapter<QRPagerAdapter.QRViewHo
             super(itemView);
             imageView = itemView.findViewById(R.id.qrImageView);
         }
+
+        void setBitmap(Bitmap bitmap) {
+            if (bitmap == null) {
+                imageView.setImageDrawable(null);
+                return;
+            }
+            // Bitmaps hold one pixel per module; scale them up without smoothing
+            BitmapDrawable drawable = new BitmapDrawable(imageView.getResources(), bitmap);
+            drawable.setFilterBitmap(false);
+            imageView.setImageDrawable(drawable);
+        }
     }
-} 
\ No newline at end of file
+}
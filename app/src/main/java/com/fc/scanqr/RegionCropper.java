@@ -0,0 +1,66 @@
+package com.fc.scanqr;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Crops the luminance plane of a camera frame to the scan region and packs it as an
+ * NV21 buffer with neutral chroma, so the detector only sees the pixels inside the
+ * on-screen scan frame.
+ * <p>
+ * The output buffer is reused between calls; callers must not crop the next frame
+ * before the detector is done with the previous one.
+ */
+public class RegionCropper {
+    private byte[] nv21 = new byte[0];
+    private int chromaStart = -1;
+
+    /**
+     * Returns {@code {left, top, width, height}} of the centered square, in buffer
+     * coordinates, that appears on screen as a square of {@code fraction} times the
+     * shorter side of a {@code viewWidth x viewHeight} preview filled center-cropped
+     * with the frame. Width and height are even. Returns the full frame when the view
+     * size is unknown.
+     */
+    public static int[] centeredSquare(int imageWidth, int imageHeight, int rotationDegrees,
+                                       int viewWidth, int viewHeight, float fraction) {
+        if (viewWidth <= 0 || viewHeight <= 0) {
+            return new int[] {0, 0, imageWidth & ~1, imageHeight & ~1};
+        }
+        boolean rotated = rotationDegrees % 180 != 0;
+        int uprightWidth = rotated ? imageHeight : imageWidth;
+        int uprightHeight = rotated ? imageWidth : imageHeight;
+
+        // Preview fills the view, so the frame is scaled by the larger ratio and cropped
+        float scale = Math.max((float) viewWidth / uprightWidth, (float) viewHeight / uprightHeight);
+        int side = Math.round(fraction * Math.min(viewWidth, viewHeight) / scale);
+        side = Math.min(side, Math.min(imageWidth, imageHeight)) & ~1;
+        int left = ((imageWidth - side) / 2) & ~1;
+        int top = ((imageHeight - side) / 2) & ~1;
+        return new int[] {left, top, side, side};
+    }
+
+    /**
+     * Copies {@code region} of a luminance plane into the reusable NV21 buffer.
+     */
+    public byte[] cropToNv21(ByteBuffer luminance, int rowStride, int[] region) {
+        int left = region[0];
+        int top = region[1];
+        int width = region[2];
+        int height = region[3];
+        int lumaSize = width * height;
+        int size = lumaSize + lumaSize / 2;
+        if (nv21.length != size || chromaStart != lumaSize) {
+            nv21 = new byte[size];
+            chromaStart = lumaSize;
+            Arrays.fill(nv21, lumaSize, size, (byte) 128);
+        }
+
+        ByteBuffer source = luminance.duplicate();
+        for (int y = 0; y < height; y++) {
+            source.position((top + y) * rowStride + left);
+            source.get(nv21, y * width, width);
+        }
+        return nv21;
+    }
+}
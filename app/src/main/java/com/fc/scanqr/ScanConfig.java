@@ -0,0 +1,41 @@
+package com.fc.scanqr;
+
+import android.util.Size;
+
+import androidx.camera.core.resolutionselector.AspectRatioStrategy;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
+
+/**
+ * Camera settings for QR scanning.
+ */
+final class ScanConfig {
+    /**
+     * Analysis frames around 1.2 MP resolve version 25+ codes held at arm's length
+     * while keeping per-frame detection cheap. Sizes are in sensor orientation.
+     */
+    static final Size ANALYSIS_RESOLUTION = new Size(1280, 960);
+    /** Side of the scan region relative to the shorter side of the preview. */
+    static final float REGION_FRACTION = 0.75f;
+    static final float DOUBLE_TAP_ZOOM_RATIO = 2f;
+
+    private ScanConfig() {}
+
+    static ResolutionSelector analysisResolutionSelector() {
+        return new ResolutionSelector.Builder()
+                .setAspectRatioStrategy(AspectRatioStrategy.RATIO_4_3_FALLBACK_AUTO_STRATEGY)
+                .setResolutionStrategy(new ResolutionStrategy(ANALYSIS_RESOLUTION,
+                        ResolutionStrategy.FALLBACK_RULE_CLOSEST_HIGHER_THEN_LOWER))
+                .build();
+    }
+
+    /**
+     * Preview uses the same aspect ratio as analysis so the scan frame drawn on the
+     * preview matches the cropped region.
+     */
+    static ResolutionSelector previewResolutionSelector() {
+        return new ResolutionSelector.Builder()
+                .setAspectRatioStrategy(AspectRatioStrategy.RATIO_4_3_FALLBACK_AUTO_STRATEGY)
+                .build();
+    }
+}
@@ -0,0 +1,463 @@
+package com.fc.scanqr;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-device history of scanned content in SQLite, with an FTS4 index for prefix and
+ * full-text search. A value scanned again is not stored twice: rows are keyed by a
+ * 64-bit content hash, and a repeat only bumps the last-seen time and count.
+ * <p>
+ * {@link #record} only queues the scan. Queued scans are written on a single
+ * background thread, a quarter second later or once {@link #MAX_BATCH} are waiting, in
+ * one transaction. Searches run on the same thread, so they see every scan recorded
+ * before them. Callbacks run on the main thread.
+ * <p>
+ * Content longer than {@link #INLINE_CHARS} is written to a file of its own next to the
+ * database, and its row keeps only that many leading characters, which are what the
+ * index and the preview see. Rows then stay well inside the 2 MB cursor window, which
+ * a reassembled payload of tens of megabytes would not fit, and one such scan does not
+ * bloat the index.
+ */
+public class ScanHistory {
+    static final int MAX_BATCH = 256;
+    static final int PREVIEW_CHARS = 200;
+    static final int INLINE_CHARS = 32 * 1024;
+    private static final long FLUSH_DELAY_MS = 250;
+    private static final String DATABASE_NAME = "scan_history.db";
+    private static final int DATABASE_VERSION = 2;
+
+    public enum Source {
+        CAMERA,
+        GALLERY
+    }
+
+    public enum Kind {
+        /** A single code. */
+        PLAIN,
+        /** Reassembled from chunk frames. */
+        CHUNKED,
+        /** Decoded from fountain-coded frames. */
+        FOUNTAIN,
+        /** Collected from several gallery images at once. */
+        BATCH
+    }
+
+    public static final class Entry {
+        public final long id;
+        /** Up to {@link #PREVIEW_CHARS} leading characters; load the rest with {@link #load}. */
+        public final String preview;
+        public final int length;
+        public final Source source;
+        public final Kind kind;
+        public final int symbols;
+        public final long firstSeen;
+        public final long lastSeen;
+        public final int seenCount;
+
+        Entry(long id, String preview, int length, Source source, Kind kind, int symbols, long firstSeen,
+              long lastSeen, int seenCount) {
+            this.id = id;
+            this.preview = preview;
+            this.length = length;
+            this.source = source;
+            this.kind = kind;
+            this.symbols = symbols;
+            this.firstSeen = firstSeen;
+            this.lastSeen = lastSeen;
+            this.seenCount = seenCount;
+        }
+    }
+
+    public interface SearchCallback {
+        void onResult(List<Entry> entries);
+    }
+
+    public interface LoadCallback {
+        void onLoaded(String content);
+    }
+
+    private static final class Scan {
+        final String content;
+        final Source source;
+        final Kind kind;
+        final int symbols;
+        final String engine;
+        final long time;
+        int repeats = 1;
+
+        Scan(String content, Source source, Kind kind, int symbols, String engine, long time) {
+            this.content = content;
+            this.source = source;
+            this.kind = kind;
+            this.symbols = symbols;
+            this.engine = engine;
+            this.time = time;
+        }
+    }
+
+    private final Helper helper;
+    private final File contentDir;
+    private final long flushDelayMs;
+    private final ScheduledThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable flush = this::flush;
+    private final Object lock = new Object();
+    private List<Scan> pending = new ArrayList<>();  // guarded by lock
+    private boolean flushScheduled;  // guarded by lock
+
+    public ScanHistory(Context context) {
+        this(context, DATABASE_NAME, FLUSH_DELAY_MS);
+    }
+
+    /**
+     * @param flushDelayMs how long a scan may wait for others to share its transaction
+     */
+    ScanHistory(Context context, String databaseName, long flushDelayMs) {
+        helper = new Helper(context.getApplicationContext(), databaseName);
+        contentDir = context.getApplicationContext().getDatabasePath(databaseName + "-content");
+        this.flushDelayMs = flushDelayMs;
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "scan-history");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a scanned value; returns at once.
+     *
+     * @param symbols number of codes the value was read from
+     * @param engine  detection backend that read it
+     */
+    public void record(String content, Source source, Kind kind, int symbols, QRDecoder.Engine engine) {
+        if (content == null || content.isEmpty()) return;
+        Scan scan = new Scan(content, source, kind, symbols, engine.name(), System.currentTimeMillis());
+        synchronized (lock) {
+            pending.add(scan);
+            if (pending.size() >= MAX_BATCH) {
+                flushScheduled = true;
+                executor.execute(flush);
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(flush, flushDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Finds up to {@code limit} entries, most recently seen first. Every word of
+     * {@code query} must appear in the first {@link #INLINE_CHARS} characters of the
+     * content, each as a prefix of a word there; an empty query lists the latest scans.
+     */
+    public void search(String query, int limit, SearchCallback callback) {
+        executor.execute(() -> {
+            flush();
+            List<Entry> entries = query(matchQuery(query), limit);
+            mainHandler.post(() -> callback.onResult(entries));
+        });
+    }
+
+    /**
+     * Loads the full content of an entry, or null if it is gone.
+     */
+    public void load(long id, LoadCallback callback) {
+        executor.execute(() -> {
+            String content = null;
+            String file = null;
+            try (Cursor cursor = helper.getReadableDatabase().rawQuery(
+                    "SELECT content, file FROM scans WHERE _id = ?", new String[] { Long.toString(id) })) {
+                if (cursor.moveToFirst()) {
+                    content = cursor.getString(0);
+                    file = cursor.getString(1);
+                }
+            } catch (SQLiteException e) {
+                content = null;
+            }
+            String loaded = file != null ? readContent(file) : content;
+            mainHandler.post(() -> callback.onLoaded(loaded));
+        });
+    }
+
+    public void clear() {
+        synchronized (lock) {
+            pending = new ArrayList<>();
+        }
+        executor.execute(() -> {
+            try {
+                SQLiteDatabase db = helper.getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    db.execSQL("DELETE FROM scans");
+                    db.execSQL("INSERT INTO scans_fts(scans_fts) VALUES('optimize')");
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                File[] files = contentDir.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        file.delete();
+                    }
+                }
+            } catch (SQLiteException e) {
+                // Nothing to clear
+            }
+        });
+    }
+
+    /**
+     * Writes what is queued and closes the database once done.
+     */
+    public void shutdown() {
+        executor.execute(() -> {
+            flush();
+            helper.close();
+        });
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for {@link #shutdown} to finish writing and close the database.
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    private void flush() {
+        List<Scan> batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = new ArrayList<>();
+            flushScheduled = false;
+        }
+        if (batch.isEmpty()) return;
+
+        // Repeats within the batch become one row update
+        Map<Long, Scan> scans = new LinkedHashMap<>();
+        for (Scan scan : batch) {
+            Scan previous = scans.put(contentHash(scan.content), scan);
+            if (previous != null) {
+                scan.repeats += previous.repeats;
+            }
+        }
+        try {
+            SQLiteDatabase db = helper.getWritableDatabase();
+            db.beginTransaction();
+            try (SQLiteStatement update = db.compileStatement(
+                    "UPDATE scans SET last_seen = ?, seen_count = seen_count + ? WHERE hash = ?");
+                 SQLiteStatement insert = db.compileStatement("INSERT INTO scans (hash, content, length, file,"
+                         + " source, kind, symbols, engine, first_seen, last_seen, seen_count)"
+                         + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (Map.Entry<Long, Scan> entry : scans.entrySet()) {
+                    Scan scan = entry.getValue();
+                    update.bindLong(1, scan.time);
+                    update.bindLong(2, scan.repeats);
+                    update.bindLong(3, entry.getKey());
+                    if (update.executeUpdateDelete() > 0) continue;
+                    insert.bindLong(1, entry.getKey());
+                    if (scan.content.length() > INLINE_CHARS) {
+                        String file = Long.toHexString(entry.getKey()) + ".txt";
+                        if (!writeContent(file, scan.content)) continue;
+                        insert.bindString(2, inlinePart(scan.content));
+                        insert.bindString(4, file);
+                    } else {
+                        insert.bindString(2, scan.content);
+                        insert.bindNull(4);
+                    }
+                    insert.bindLong(3, scan.content.length());
+                    insert.bindString(5, scan.source.name());
+                    insert.bindString(6, scan.kind.name());
+                    insert.bindLong(7, scan.symbols);
+                    insert.bindString(8, scan.engine);
+                    insert.bindLong(9, scan.time);
+                    insert.bindLong(10, scan.time);
+                    insert.bindLong(11, scan.repeats);
+                    insert.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLiteException e) {
+            // History is best effort; scanning goes on without it
+        }
+    }
+
+    /**
+     * The leading {@link #INLINE_CHARS} characters of {@code content}, less a high
+     * surrogate the cut would split from its pair.
+     */
+    static String inlinePart(String content) {
+        int end = Math.min(content.length(), INLINE_CHARS);
+        if (end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) {
+            end--;
+        }
+        return content.substring(0, end);
+    }
+
+    /**
+     * Writes content too long for its row to {@code name}; false if it could not be
+     * written, in which case the scan is not kept.
+     */
+    private boolean writeContent(String name, String content) {
+        if (!contentDir.isDirectory() && !contentDir.mkdirs()) return false;
+        File file = new File(contentDir, name);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(content);
+            return true;
+        } catch (IOException e) {
+            file.delete();
+            return false;
+        }
+    }
+
+    private String readContent(String name) {
+        File file = new File(contentDir, name);
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] bytes = new byte[(int) file.length()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private List<Entry> query(String match, int limit) {
+        String columns = "s._id, substr(s.content, 1, " + PREVIEW_CHARS + "), s.length, s.source, s.kind,"
+                + " s.symbols, s.first_seen, s.last_seen, s.seen_count";
+        String sql;
+        String[] args;
+        if (match == null) {
+            sql = "SELECT " + columns + " FROM scans s ORDER BY s.last_seen DESC LIMIT " + limit;
+            args = null;
+        } else {
+            sql = "SELECT " + columns + " FROM scans s JOIN (SELECT docid FROM scans_fts WHERE scans_fts MATCH ?) f"
+                    + " ON s._id = f.docid ORDER BY s.last_seen DESC LIMIT " + limit;
+            args = new String[] { match };
+        }
+        List<Entry> entries = new ArrayList<>();
+        try (Cursor cursor = helper.getReadableDatabase().rawQuery(sql, args)) {
+            while (cursor.moveToNext()) {
+                entries.add(new Entry(cursor.getLong(0), cursor.getString(1), cursor.getInt(2),
+                        parse(Source.class, cursor.getString(3), Source.CAMERA),
+                        parse(Kind.class, cursor.getString(4), Kind.PLAIN), cursor.getInt(5),
+                        cursor.getLong(6), cursor.getLong(7), cursor.getInt(8)));
+            }
+        } catch (SQLiteException e) {
+            // A query that tokenizes to nothing is malformed to FTS; it matches nothing
+            entries.clear();
+        }
+        return entries;
+    }
+
+    /**
+     * Turns typed words into an FTS4 MATCH expression of quoted prefix phrases, so
+     * punctuation and FTS operators in the input are taken literally. Returns null if
+     * no words remain.
+     */
+    static String matchQuery(String query) {
+        if (query == null) return null;
+        StringBuilder match = new StringBuilder();
+        for (String word : query.trim().split("\\s+")) {
+            String literal = word.replace("\"", "").replace("*", "");
+            if (literal.isEmpty()) continue;
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(literal).append("*\"");
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    /**
+     * First 64 bits of the SHA-256 of the UTF-8 content; at 100k entries the chance of
+     * any collision is about one in 10^9.
+     */
+    static long contentHash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(digest.digest(content.getBytes(StandardCharsets.UTF_8))).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String name, E fallback) {
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return fallback;
+        }
+    }
+
+    private static final class Helper extends SQLiteOpenHelper {
+        Helper(Context context, String name) {
+            super(context, name, null, DATABASE_VERSION);
+            setWriteAheadLoggingEnabled(true);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE scans ("
+                    + "_id INTEGER PRIMARY KEY,"
+                    + " hash INTEGER NOT NULL UNIQUE,"
+                    + " content TEXT NOT NULL,"
+                    + " length INTEGER NOT NULL,"
+                    + " file TEXT,"
+                    + " source TEXT NOT NULL,"
+                    + " kind TEXT NOT NULL,"
+                    + " symbols INTEGER NOT NULL,"
+                    + " engine TEXT NOT NULL,"
+                    + " first_seen INTEGER NOT NULL,"
+                    + " last_seen INTEGER NOT NULL,"
+                    + " seen_count INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX scans_last_seen ON scans (last_seen)");
+            // The index refers to the rows of scans rather than keeping a second copy
+            try {
+                db.execSQL("CREATE VIRTUAL TABLE scans_fts USING fts4(content=\"scans\", content, tokenize=unicode61)");
+            } catch (SQLiteException e) {
+                // Builds without unicode61 fold case for ASCII only
+                db.execSQL("CREATE VIRTUAL TABLE scans_fts USING fts4(content=\"scans\", content)");
+            }
+            db.execSQL("CREATE TRIGGER scans_ai AFTER INSERT ON scans BEGIN"
+                    + " INSERT INTO scans_fts (docid, content) VALUES (new._id, new.content); END");
+            db.execSQL("CREATE TRIGGER scans_bd BEFORE DELETE ON scans BEGIN"
+                    + " DELETE FROM scans_fts WHERE docid = old._id; END");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            if (oldVersion < 2) {
+                // Rows written so far keep their content inline
+                db.execSQL("ALTER TABLE scans ADD COLUMN length INTEGER NOT NULL DEFAULT 0");
+                db.execSQL("ALTER TABLE scans ADD COLUMN file TEXT");
+                db.execSQL("UPDATE scans SET length = length(content)");
+            }
+        }
+    }
+}
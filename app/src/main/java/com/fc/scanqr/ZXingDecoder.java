@@ -0,0 +1,175 @@
+package com.fc.scanqr;
+
+import android.graphics.Bitmap;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Binarizer;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.ChecksumException;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.FormatException;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.Reader;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.google.zxing.multi.MultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+import com.google.zxing.qrcode.QRCodeReader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes with ZXing's {@link QRCodeReader} directly on the luminance plane. It needs
+ * no model or native code, so it starts instantly and runs on a desktop JVM.
+ * Callbacks run synchronously on the calling thread; an instance is not thread-safe.
+ */
+public class ZXingDecoder implements QRDecoder {
+    static final List<BarcodeFormat> EXTRA_FORMATS = Collections.unmodifiableList(Arrays.asList(
+            BarcodeFormat.DATA_MATRIX, BarcodeFormat.AZTEC, BarcodeFormat.CODE_128));
+
+    private final Reader reader;
+    private final MultipleBarcodeReader multiReader;
+    private final Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+    private final boolean tryHarder;
+
+    public ZXingDecoder() {
+        this(false, false);
+    }
+
+    public ZXingDecoder(boolean tryHarder) {
+        this(tryHarder, false);
+    }
+
+    /**
+     * @param tryHarder    spend more time looking for codes, return every code in the image
+     *                     and retry with a global threshold when local thresholding fails;
+     *                     worth it for still images only
+     * @param extraFormats also read {@link #EXTRA_FORMATS}, at the cost of trying each
+     *                     format's detector on every frame
+     */
+    public ZXingDecoder(boolean tryHarder, boolean extraFormats) {
+        this.tryHarder = tryHarder;
+        hints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
+        if (tryHarder) {
+            hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        }
+        if (extraFormats) {
+            List<BarcodeFormat> formats = new ArrayList<>(EXTRA_FORMATS);
+            formats.add(0, BarcodeFormat.QR_CODE);
+            hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+            MultiFormatReader multiFormatReader = new MultiFormatReader();
+            multiFormatReader.setHints(hints);
+            reader = multiFormatReader;
+            multiReader = new GenericMultipleBarcodeReader(multiFormatReader);
+        } else {
+            QRCodeMultiReader qrReader = new QRCodeMultiReader();
+            reader = qrReader;
+            multiReader = qrReader;
+        }
+    }
+
+    @Override
+    public Engine getEngine() {
+        return Engine.ZXING;
+    }
+
+    @Override
+    public void decode(byte[] nv21, int width, int height, int rotationDegrees, Callback callback) {
+        callback.onResult(decodeLuminance(nv21, width, height, 0, 0, width, height), true);
+    }
+
+    @Override
+    public void decode(Bitmap bitmap, Callback callback) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        callback.onResult(decode(new RGBLuminanceSource(width, height, pixels)), true);
+    }
+
+    @Override
+    public void detect(byte[] nv21, int width, int height, int rotationDegrees, DetectionCallback callback) {
+        callback.onResult(detect(new PlanarYUVLuminanceSource(nv21, width, height, 0, 0, width, height, false)),
+                true);
+    }
+
+    @Override
+    public void warmUp() {}
+
+    @Override
+    public void close() {}
+
+    /**
+     * Decodes the {@code width x height} window at {@code (left, top)} of a luminance
+     * plane whose rows are {@code dataWidth} bytes apart. QR codes are rotation
+     * invariant, so the frame is not rotated first.
+     */
+    public List<String> decodeLuminance(byte[] luminance, int dataWidth, int dataHeight,
+                                        int left, int top, int width, int height) {
+        return decode(new PlanarYUVLuminanceSource(luminance, dataWidth, dataHeight,
+                left, top, width, height, false));
+    }
+
+    List<String> decode(LuminanceSource source) {
+        Result[] results = decode(new HybridBinarizer(source), tryHarder);
+        if (results.length == 0 && tryHarder) {
+            results = decode(new GlobalHistogramBinarizer(source), true);
+        }
+        List<String> values = new ArrayList<>(results.length);
+        for (Result result : results) {
+            values.add(result.getText());
+        }
+        return values;
+    }
+
+    List<Detection> detect(LuminanceSource source) {
+        Result[] results = decode(new HybridBinarizer(source), true);
+        if (results.length == 0 && tryHarder) {
+            results = decode(new GlobalHistogramBinarizer(source), true);
+        }
+        List<Detection> detections = new ArrayList<>(results.length);
+        for (Result result : results) {
+            ResultPoint[] points = result.getResultPoints();
+            float x = 0;
+            float y = 0;
+            int count = 0;
+            for (ResultPoint point : points == null ? new ResultPoint[0] : points) {
+                if (point != null) {
+                    x += point.getX();
+                    y += point.getY();
+                    count++;
+                }
+            }
+            if (count == 0) continue;
+            detections.add(new Detection(result.getText(), result.getBarcodeFormat().name(),
+                    x / count / source.getWidth(), y / count / source.getHeight()));
+        }
+        return detections;
+    }
+
+    private Result[] decode(Binarizer binarizer, boolean multiple) {
+        BinaryBitmap bitmap = new BinaryBitmap(binarizer);
+        try {
+            if (multiple) {
+                return multiReader.decodeMultiple(bitmap, hints);
+            }
+            return new Result[] { reader.decode(bitmap, hints) };
+        } catch (NotFoundException | ChecksumException | FormatException e) {
+            return new Result[0];
+        } finally {
+            reader.reset();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.fc.scanqr;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BatchCollectorTest {
+
+    private static String randomText(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void chunksFromShuffledImages_reassembleInChunkOrder() {
+        String content = randomText(new Random(3), "abc二ä: ", 3_000);
+        ChunkedPayload payload = ChunkedPayload.split(content, 200, 1);
+        List<String> frames = new ArrayList<>();
+        for (int i = 0; i < payload.getCount(); i++) {
+            frames.add(payload.getFrame(i));
+        }
+        Collections.shuffle(frames, new Random(4));
+
+        BatchCollector collector = new BatchCollector();
+        collector.add(Collections.singletonList("before "));
+        // Several chunks per image, plus a duplicate screenshot
+        for (int i = 0; i < frames.size(); i += 3) {
+            collector.add(frames.subList(i, Math.min(frames.size(), i + 3)));
+        }
+        collector.add(Collections.singletonList(frames.get(0)));
+        collector.add(Arrays.asList(" after", "before "));
+
+        assertEquals("before " + content + " after", collector.getText());
+        assertEquals(0, collector.getIncompleteCount());
+        assertEquals(0, collector.getInvalidCount());
+    }
+
+    @Test
+    public void separatePayloads_keepTheirOwnAssemblers() {
+        String firstContent = randomText(new Random(5), "xyz", 600);
+        String secondContent = randomText(new Random(6), "pqr", 600);
+        ChunkedPayload first = ChunkedPayload.split(firstContent, 200, 1);
+        ChunkedPayload second = ChunkedPayload.split(secondContent, 200, 2);
+        BatchCollector collector = new BatchCollector();
+        for (int i = 0; i < Math.max(first.getCount(), second.getCount()); i++) {
+            if (i < second.getCount()) collector.add(second.getFrame(i));
+            if (i < first.getCount()) collector.add(first.getFrame(i));
+        }
+        assertEquals(secondContent + firstContent, collector.getText());
+
+        // A payload missing a chunk is reported and left out of the text
+        ChunkedPayload third = ChunkedPayload.split(randomText(new Random(7), "uvw", 600), 200, 3);
+        for (int i = 1; i < third.getCount(); i++) {
+            collector.add(third.getFrame(i));
+        }
+        String corrupted = third.getFrame(0);
+        char last = corrupted.charAt(corrupted.length() - 1);
+        collector.add(corrupted.substring(0, corrupted.length() - 1) + (last == 'u' ? 'v' : 'u'));
+        assertEquals(secondContent + firstContent, collector.getText());
+        assertEquals(1, collector.getIncompleteCount());
+        assertEquals(1, collector.getInvalidCount());
+    }
+
+    @Test
+    public void separatorAndDuplicates_areConfigurable() {
+        BatchCollector defaults = new BatchCollector();
+        defaults.add(Arrays.asList("a", "b", "a"));
+        assertEquals("ab", defaults.getText());
+
+        BatchCollector sheet = new BatchCollector("\n", true);
+        sheet.add(Arrays.asList("a", "b", "a"));
+        assertEquals("a\nb\na", sheet.getText());
+    }
+}
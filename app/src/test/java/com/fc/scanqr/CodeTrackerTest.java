@@ -0,0 +1,75 @@
+package com.fc.scanqr;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CodeTrackerTest {
+    private static QRDecoder.Detection code(String value, float x, float y) {
+        return new QRDecoder.Detection(value, "QR_CODE", x, y);
+    }
+
+    private static List<String> values(List<QRDecoder.Detection> detections) {
+        List<String> values = new ArrayList<>();
+        for (QRDecoder.Detection detection : detections) {
+            values.add(detection.value);
+        }
+        return values;
+    }
+
+    @Test
+    public void sweepOverSheet_reportsEachCodeOnce() {
+        CodeTracker tracker = new CodeTracker();
+        // A 3x3 sheet of distinct codes plus two copies of "dup", swept from right to left
+        List<String> found = new ArrayList<>();
+        for (int step = 0; step < 12; step++) {
+            float offset = 0.6f - step * 0.1f;
+            List<QRDecoder.Detection> frame = new ArrayList<>();
+            for (int row = 0; row < 3; row++) {
+                for (int col = 0; col < 3; col++) {
+                    float x = offset + col * 0.3f;
+                    if (x >= 0 && x <= 1) frame.add(code("c" + row + col, x, 0.2f + row * 0.3f));
+                }
+            }
+            for (float x : new float[] {offset + 0.15f, offset + 0.45f}) {
+                if (x >= 0 && x <= 1) frame.add(code("dup", x, 0.05f));
+            }
+            found.addAll(values(tracker.update(frame)));
+        }
+        assertEquals(11, found.size());
+        assertEquals(2, Collections.frequency(found, "dup"));
+        assertEquals(11, tracker.size());
+    }
+
+    @Test
+    public void identicalCodesSideBySide_countSeparately() {
+        CodeTracker tracker = new CodeTracker();
+        assertEquals(Arrays.asList("a", "a"),
+                values(tracker.update(Arrays.asList(code("a", 0.2f, 0.5f), code("a", 0.7f, 0.5f)))));
+        assertTrue(tracker.update(Arrays.asList(code("a", 0.21f, 0.5f), code("a", 0.71f, 0.5f))).isEmpty());
+        assertEquals(2, tracker.getTracks().get(0).hits);
+    }
+
+    @Test
+    public void codeLeavingAndReturning_isNotReportedAgain() {
+        CodeTracker tracker = new CodeTracker();
+        assertEquals(1, tracker.update(Collections.singletonList(code("a", 0.5f, 0.5f))).size());
+        assertTrue(tracker.update(Collections.emptyList()).isEmpty());
+        assertTrue(tracker.update(Collections.singletonList(code("a", 0.1f, 0.9f))).isEmpty());
+        assertEquals(1, tracker.size());
+    }
+
+    @Test
+    public void nearDuplicateDetections_areOneCode() {
+        CodeTracker tracker = new CodeTracker();
+        assertEquals(1, tracker.update(Arrays.asList(code("a", 0.5f, 0.5f), code("a", 0.505f, 0.5f))).size());
+        tracker.clear();
+        assertEquals(0, tracker.size());
+        assertEquals(1, tracker.update(Collections.singletonList(code("a", 0.5f, 0.5f))).size());
+    }
+}
@@ -0,0 +1,44 @@
+package com.fc.scanqr;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ContentBufferTest {
+
+    @Test
+    public void toString_isReusedUntilAppend() {
+        ContentBuffer buffer = new ContentBuffer();
+        buffer.append("abc");
+        String first = buffer.toString();
+        assertSame(first, buffer.toString());
+        buffer.append("");
+        assertSame(first, buffer.toString());
+        buffer.append("def");
+        assertEquals("abcdef", buffer.toString());
+    }
+
+    @Test
+    public void windowStart_coversWholeShortText() {
+        ContentBuffer buffer = new ContentBuffer();
+        buffer.append("short");
+        assertEquals(0, buffer.windowStart(10));
+        assertEquals(0, buffer.windowStart(5));
+    }
+
+    @Test
+    public void windowStart_prefersLineStart() {
+        ContentBuffer buffer = new ContentBuffer();
+        buffer.append("aaaaaaaaaa\nbbbbbbbbbb");
+        assertEquals(11, buffer.windowStart(15));
+    }
+
+    @Test
+    public void windowStart_neverSplitsSurrogatePair() {
+        ContentBuffer buffer = new ContentBuffer();
+        buffer.append("😀😀😀😀");
+        int start = buffer.windowStart(5);
+        assertFalse(Character.isLowSurrogate(buffer.subSequence(start, start + 1).charAt(0)));
+        assertTrue(buffer.length() - start <= 5);
+    }
+}
@@ -0,0 +1,76 @@
+package com.fc.scanqr;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FountainCodeTest {
+
+    @Test
+    public void inOrderFrames_decodeWithBlockCountFrames() {
+        byte[] payload = randomPayload(50_000, 1);
+        FountainEncoder encoder = new FountainEncoder(payload, 200);
+        FountainDecoder decoder = new FountainDecoder();
+        for (int seq = 0; seq < encoder.getBlockCount(); seq++) {
+            decoder.addFrame(encoder.frameText(seq));
+        }
+        assertTrue(decoder.isComplete());
+        assertArrayEquals(payload, decoder.getPayload());
+    }
+
+    @Test
+    public void lossyChannel_recoversPayload() {
+        byte[] payload = randomPayload(50_000, 2);
+        FountainEncoder encoder = new FountainEncoder(payload, 200);
+        int k = encoder.getBlockCount();
+        Random channel = new Random(7);
+
+        for (double loss : new double[] {0.1, 0.3, 0.5}) {
+            FountainDecoder decoder = new FountainDecoder();
+            int sent = 0;
+            while (!decoder.isComplete()) {
+                String frame = encoder.frameText(sent++);
+                if (channel.nextDouble() >= loss) {
+                    decoder.addFrame(frame);
+                }
+                assertTrue("no convergence at loss " + loss, sent < k * 6);
+            }
+            assertArrayEquals(payload, decoder.getPayload());
+            // Received frames should stay within a modest overhead over the block count
+            assertTrue(decoder.getReceivedCount() < k * 1.6);
+        }
+    }
+
+    @Test
+    public void duplicatesAndReordering_areHarmless() {
+        byte[] payload = randomPayload(3_001, 4);
+        FountainEncoder encoder = new FountainEncoder(payload, 100);
+        FountainDecoder decoder = new FountainDecoder();
+        Random random = new Random(11);
+        int k = encoder.getBlockCount();
+        while (!decoder.isComplete()) {
+            // Only coded frames, drawn at random with repeats
+            decoder.addFrame(encoder.frameText(k + random.nextInt(k * 3)));
+        }
+        assertArrayEquals(payload, decoder.getPayload());
+    }
+
+    @Test
+    public void newPayload_resetsDecoder() {
+        FountainDecoder decoder = new FountainDecoder();
+        decoder.addFrame(new FountainEncoder(randomPayload(1000, 5), 100).frameText(0));
+        byte[] second = randomPayload(150, 6);
+        FountainEncoder encoder = new FountainEncoder(second, 100);
+        decoder.addFrame(encoder.frameText(0));
+        decoder.addFrame(encoder.frameText(1));
+        assertArrayEquals(second, decoder.getPayload());
+    }
+
+    private static byte[] randomPayload(int length, long seed) {
+        byte[] payload = new byte[length];
+        new Random(seed).nextBytes(payload);
+        return payload;
+    }
+}
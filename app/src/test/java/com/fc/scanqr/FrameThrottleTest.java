@@ -0,0 +1,45 @@
+package com.fc.scanqr;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameThrottleTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void onlyOneDetectionInFlight() {
+        FrameThrottle throttle = new FrameThrottle(1.0, 1.0);
+        assertTrue(throttle.tryAcquire(0));
+        assertFalse(throttle.tryAcquire(10 * MS));
+        throttle.release(20 * MS, true);
+        assertTrue(throttle.tryAcquire(20 * MS));
+        assertEquals(2, throttle.getFramesAnalyzed());
+        assertEquals(1, throttle.getFramesDropped());
+    }
+
+    @Test
+    public void idleScene_skipsFramesInProportionToLatency() {
+        FrameThrottle throttle = new FrameThrottle(1.0, 0.5);
+        assertTrue(throttle.tryAcquire(0));
+        throttle.release(40 * MS, false);
+        // 50% duty cycle: wait as long as the detection took
+        assertFalse(throttle.tryAcquire(60 * MS));
+        assertTrue(throttle.tryAcquire(80 * MS));
+        throttle.release(120 * MS, true);
+        assertTrue(throttle.tryAcquire(120 * MS));
+    }
+
+    @Test
+    public void duplicateFilter_suppressesValuesWithinWindow() {
+        DuplicateFilter filter = new DuplicateFilter(1000);
+        assertTrue(filter.accept("a", 0));
+        assertFalse(filter.accept("a", 500));
+        assertTrue(filter.accept("b", 600));
+        // Still in view: each sighting extends the window
+        assertFalse(filter.accept("a", 1400));
+        assertTrue(filter.accept("a", 2500));
+        filter.clear();
+        assertTrue(filter.accept("b", 2600));
+    }
+}
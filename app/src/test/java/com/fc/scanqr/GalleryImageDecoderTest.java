@@ -0,0 +1,53 @@
+package com.fc.scanqr;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GalleryImageDecoderTest {
+
+    @Test
+    public void sampleSize_bringsLongSideWithinTarget() {
+        assertEquals(1, GalleryImageDecoder.sampleSize(1600, 1600));
+        assertEquals(2, GalleryImageDecoder.sampleSize(1601, 1600));
+        // 48 MP photo: 8000 px long side
+        assertEquals(8, GalleryImageDecoder.sampleSize(8000, 1600));
+        assertEquals(1, GalleryImageDecoder.sampleSize(100, 1600));
+    }
+
+    @Test
+    public void pixelSampleSize_capsRetryResolution() {
+        assertEquals(1, GalleryImageDecoder.pixelSampleSize(2000, 2000, 4_000_000));
+        assertEquals(2, GalleryImageDecoder.pixelSampleSize(2001, 2000, 4_000_000));
+        assertEquals(4, GalleryImageDecoder.pixelSampleSize(8000, 6000, 4_000_000));
+        // 31 MP photo: the first pass samples by 4, and halving that would decode 3200 x 2400
+        assertEquals(4, GalleryImageDecoder.sampleSize(6400, GalleryImageDecoder.DETECTION_SIZE));
+        assertEquals(4, GalleryImageDecoder.pixelSampleSize(6400, 4800, GalleryImageDecoder.RETRY_MAX_PIXELS));
+    }
+
+    @Test
+    public void tiles_coverImageWithOverlap() {
+        int width = 8001;
+        int height = 6001;
+        int[][] tiles = GalleryImageDecoder.tiles(width, height, 2);
+        assertEquals(9, tiles.length);
+        assertArrayEquals(new int[] {0, 0, 4000, 3000}, tiles[0]);
+        assertArrayEquals(new int[] {2000, 1500, 6000, 4500}, tiles[4]);
+        assertArrayEquals(new int[] {4000, 3000, width, height}, tiles[8]);
+
+        // Every pixel lies in some tile, and any square a quarter of the short side fits whole in one
+        int side = height / 4;
+        for (int y = 0; y + side <= height; y += 250) {
+            for (int x = 0; x + side <= width; x += 250) {
+                boolean contained = false;
+                for (int[] tile : tiles) {
+                    if (x >= tile[0] && y >= tile[1] && x + side <= tile[2] && y + side <= tile[3]) {
+                        contained = true;
+                        break;
+                    }
+                }
+                assertTrue("square at " + x + "," + y, contained);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.fc.scanqr;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class QRBitmapRendererTest {
+
+    static BitMatrix encode(String content, int size) throws WriterException {
+        return new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, size, size,
+                Map.of(EncodeHintType.CHARACTER_SET, "UTF-8", EncodeHintType.MARGIN, 2));
+    }
+
+    @Test
+    public void fillPixels_matchesPerPixelLookup() throws WriterException {
+        QRBitmapRenderer renderer = new QRBitmapRenderer();
+        for (String content : new String[] {"a", "hello world", "x".repeat(400), "二".repeat(300)}) {
+            BitMatrix matrix = encode(content, 0);
+            for (int scale : new int[] {1, 3, 11}) {
+                int[] pixels = renderer.fillPixels(matrix, scale);
+                int width = matrix.getWidth() * scale;
+                for (int y = 0; y < matrix.getHeight() * scale; y++) {
+                    for (int x = 0; x < width; x++) {
+                        int expected = matrix.get(x / scale, y / scale)
+                                ? QRBitmapRenderer.BLACK : QRBitmapRenderer.WHITE;
+                        assertEquals(expected, pixels[y * width + x]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void zeroSizeEncode_isOnePixelPerModule() throws WriterException {
+        // Version 1 is 21 modules plus a margin of 2 on each side
+        assertEquals(25, encode("a", 0).getWidth());
+    }
+}
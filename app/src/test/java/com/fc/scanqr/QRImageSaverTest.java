@@ -0,0 +1,27 @@
+package com.fc.scanqr;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import static org.junit.Assert.*;
+
+public class QRImageSaverTest {
+
+    @Test
+    public void fileName_isDeterministicAndSortsBySequence() {
+        long savedAt = new GregorianCalendar(2026, Calendar.OCTOBER, 18, 9, 5, 7).getTimeInMillis() + 42;
+        assertEquals("QR_1A2B3C4D_20261018_090507042_0.png", QRImageSaver.fileName("1A2B3C4D", savedAt, 0, 1));
+        assertEquals("QR_1A2B3C4D_20261018_090507042_7.png", QRImageSaver.fileName("1A2B3C4D", savedAt, 7, 10));
+        assertEquals("QR_1A2B3C4D_20261018_090507042_007.png", QRImageSaver.fileName("1A2B3C4D", savedAt, 7, 101));
+        assertEquals("QR_1A2B3C4D_20261018_090507042_100.png", QRImageSaver.fileName("1A2B3C4D", savedAt, 100, 101));
+    }
+
+    @Test
+    public void fileName_differsBetweenSavesOfOnePayload() {
+        long savedAt = new GregorianCalendar(2026, Calendar.OCTOBER, 18, 9, 5, 7).getTimeInMillis();
+        assertNotEquals(QRImageSaver.fileName("1A2B3C4D", savedAt, 0, 2),
+                QRImageSaver.fileName("1A2B3C4D", savedAt + 1, 0, 2));
+    }
+}
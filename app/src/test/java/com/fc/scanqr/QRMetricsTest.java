@@ -0,0 +1,105 @@
+package com.fc.scanqr;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QRMetricsTest {
+    private static final long MS = 1_000_000L;
+
+    @After
+    public void disable() {
+        QRMetrics.setEnabled(false);
+    }
+
+    @Test
+    public void buckets_areContiguousAndOrdered() {
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS - 1; bucket++) {
+            long lower = LatencyHistogram.lowerBound(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(lower));
+            assertEquals(bucket, LatencyHistogram.bucketOf(LatencyHistogram.lowerBound(bucket + 1) - 1));
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentiles_areWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * MS);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100 * MS, histogram.getMaxNanos());
+        assertEquals(50 * MS + MS / 2, histogram.getMeanNanos());
+        long p50 = histogram.getPercentileNanos(50);
+        assertTrue(p50 + " ns", p50 >= 50 * MS && p50 <= 50 * MS * 5 / 4);
+        long p95 = histogram.getPercentileNanos(95);
+        assertTrue(p95 + " ns", p95 >= 95 * MS && p95 <= 100 * MS);
+        assertEquals(100 * MS, histogram.getPercentileNanos(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(50));
+    }
+
+    @Test
+    public void concurrentRecords_areAllCounted() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record((i + offset) * 1000L);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(10_002 * 1000L, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void counters_recordOnlyWhileEnabled() {
+        QRMetrics.setEnabled(false);
+        QRMetrics.reset();
+        QRMetrics.count(QRMetrics.Counter.FRAMES_DROPPED);
+        assertEquals(0, QRMetrics.get(QRMetrics.Counter.FRAMES_DROPPED));
+
+        QRMetrics.setEnabled(true);
+        QRMetrics.count(QRMetrics.Counter.FRAMES_DROPPED);
+        QRMetrics.count(QRMetrics.Counter.FRAMES_DROPPED);
+        assertEquals(2, QRMetrics.get(QRMetrics.Counter.FRAMES_DROPPED));
+
+        // Re-enabling starts a new period; enabling twice does not
+        QRMetrics.setEnabled(true);
+        assertEquals(2, QRMetrics.get(QRMetrics.Counter.FRAMES_DROPPED));
+        QRMetrics.setEnabled(false);
+        QRMetrics.setEnabled(true);
+        assertEquals(0, QRMetrics.get(QRMetrics.Counter.FRAMES_DROPPED));
+    }
+
+    @Test
+    public void reports_includeEveryStageAndCounter() {
+        QRMetrics.setEnabled(true);
+        QRMetrics.count(QRMetrics.Counter.FRAMES_ANALYZED);
+        QRMetrics.Stage.ENCODE.histogram.record(3 * MS);
+
+        String report = QRMetrics.report(4096, 2);
+        assertTrue(report, report.contains("1 analyzed"));
+        assertTrue(report, report.contains("encode n=1"));
+        assertTrue(report, report.contains("gc 2"));
+        assertFalse(QRMetrics.report(-1, -1).contains("alloc"));
+
+        String json = QRMetrics.toJson(4096, 2);
+        assertTrue(json, json.startsWith("{\"elapsed_ms\":") && json.endsWith("}"));
+        assertTrue(json, json.contains("\"frames_analyzed\":1"));
+        assertTrue(json, json.contains("\"encode\":{\"count\":1,\"mean_us\":3000"));
+        assertTrue(json, json.contains("\"save\":{\"count\":0"));
+        assertTrue(json, json.contains("\"allocated_bytes\":4096,\"gc_count\":2"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.fc.scanqr;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class RegionCropperTest {
+
+    @Test
+    public void centeredSquare_portraitPreviewOfRotatedFrame() {
+        // 960x1280 upright frame filling a 1080x1920 view is scaled by 1.5
+        int[] region = RegionCropper.centeredSquare(1280, 960, 90, 1080, 1920, 0.75f);
+        assertArrayEquals(new int[] {370, 210, 540, 540}, region);
+    }
+
+    @Test
+    public void centeredSquare_unknownViewUsesFullFrame() {
+        assertArrayEquals(new int[] {0, 0, 640, 480},
+                RegionCropper.centeredSquare(641, 481, 0, 0, 0, 0.75f));
+    }
+
+    @Test
+    public void centeredSquare_neverExceedsFrame() {
+        int[] region = RegionCropper.centeredSquare(640, 480, 0, 100, 100, 2f);
+        assertEquals(480, region[2]);
+        assertEquals(480, region[3]);
+        assertEquals(80, region[0]);
+        assertEquals(0, region[1]);
+    }
+
+    @Test
+    public void cropToNv21_copiesRowsAndFillsNeutralChroma() {
+        int width = 8;
+        int height = 6;
+        int rowStride = 10;
+        ByteBuffer plane = ByteBuffer.allocate(rowStride * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                plane.put(y * rowStride + x, (byte) (y * 16 + x));
+            }
+        }
+
+        RegionCropper cropper = new RegionCropper();
+        byte[] nv21 = cropper.cropToNv21(plane, rowStride, new int[] {2, 2, 4, 2});
+        assertEquals(4 * 2 * 3 / 2, nv21.length);
+        assertArrayEquals(new byte[] {34, 35, 36, 37, 50, 51, 52, 53},
+                java.util.Arrays.copyOf(nv21, 8));
+        for (int i = 8; i < nv21.length; i++) {
+            assertEquals((byte) 128, nv21[i]);
+        }
+        assertEquals(0, plane.position());
+        // Same region size reuses the buffer
+        assertSame(nv21, cropper.cropToNv21(plane, rowStride, new int[] {0, 0, 4, 2}));
+    }
+}
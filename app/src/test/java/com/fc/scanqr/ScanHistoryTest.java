@@ -0,0 +1,46 @@
+package com.fc.scanqr;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ScanHistoryTest {
+    @Test
+    public void matchQuery_quotesEveryWordAsPrefix() {
+        assertEquals("\"invoice*\" \"2026*\"", ScanHistory.matchQuery("  invoice   2026 "));
+        assertEquals("\"https://example.com/a*\"", ScanHistory.matchQuery("https://example.com/a"));
+    }
+
+    @Test
+    public void matchQuery_takesOperatorsLiterally() {
+        assertEquals("\"a*\" \"OR*\" \"b*\"", ScanHistory.matchQuery("\"a\" OR b*"));
+        assertEquals("\"-x*\"", ScanHistory.matchQuery("-x"));
+    }
+
+    @Test
+    public void matchQuery_isNullWithoutWords() {
+        assertNull(ScanHistory.matchQuery(null));
+        assertNull(ScanHistory.matchQuery(""));
+        assertNull(ScanHistory.matchQuery(" \" * "));
+    }
+
+    @Test
+    public void contentHash_isStableAndDistinguishesContent() {
+        assertEquals(ScanHistory.contentHash("hello"), ScanHistory.contentHash(new String("hello")));
+        assertNotEquals(ScanHistory.contentHash("hello"), ScanHistory.contentHash("hello "));
+        // First eight bytes of SHA-256("abc"), big-endian
+        assertEquals(0xba7816bf8f01cfeaL, ScanHistory.contentHash("abc"));
+    }
+
+    @Test
+    public void inlinePart_keepsSurrogatePairsWhole() {
+        assertEquals("short", ScanHistory.inlinePart("short"));
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < ScanHistory.INLINE_CHARS - 1) {
+            sb.append('a');
+        }
+        String inline = ScanHistory.inlinePart(sb + "\uD83D\uDE00 tail");
+        assertEquals(ScanHistory.INLINE_CHARS - 1, inline.length());
+        assertEquals(ScanHistory.INLINE_CHARS, ScanHistory.inlinePart(sb + "b\uD83D\uDE00").length());
+    }
+}
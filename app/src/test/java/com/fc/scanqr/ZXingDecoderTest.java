@@ -0,0 +1,180 @@
+package com.fc.scanqr;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the ZXing backend against the PNG corpus in {@code qr-corpus/}, whose
+ * {@code expected.tsv} lists each image with the text it contains (empty for none).
+ */
+public class ZXingDecoderTest {
+    private static final String CORPUS = "/qr-corpus/";
+
+    @Test
+    public void decodesCorpus() throws IOException {
+        ZXingDecoder decoder = new ZXingDecoder(true);
+        List<String[]> entries = readManifest();
+        assertFalse(entries.isEmpty());
+        for (String[] entry : entries) {
+            BufferedImage image = readImage(entry[0]);
+            List<String> values = decoder.decodeLuminance(luminance(image), image.getWidth(), image.getHeight(),
+                    0, 0, image.getWidth(), image.getHeight());
+            List<String> expected = entry[1].isEmpty()
+                    ? Collections.emptyList() : Collections.singletonList(entry[1]);
+            assertEquals(entry[0], expected, values);
+        }
+    }
+
+    @Test
+    public void decodesWindowOfLargerPlane() throws IOException {
+        BufferedImage image = readImage("off_center.png");
+        ZXingDecoder decoder = new ZXingDecoder();
+        byte[] plane = luminance(image);
+        assertEquals(Collections.singletonList("Hello, EasyQR"),
+                decoder.decodeLuminance(plane, image.getWidth(), image.getHeight(), 120, 0, 200, 240));
+        assertEquals(Collections.emptyList(),
+                decoder.decodeLuminance(plane, image.getWidth(), image.getHeight(), 0, 0, 100, 240));
+    }
+
+    @Test
+    public void callbackReceivesNv21Result() throws IOException {
+        BufferedImage image = readImage("plain.png");
+        List<String> results = new ArrayList<>();
+        new ZXingDecoder().decode(luminance(image), image.getWidth(), image.getHeight(), 90,
+                (values, success) -> {
+                    assertTrue(success);
+                    results.addAll(values);
+                });
+        assertEquals(Collections.singletonList("Hello, EasyQR"), results);
+    }
+
+    @Test
+    public void tryHarder_returnsEveryCodeInImage() throws WriterException {
+        BitMatrix left = new QRCodeWriter().encode("left code", BarcodeFormat.QR_CODE, 200, 200);
+        BitMatrix right = new QRCodeWriter().encode("right code", BarcodeFormat.QR_CODE, 200, 200);
+        int width = 440;
+        int height = 220;
+        byte[] plane = new byte[width * height];
+        java.util.Arrays.fill(plane, (byte) 0xFF);
+        for (int y = 0; y < 200; y++) {
+            for (int x = 0; x < 200; x++) {
+                if (left.get(x, y)) plane[(y + 10) * width + x + 10] = 0;
+                if (right.get(x, y)) plane[(y + 10) * width + x + 230] = 0;
+            }
+        }
+        List<String> values = new ZXingDecoder(true).decodeLuminance(plane, width, height, 0, 0, width, height);
+        assertEquals(2, values.size());
+        assertTrue(values.contains("left code"));
+        assertTrue(values.contains("right code"));
+    }
+
+    @Test
+    public void detect_reportsEachCodeWithItsCenter() throws WriterException {
+        BitMatrix left = new QRCodeWriter().encode("same", BarcodeFormat.QR_CODE, 200, 200);
+        int width = 440;
+        int height = 220;
+        byte[] plane = new byte[width * height];
+        java.util.Arrays.fill(plane, (byte) 0xFF);
+        for (int y = 0; y < 200; y++) {
+            for (int x = 0; x < 200; x++) {
+                if (left.get(x, y)) {
+                    plane[(y + 10) * width + x + 10] = 0;
+                    plane[(y + 10) * width + x + 230] = 0;
+                }
+            }
+        }
+        List<QRDecoder.Detection> detections = new ArrayList<>();
+        new ZXingDecoder().detect(plane, width, height, 0, (found, success) -> detections.addAll(found));
+        assertEquals(2, detections.size());
+        Collections.sort(detections, (a, b) -> Float.compare(a.x, b.x));
+        for (QRDecoder.Detection detection : detections) {
+            assertEquals("same", detection.value);
+            assertEquals("QR_CODE", detection.format);
+            assertEquals(0.5f, detection.y, 0.1f);
+        }
+        assertEquals(110f / width, detections.get(0).x, 0.05f);
+        assertEquals(330f / width, detections.get(1).x, 0.05f);
+    }
+
+    @Test
+    public void extraFormats_readDataMatrix() {
+        BitMatrix matrix = new com.google.zxing.datamatrix.DataMatrixWriter()
+                .encode("data matrix", BarcodeFormat.DATA_MATRIX, 0, 0);
+        int scale = 6;
+        int width = matrix.getWidth() * scale + 40;
+        int height = matrix.getHeight() * scale + 40;
+        byte[] plane = new byte[width * height];
+        java.util.Arrays.fill(plane, (byte) 0xFF);
+        for (int y = 0; y < matrix.getHeight() * scale; y++) {
+            for (int x = 0; x < matrix.getWidth() * scale; x++) {
+                if (matrix.get(x / scale, y / scale)) plane[(y + 20) * width + x + 20] = 0;
+            }
+        }
+        assertEquals(Collections.emptyList(),
+                new ZXingDecoder().decodeLuminance(plane, width, height, 0, 0, width, height));
+        List<QRDecoder.Detection> detections = new ArrayList<>();
+        new ZXingDecoder(false, true).detect(plane, width, height, 0, (found, success) -> detections.addAll(found));
+        assertEquals(1, detections.size());
+        assertEquals("data matrix", detections.get(0).value);
+        assertEquals("DATA_MATRIX", detections.get(0).format);
+    }
+
+    static List<String[]> readManifest() throws IOException {
+        List<String[]> entries = new ArrayList<>();
+        try (InputStream in = ZXingDecoderTest.class.getResourceAsStream(CORPUS + "expected.tsv");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                int tab = line.indexOf('\t');
+                entries.add(tab < 0 ? new String[] {line, ""}
+                        : new String[] {line.substring(0, tab), line.substring(tab + 1)});
+            }
+        }
+        return entries;
+    }
+
+    static BufferedImage readImage(String name) throws IOException {
+        try (InputStream in = ZXingDecoderTest.class.getResourceAsStream(CORPUS + name)) {
+            assertNotNull(name, in);
+            return ImageIO.read(in);
+        }
+    }
+
+    /**
+     * Converts an image to an 8-bit luminance plane, the layout of a camera Y plane.
+     */
+    static byte[] luminance(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] plane = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = image.getRGB(x, y);
+                int r = (rgb >> 16) & 0xFF;
+                int g = (rgb >> 8) & 0xFF;
+                int b = rgb & 0xFF;
+                plane[y * width + x] = (byte) ((r * 299 + g * 587 + b * 114) / 1000);
+            }
+        }
+        return plane;
+    }
+}
@@ -0,0 +1,24 @@
+plugins {
+    id("java")
+    alias(libs.plugins.jmh)
+}
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(project(":FC-SDK"))
+}
+
+// ./gradlew :benchmark:jmh writes build/results/jmh/results.json for comparison in review,
+// and the console table to human.txt beside it
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    humanOutputFile.set(layout.buildDirectory.file("results/jmh/human.txt"))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+}
@@ -0,0 +1,51 @@
+package com.fc.scanqr.benchmark;
+
+import com.fc.scanqr.ChunkedPayload;
+import com.fc.scanqr.ContentChunker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting text into frames: the bare chunk boundaries, and every framed chunk with
+ * its header and checksum as the encoder receives them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChunkingBenchmark {
+    @Param({"4096", "65536", "1048576"})
+    public int contentChars;
+
+    @Param({"300", "1200"})
+    public int maxFrameBytes;
+
+    private String content;
+
+    @Setup
+    public void setUp() {
+        content = Samples.text(1, Samples.MIXED_ALPHABET, contentChars);
+    }
+
+    @Benchmark
+    public int[] splitContent() {
+        return ContentChunker.split(content, maxFrameBytes);
+    }
+
+    @Benchmark
+    public void framedChunks(Blackhole blackhole) {
+        ChunkedPayload payload = ChunkedPayload.split(content, maxFrameBytes, 1);
+        for (int i = 0; i < payload.getCount(); i++) {
+            blackhole.consume(payload.getFrame(i));
+        }
+    }
+}
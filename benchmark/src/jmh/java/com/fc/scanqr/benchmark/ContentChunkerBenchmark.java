@@ -0,0 +1,69 @@
+package com.fc.scanqr.benchmark;
+
+import com.fc.scanqr.ContentChunker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ContentChunker#split} against the per-character splitter it replaced, on 1 MB
+ * of hex and of mixed-width text cut into 400 byte chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ContentChunkerBenchmark {
+    private static final int INPUT_CHARS = 1 << 20;
+    private static final int MAX_BYTES = 400;
+
+    @Param({"0123456789abcdef", "a二ä{b维ö 1"})
+    public String alphabet;
+
+    private String content;
+
+    @Setup
+    public void setUp() {
+        content = Samples.text(1, alphabet, INPUT_CHARS);
+    }
+
+    @Benchmark
+    public int[] split() {
+        return ContentChunker.split(content, MAX_BYTES);
+    }
+
+    @Benchmark
+    public List<String> legacySplit() {
+        List<String> chunks = new ArrayList<>();
+        int startIndex = 0;
+        while (startIndex < content.length()) {
+            int endIndex = startIndex;
+            int currentChunkBytes = 0;
+            while (endIndex < content.length()) {
+                String nextChar = content.substring(endIndex, endIndex + 1);
+                int nextCharBytes = nextChar.getBytes(StandardCharsets.UTF_8).length;
+                if (currentChunkBytes + nextCharBytes > MAX_BYTES) {
+                    break;
+                }
+                currentChunkBytes += nextCharBytes;
+                endIndex++;
+            }
+            if (endIndex == startIndex) {
+                endIndex = startIndex + 1;
+            }
+            chunks.add(content.substring(startIndex, endIndex));
+            startIndex = endIndex;
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,74 @@
+package com.fc.scanqr.benchmark;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.ChecksumException;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.FormatException;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a corpus of generated symbols from luminance planes with the reader and
+ * binarizer the ZXing backend uses for camera frames. Reports time per symbol.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DecodeBenchmark {
+    private static final int[] CORPUS_BYTES = {20, 100, 300, 800};
+    // Every symbol is found at 3 px per module; ZXing misses some large sharp ones at 4+
+    private static final int PIXELS_PER_MODULE = 3;
+
+    @Param({"L", "M", "Q", "H"})
+    public String level;
+
+    private final QRCodeReader reader = new QRCodeReader();
+    private final Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+    private byte[][] planes;
+    private int[] sizes;
+
+    @Setup
+    public void setUp() throws WriterException {
+        hints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
+        planes = new byte[CORPUS_BYTES.length][];
+        sizes = new int[CORPUS_BYTES.length];
+        for (int i = 0; i < CORPUS_BYTES.length; i++) {
+            String content = Samples.text(10 + i, Samples.BYTE_MODE_ALPHABET, CORPUS_BYTES[i]);
+            BitMatrix matrix = Samples.encode(content, ErrorCorrectionLevel.valueOf(level));
+            planes[i] = Samples.luminance(matrix, PIXELS_PER_MODULE);
+            sizes[i] = matrix.getWidth() * PIXELS_PER_MODULE;
+        }
+    }
+
+    @Benchmark
+    public void decodeCorpus(Blackhole blackhole) throws NotFoundException, ChecksumException, FormatException {
+        for (int i = 0; i < planes.length; i++) {
+            int size = sizes[i];
+            PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(
+                    planes[i], size, size, 0, 0, size, size, false);
+            Result result = reader.decode(new BinaryBitmap(new HybridBinarizer(source)), hints);
+            blackhole.consume(result.getText());
+            reader.reset();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.fc.scanqr.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding one frame at module resolution, as the encode pipeline does, for each error
+ * correction level and a range of frame sizes. 1000 bytes still fits version 40-H.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EncodeBenchmark {
+    @Param({"L", "M", "Q", "H"})
+    public String level;
+
+    @Param({"100", "400", "1000"})
+    public int frameBytes;
+
+    private final MultiFormatWriter writer = new MultiFormatWriter();
+    private String frame;
+    private Map<EncodeHintType, Object> hints;
+
+    @Setup
+    public void setUp() {
+        frame = Samples.text(2, Samples.BYTE_MODE_ALPHABET, frameBytes);
+        hints = Samples.hints(ErrorCorrectionLevel.valueOf(level));
+    }
+
+    @Benchmark
+    public BitMatrix encode() throws WriterException {
+        return writer.encode(frame, BarcodeFormat.QR_CODE, 0, 0, hints);
+    }
+}
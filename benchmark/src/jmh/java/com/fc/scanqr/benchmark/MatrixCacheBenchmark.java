@@ -0,0 +1,71 @@
+package com.fc.scanqr.benchmark;
+
+import com.fc.scanqr.MatrixCache;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Getting a 400 character frame's matrix by encoding it, from a {@link MatrixCache} in
+ * memory, and from the cache directory after a restart.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MatrixCacheBenchmark {
+    private static final long CACHE_BYTES = 1 << 20;
+
+    private String frame;
+    private Map<EncodeHintType, Object> hints;
+    private File directory;
+    private MatrixCache memory;
+
+    @Setup
+    public void setUp() throws IOException, WriterException {
+        frame = Samples.text(1, "0123456789abcdef", 400);
+        hints = Samples.hints(ErrorCorrectionLevel.M);
+        BitMatrix matrix = Samples.encode(frame, ErrorCorrectionLevel.M);
+        memory = new MatrixCache(CACHE_BYTES, null);
+        memory.put(frame, hints, matrix);
+        directory = Files.createTempDirectory("qr-matrices").toFile();
+        new MatrixCache(CACHE_BYTES, directory).put(frame, hints, matrix);
+    }
+
+    @TearDown
+    public void tearDown() {
+        new MatrixCache(CACHE_BYTES, directory).clear();
+        directory.delete();
+    }
+
+    @Benchmark
+    public BitMatrix encode() throws WriterException {
+        return Samples.encode(frame, ErrorCorrectionLevel.M);
+    }
+
+    @Benchmark
+    public BitMatrix memoryHit() {
+        return memory.get(frame, hints);
+    }
+
+    @Benchmark
+    public BitMatrix diskHit() {
+        // A new cache starts empty in memory, as after a restart
+        return new MatrixCache(CACHE_BYTES, directory).get(frame, hints);
+    }
+}
@@ -0,0 +1,45 @@
+package com.fc.scanqr.benchmark;
+
+import com.fc.scanqr.PayloadCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packing and unpacking each kind of {@link Samples#corpus} payload. Packed sizes and
+ * the frames they save are checked by {@code PayloadCodecTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PayloadCodecBenchmark {
+    @Param({"json", "hex", "base64", "prose", "randomBase64"})
+    public String kind;
+
+    private String content;
+    private PayloadCodec.Packed packed;
+
+    @Setup
+    public void setUp() {
+        content = Samples.corpus(1).get(kind);
+        packed = PayloadCodec.pack(content);
+    }
+
+    @Benchmark
+    public PayloadCodec.Packed pack() {
+        return PayloadCodec.pack(content);
+    }
+
+    @Benchmark
+    public String unpack() {
+        return PayloadCodec.unpack(packed.getBytes(), packed.getFlags());
+    }
+}
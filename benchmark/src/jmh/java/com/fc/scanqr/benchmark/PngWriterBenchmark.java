@@ -0,0 +1,58 @@
+package com.fc.scanqr.benchmark;
+
+import com.fc.scanqr.ModulePixels;
+import com.fc.scanqr.PngWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Writing a QR code of about 461 px, the size saved images used to have, as an ARGB
+ * PNG the way they were written before and as the 1-bit PNG of {@link PngWriter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PngWriterBenchmark {
+    private static final int LEGACY_SIZE = 461;
+
+    private final ModulePixels modulePixels = new ModulePixels();
+    private BitMatrix matrix;
+    private int scale;
+
+    @Setup
+    public void setUp() throws WriterException {
+        matrix = Samples.encode(Samples.text(1, "0123456789abcdef", 400), ErrorCorrectionLevel.L);
+        scale = LEGACY_SIZE / matrix.getWidth();
+    }
+
+    @Benchmark
+    public byte[] argbPng() throws IOException {
+        int size = matrix.getWidth() * scale;
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, size, size, modulePixels.fill(matrix, scale), 0, size);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] oneBitPng() {
+        return PngWriter.encode(matrix, scale);
+    }
+}
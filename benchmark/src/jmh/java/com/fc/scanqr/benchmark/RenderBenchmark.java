@@ -0,0 +1,69 @@
+package com.fc.scanqr.benchmark;
+
+import com.fc.scanqr.ModulePixels;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expanding a matrix into ARGB pixels, the part of bitmap rendering that runs on the
+ * JVM; {@code Bitmap.setPixels} itself is a copy. Scale 1 is what the pager renders,
+ * larger scales match saved and legacy full-size bitmaps. {@link #legacyFill} is how
+ * bitmaps were filled before: a matrix encoded at the full pixel size, read one pixel
+ * at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RenderBenchmark {
+    @Param({"100", "1000"})
+    public int frameBytes;
+
+    @Param({"1", "4", "10"})
+    public int scale;
+
+    private final ModulePixels modulePixels = new ModulePixels();
+    private BitMatrix matrix;
+    private BitMatrix pixelMatrix;
+
+    @Setup
+    public void setUp() throws WriterException {
+        String content = Samples.text(3, Samples.BYTE_MODE_ALPHABET, frameBytes);
+        matrix = Samples.encode(content, ErrorCorrectionLevel.M);
+        int size = matrix.getWidth() * scale;
+        pixelMatrix = new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, size, size,
+                Samples.hints(ErrorCorrectionLevel.M));
+    }
+
+    @Benchmark
+    public int[] fillPixels() {
+        return modulePixels.fill(matrix, scale);
+    }
+
+    @Benchmark
+    public int[] legacyFill() {
+        int width = pixelMatrix.getWidth();
+        int height = pixelMatrix.getHeight();
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                pixels[offset + x] = pixelMatrix.get(x, y) ? ModulePixels.BLACK : ModulePixels.WHITE;
+            }
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,104 @@
+package com.fc.scanqr.benchmark;
+
+import com.fc.scanqr.ModulePixels;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic inputs shared by the benchmarks.
+ */
+final class Samples {
+    /** Mostly ASCII with some two and three byte UTF-8, like pasted notes. */
+    static final String MIXED_ALPHABET = "abcdefghij KLMNOP 0123456789 .,:;{}\"\nä二";
+    /** Lower-case letters and punctuation, which forces byte mode. */
+    static final String BYTE_MODE_ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789 .:/?=&";
+
+    private Samples() {}
+
+    static String text(long seed, String alphabet, int length) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Payloads of the kinds moved through the app, keyed by kind: JSON records, the same
+     * records as hex and as base64, prose, and random bytes as base64.
+     */
+    static Map<String, String> corpus(long seed) {
+        Random random = new Random(seed);
+        StringBuilder json = new StringBuilder("[");
+        String[] names = {"alice", "bob", "carol", "dave", "erin", "frank"};
+        for (int i = 0; i < 150; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"id\":").append(1000 + i)
+                    .append(",\"name\":\"").append(names[random.nextInt(names.length)])
+                    .append("\",\"balance\":").append(random.nextInt(100_000) / 100.0)
+                    .append(",\"active\":").append(random.nextBoolean())
+                    .append(",\"tags\":[\"fc\",\"qr\"]}");
+        }
+        json.append(']');
+
+        byte[] jsonBytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : jsonBytes) hex.append(String.format("%02x", b));
+
+        StringBuilder prose = new StringBuilder();
+        String[] words = {"the", "quick", "payload", "is", "split", "into", "frames", "and", "scanned",
+                "back", "二维码", "transfer", "offline"};
+        for (int i = 0; i < 2000; i++) {
+            prose.append(words[random.nextInt(words.length)]).append(i % 12 == 11 ? ". " : " ");
+        }
+
+        byte[] keys = new byte[2048];
+        random.nextBytes(keys);
+
+        Map<String, String> corpus = new LinkedHashMap<>();
+        corpus.put("json", json.toString());
+        corpus.put("hex", hex.toString());
+        corpus.put("base64", Base64.getEncoder().encodeToString(jsonBytes));
+        corpus.put("prose", prose.toString());
+        corpus.put("randomBase64", Base64.getEncoder().encodeToString(keys));
+        return corpus;
+    }
+
+    static Map<EncodeHintType, Object> hints(ErrorCorrectionLevel level) {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+        hints.put(EncodeHintType.ERROR_CORRECTION, level);
+        hints.put(EncodeHintType.MARGIN, 2);
+        return hints;
+    }
+
+    static BitMatrix encode(String content, ErrorCorrectionLevel level) throws WriterException {
+        return new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, 0, 0, hints(level));
+    }
+
+    /**
+     * Renders {@code matrix} at {@code scale} pixels per module as an 8-bit luminance
+     * plane, the way a camera frame's Y plane reaches the decoder.
+     */
+    static byte[] luminance(BitMatrix matrix, int scale) {
+        int[] pixels = new ModulePixels().fill(matrix, scale);
+        int size = matrix.getWidth() * scale * matrix.getHeight() * scale;
+        byte[] plane = new byte[size];
+        for (int i = 0; i < size; i++) {
+            plane[i] = pixels[i] == ModulePixels.BLACK ? 0 : (byte) 0xFF;
+        }
+        return plane;
+    }
+}
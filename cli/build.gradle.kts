@@ -0,0 +1,35 @@
+plugins {
+    id("java")
+}
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    // Desktop only: uses AWT and ImageIO, which Android lacks, so the app must not link it
+    implementation(project(":FC-SDK"))
+
+    testImplementation(libs.junit)
+}
+
+tasks.named<Jar>("jar") {
+    manifest {
+        attributes("Main-Class" to "com.fc.scanqr.cli.QRTool")
+    }
+}
+
+// Self-contained bulk generator and decoder: java -jar cli/build/libs/qrtool.jar --help
+val cliJar by tasks.registering(Jar::class) {
+    group = "build"
+    description = "Assembles the runnable qrtool jar with FC-SDK and ZXing bundled."
+    archiveFileName.set("qrtool.jar")
+    manifest {
+        attributes("Main-Class" to "com.fc.scanqr.cli.QRTool")
+    }
+    from(sourceSets.main.get().output)
+    dependsOn(configurations.runtimeClasspath)
+    from({ configurations.runtimeClasspath.get().filter { it.name.endsWith(".jar") }.map { zipTree(it) } })
+    exclude("META-INF/*.SF", "META-INF/*.DSA", "META-INF/*.RSA")
+    duplicatesStrategy = DuplicatesStrategy.EXCLUDE
+}
@@ -0,0 +1,535 @@
+package com.fc.scanqr.cli;
+
+import com.fc.scanqr.CapacityPlanner;
+import com.fc.scanqr.ChunkAssembler;
+import com.fc.scanqr.FrameEncoder;
+import com.fc.scanqr.PngWriter;
+import com.fc.scanqr.PreparedPayload;
+import com.fc.scanqr.QRStreamEncoder;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.ReaderException;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Bulk generator and decoder on the same chunking and encoding code as the app, run as
+ * {@code java -jar qrtool.jar}. Records are read on the calling thread and encoded or
+ * decoded on a fixed pool; the bounded queue makes the reader run a job itself when the
+ * pool falls behind, so only a few records or images are in memory at a time. What does
+ * grow with the input is small: the name of every file generated, a few dozen bytes
+ * each, kept to catch records that would overwrite each other's output, and the list of
+ * images to decode. A malformed record is reported and skipped. {@code stream} encodes
+ * one file or standard input of any size through {@link QRStreamEncoder}, a chunk at a
+ * time.
+ * <p>
+ * {@code decode} writes a line per image with its single-frame codes, and a line per
+ * multi-frame payload once its chunks, from whatever images, are reassembled. Payloads
+ * still missing chunks when every image is read are reported as errors.
+ */
+public final class QRTool {
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+
+    private static final String USAGE = String.join("\n",
+            "usage: qrtool generate [options] <records.csv|records.jsonl> <output dir>",
+            "       qrtool stream [options] <file|-> <output dir>",
+            "       qrtool decode [options] <image dir|image> <results.jsonl>",
+            "",
+            "options:",
+            "  --threads N     worker threads (default: available processors)",
+            "  --profile P     SCREEN_FAST, BALANCED or PRINT_ROBUST (default: BALANCED)",
+            "  --scale N       pixels per module (default: from the profile)",
+            "  --id NAME       id column or field, used for file names (default: id)",
+            "  --content NAME  content column or field (default: content)");
+
+    private static final String[] IMAGE_SUFFIXES = {".png", ".jpg", ".jpeg", ".gif", ".bmp"};
+
+    private final InputStream in;
+    private final PrintStream out;
+    private final PrintStream err;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private CapacityPlanner.Profile profile = CapacityPlanner.Profile.BALANCED;
+    private int scale;
+    private String idField = "id";
+    private String contentField = "content";
+
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong codes = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    // Output names written by this run, case-folded for case-insensitive file systems
+    private final Map<String, String> outputNames = new ConcurrentHashMap<>();
+    // Multi-frame payloads being decoded, by payload id
+    private final Map<String, Payload> payloads = new ConcurrentHashMap<>();
+
+    /** Chunks of one payload and the images they were found in. */
+    private static final class Payload {
+        ChunkAssembler assembler = new ChunkAssembler();
+        final Set<String> files = new TreeSet<>();
+    }
+
+    QRTool(InputStream in, PrintStream out, PrintStream err) {
+        this.in = in;
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        System.exit(new QRTool(System.in, System.out, System.err).run(args));
+    }
+
+    int run(String[] args) {
+        List<String> operands = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    operands.add(arg);
+                    continue;
+                }
+                if (arg.equals("--help")) {
+                    out.println(USAGE);
+                    return EXIT_OK;
+                }
+                if (i + 1 >= args.length) {
+                    return usage("Missing value for " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--profile":
+                        profile = CapacityPlanner.Profile.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--scale":
+                        scale = Integer.parseInt(value);
+                        break;
+                    case "--id":
+                        idField = value;
+                        break;
+                    case "--content":
+                        contentField = value;
+                        break;
+                    default:
+                        return usage("Unknown option " + arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return usage("Bad option value: " + e.getMessage());
+        }
+        if (operands.size() != 3 || threads < 1 || scale < 0) {
+            return usage(null);
+        }
+
+        String input = operands.get(1);
+        Path output = Paths.get(operands.get(2));
+        long start = System.nanoTime();
+        try {
+            switch (operands.get(0)) {
+                case "generate":
+                    generate(Paths.get(input), output);
+                    break;
+                case "stream":
+                    stream(input, output);
+                    break;
+                case "decode":
+                    decode(Paths.get(input), output);
+                    break;
+                default:
+                    return usage("Unknown command " + operands.get(0));
+            }
+        } catch (IOException e) {
+            err.println("qrtool: " + e.getMessage());
+            return EXIT_FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_FAILED;
+        }
+        report(operands.get(0), System.nanoTime() - start);
+        return failures.get() == 0 ? EXIT_OK : EXIT_FAILED;
+    }
+
+    private void generate(Path input, Path outputDir) throws IOException, InterruptedException {
+        Files.createDirectories(outputDir);
+        ThreadPoolExecutor executor = newExecutor();
+        try (RecordReader reader = RecordReader.open(input, idField, contentField)) {
+            while (true) {
+                RecordReader.Record record;
+                try {
+                    record = reader.next();
+                } catch (RecordReader.BadRecordException e) {
+                    fail(e.record, e);
+                    continue;
+                }
+                if (record == null) {
+                    break;
+                }
+                executor.execute(() -> generate(record, outputDir));
+            }
+        } finally {
+            awaitAll(executor);
+        }
+    }
+
+    private void generate(RecordReader.Record record, Path outputDir) {
+        try {
+            PreparedPayload prepared = PreparedPayload.prepare(record.content, profile, record.id.hashCode());
+            FrameEncoder encoder = new FrameEncoder(prepared.getHints(), null);
+            int count = prepared.getPayload().getCount();
+            int pixels = scale > 0 ? scale : profile.getModulePixels();
+            String name = fileName(record.id);
+            String[] files = new String[count];
+            for (int i = 0; i < count; i++) {
+                files[i] = count == 1 ? name + ".png" : name + "-" + (i + 1) + ".png";
+                String owner = outputNames.putIfAbsent(files[i].toLowerCase(Locale.ROOT), record.id);
+                if (owner != null) {
+                    throw new IOException("output file " + files[i] + " clashes with record " + owner);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                writePng(encoder.encode(prepared.getPayload().getFrame(i)), pixels, outputDir.resolve(files[i]));
+            }
+            items.incrementAndGet();
+        } catch (IOException | WriterException | RuntimeException e) {
+            fail(record.id, e);
+        }
+    }
+
+    /**
+     * Writes the frames of one file, or of standard input for {@code -}, as
+     * {@code <name>-<n>.png}. A file's length is known up front and sizes the symbols;
+     * standard input is read to its end in the largest symbols the profile allows.
+     */
+    private void stream(String source, Path outputDir) throws IOException, InterruptedException {
+        boolean standardInput = source.equals("-");
+        Path input = standardInput ? null : Paths.get(source);
+        String name = standardInput ? "stdin" : fileName(input.getFileName().toString());
+        Files.createDirectories(outputDir);
+        QRStreamEncoder encoder = standardInput
+                ? new QRStreamEncoder(in, name.hashCode(), profile)
+                : new QRStreamEncoder(Files.newInputStream(input), Files.size(input), name.hashCode(), profile);
+        FrameEncoder frameEncoder = new FrameEncoder(encoder.getHints(), null);
+        int pixels = scale > 0 ? scale : profile.getModulePixels();
+        ThreadPoolExecutor executor = newExecutor();
+        try {
+            Iterator<String> frames = encoder.frames();
+            for (int n = 1; frames.hasNext(); n++) {
+                String frame = frames.next();
+                String file = name + "-" + n + ".png";
+                executor.execute(() -> {
+                    try {
+                        writePng(frameEncoder.encode(frame), pixels, outputDir.resolve(file));
+                    } catch (IOException | WriterException | RuntimeException e) {
+                        fail(file, e);
+                    }
+                });
+            }
+            items.incrementAndGet();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            awaitAll(executor);
+            if (!standardInput) {
+                encoder.close();
+            }
+        }
+    }
+
+    private void writePng(BitMatrix matrix, int pixels, Path file) throws IOException {
+        byte[] png = PngWriter.encode(matrix, pixels);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.wrap(png));
+        }
+        codes.incrementAndGet();
+        bytes.addAndGet(png.length);
+    }
+
+    private void decode(Path input, Path output) throws IOException, InterruptedException {
+        List<Path> images;
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> files = Files.walk(input)) {
+                images = files.filter(QRTool::isImage).sorted().collect(Collectors.toList());
+            }
+        } else {
+            images = new ArrayList<>();
+            images.add(input);
+        }
+        Path base = Files.isDirectory(input) ? input.toAbsolutePath() : input.toAbsolutePath().getParent();
+
+        ThreadPoolExecutor executor = newExecutor();
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            try {
+                for (Path image : images) {
+                    String name = base.relativize(image.toAbsolutePath()).toString();
+                    executor.execute(() -> decode(image, name, channel));
+                }
+            } finally {
+                awaitAll(executor);
+            }
+            for (Map.Entry<String, Payload> entry : new TreeMap<>(payloads).entrySet()) {
+                reportIncomplete(entry.getKey(), entry.getValue(), channel);
+            }
+        }
+    }
+
+    private void decode(Path image, String name, FileChannel channel) {
+        StringBuilder line = new StringBuilder("{\"file\":").append(JsonLine.quote(name));
+        List<String> chunks = new ArrayList<>();
+        try {
+            bytes.addAndGet(Files.size(image));
+            BufferedImage bitmap = ImageIO.read(image.toFile());
+            if (bitmap == null) {
+                throw new IOException("unsupported image format");
+            }
+            Result[] results = decode(bitmap);
+            StringBuilder texts = new StringBuilder();
+            Set<String> payloadIds = new TreeSet<>();
+            for (Result result : results) {
+                String text = result.getText();
+                String payloadId = ChunkAssembler.payloadIdOf(text);
+                if (payloadId != null) {
+                    chunks.add(text);
+                    payloadIds.add(payloadId);
+                } else {
+                    texts.append(texts.length() == 0 ? "" : ",").append(JsonLine.quote(text));
+                }
+            }
+            line.append(",\"texts\":[").append(texts).append(']');
+            if (!payloadIds.isEmpty()) {
+                line.append(",\"payloads\":").append(quoteAll(payloadIds));
+            }
+            line.append("}\n");
+            codes.addAndGet(results.length);
+            items.incrementAndGet();
+        } catch (IOException | ReaderException | RuntimeException e) {
+            fail(name, e);
+            line.append(",\"error\":").append(JsonLine.quote(describe(e))).append("}\n");
+        }
+        writeLine(channel, line, name);
+        for (String chunk : chunks) {
+            collect(chunk, name, channel);
+        }
+    }
+
+    /**
+     * Adds a chunk to its payload, and writes the payload as soon as it is complete.
+     * Chunks of a payload already written are only counted as found.
+     */
+    private void collect(String chunk, String name, FileChannel channel) {
+        String payloadId = ChunkAssembler.payloadIdOf(chunk);
+        Payload payload = payloads.computeIfAbsent(payloadId, id -> new Payload());
+        String text;
+        String files;
+        synchronized (payload) {
+            if (payload.assembler == null) {
+                return;
+            }
+            payload.files.add(name);
+            if (payload.assembler.add(chunk) != ChunkAssembler.Status.COMPLETE) {
+                return;
+            }
+            text = payload.assembler.getText();
+            files = quoteAll(payload.files);
+            // Frees the buffer; the entry stays to absorb later copies of its chunks
+            payload.assembler = null;
+            payload.files.clear();
+        }
+        writeLine(channel, new StringBuilder("{\"payload\":").append(JsonLine.quote(payloadId))
+                .append(",\"files\":").append(files)
+                .append(",\"text\":").append(JsonLine.quote(text)).append("}\n"), payloadId);
+    }
+
+    private void reportIncomplete(String payloadId, Payload payload, FileChannel channel) {
+        if (payload.assembler == null) {
+            return;
+        }
+        int[] missing = payload.assembler.getMissing();
+        String error;
+        if (missing == null) {
+            error = "missing the last part, " + payload.assembler.getReceivedCount() + " parts found";
+        } else if (missing.length == 0) {
+            error = "parts of different versions fail the payload checksum";
+        } else {
+            StringBuilder sb = new StringBuilder("missing parts ");
+            for (int i = 0; i < missing.length; i++) {
+                sb.append(i == 0 ? "" : ", ").append(missing[i] + 1);
+            }
+            error = sb.append(" of ").append(payload.assembler.getTotal()).toString();
+        }
+        failures.incrementAndGet();
+        err.println(payloadId + ": " + error);
+        writeLine(channel, new StringBuilder("{\"payload\":").append(JsonLine.quote(payloadId))
+                .append(",\"files\":").append(quoteAll(payload.files))
+                .append(",\"error\":").append(JsonLine.quote(error)).append("}\n"), payloadId);
+    }
+
+    private void writeLine(FileChannel channel, CharSequence line, String name) {
+        ByteBuffer buffer = ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            // Whole lines only, so concurrent workers never interleave within one
+            synchronized (channel) {
+                writeFully(channel, buffer);
+            }
+        } catch (IOException e) {
+            fail(name, e);
+        }
+    }
+
+    private static String quoteAll(Iterable<String> values) {
+        StringBuilder sb = new StringBuilder("[");
+        for (String value : values) {
+            sb.append(sb.length() == 1 ? "" : ",").append(JsonLine.quote(value));
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Returns every code in the image, retrying with a global threshold when local
+     * thresholding finds none.
+     */
+    static Result[] decode(BufferedImage image) throws NotFoundException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        LuminanceSource source = new RGBLuminanceSource(width, height,
+                image.getRGB(0, 0, width, height, null, 0, width));
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
+        hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        QRCodeMultiReader reader = new QRCodeMultiReader();
+        try {
+            return reader.decodeMultiple(new BinaryBitmap(new HybridBinarizer(source)), hints);
+        } catch (NotFoundException e) {
+            return reader.decodeMultiple(new BinaryBitmap(new GlobalHistogramBinarizer(source)), hints);
+        }
+    }
+
+    private ThreadPoolExecutor newExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "qrtool-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4), factory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static void awaitAll(ThreadPoolExecutor executor) throws InterruptedException {
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            // Keep waiting; every job ends on its own
+        }
+    }
+
+    private void report(String command, long nanos) {
+        double seconds = Math.max(nanos, 1) / 1e9;
+        double megabytes = bytes.get() / (1024.0 * 1024.0);
+        out.printf(Locale.ROOT, "%s: %d %s, %d codes, %.1f MB in %.2f s on %d threads: %.0f codes/s, %.1f MB/s, %d failed%n",
+                command, items.get(), command.equals("decode") ? "images" : command.equals("stream") ? "inputs" : "records", codes.get(), megabytes,
+                seconds, threads, codes.get() / seconds, megabytes / seconds, failures.get());
+    }
+
+    private int usage(String message) {
+        if (message != null) {
+            err.println("qrtool: " + message);
+        }
+        err.println(USAGE);
+        return EXIT_USAGE;
+    }
+
+    private void fail(String name, Exception e) {
+        failures.incrementAndGet();
+        err.println(name + ": " + describe(e));
+    }
+
+    private static String describe(Exception e) {
+        if (e instanceof NotFoundException) {
+            return "no QR code found";
+        }
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static boolean isImage(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String suffix : IMAGE_SUFFIXES) {
+            if (name.endsWith(suffix)) {
+                return Files.isRegularFile(path);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Keeps ids usable as file names on any file system. Ids that had to be changed get
+     * a short hash of the original, so that {@code a/b} and {@code a_b} stay apart.
+     */
+    static String fileName(String id) {
+        String name = id.replaceAll("[^A-Za-z0-9._-]", "_");
+        if (name.equals(id) && !name.isEmpty() && !name.startsWith(".")) {
+            return name;
+        }
+        return (name.isEmpty() || name.startsWith(".") ? "_" + name : name) + "~" + shortHash(id);
+    }
+
+    private static String shortHash(String id) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(id.getBytes(StandardCharsets.UTF_8));
+            return String.format(Locale.ROOT, "%02x%02x%02x%02x", digest[0], digest[1], digest[2], digest[3]);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.fc.scanqr.cli;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams {@link Record}s from a CSV file with a header row, or from JSON Lines with one
+ * object per line, without loading the file. Records without an id field are numbered
+ * from 1 in file order. A record that cannot be read throws {@link BadRecordException}
+ * with the reader already past it, so the caller can report it and go on.
+ */
+abstract class RecordReader implements Closeable {
+    static final class Record {
+        final String id;
+        final String content;
+
+        Record(String id, String content) {
+            this.id = id;
+            this.content = content;
+        }
+    }
+
+    /** A malformed record, named by its position in the file. */
+    static final class BadRecordException extends IOException {
+        final String record;
+
+        BadRecordException(String record, String message) {
+            super(message);
+            this.record = record;
+        }
+    }
+
+    final BufferedReader reader;
+    final String idField;
+    final String contentField;
+    long recordNumber;
+
+    RecordReader(BufferedReader reader, String idField, String contentField) {
+        this.reader = reader;
+        this.idField = idField;
+        this.contentField = contentField;
+    }
+
+    /**
+     * Opens {@code path} as CSV if it ends in {@code .csv}, otherwise as JSON Lines.
+     */
+    static RecordReader open(Path path, String idField, String contentField) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        if (path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            return new Csv(reader, idField, contentField);
+        }
+        return new JsonLines(reader, idField, contentField);
+    }
+
+    /**
+     * Returns the next record, or null at the end of the input.
+     *
+     * @throws BadRecordException if the next record is malformed; the one after it is
+     *                            returned by the next call
+     */
+    abstract Record next() throws IOException;
+
+    String idOrNumber(String id) {
+        return id == null || id.isEmpty() ? Long.toString(recordNumber) : id;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    static final class Csv extends RecordReader {
+        private int idColumn = -1;
+        private int contentColumn = -1;
+        private boolean eof;
+
+        Csv(BufferedReader reader, String idField, String contentField) {
+            super(reader, idField, contentField);
+        }
+
+        @Override
+        Record next() throws IOException {
+            if (contentColumn < 0) {
+                readHeader();
+            }
+            List<String> row;
+            do {
+                row = readRow();
+                if (row == null) {
+                    return null;
+                }
+            } while (row.size() == 1 && row.get(0).isEmpty());
+            recordNumber++;
+            if (row.size() <= contentColumn) {
+                throw new BadRecordException("record " + recordNumber, "no " + contentField + " column");
+            }
+            String id = idColumn >= 0 && idColumn < row.size() ? row.get(idColumn) : null;
+            return new Record(idOrNumber(id), row.get(contentColumn));
+        }
+
+        private void readHeader() throws IOException {
+            List<String> header;
+            try {
+                header = readRow();
+            } catch (BadRecordException e) {
+                throw new IOException("Unterminated quote in CSV header");
+            }
+            if (header == null) {
+                throw new IOException("Empty CSV file");
+            }
+            if (!header.isEmpty() && header.get(0).startsWith("\uFEFF")) {
+                header.set(0, header.get(0).substring(1));
+            }
+            idColumn = header.indexOf(idField);
+            contentColumn = header.indexOf(contentField);
+            if (contentColumn < 0) {
+                throw new IOException("No " + contentField + " column in CSV header " + header);
+            }
+        }
+
+        /**
+         * Reads one RFC 4180 row: quoted fields may hold commas, line breaks and doubled
+         * quotes.
+         */
+        List<String> readRow() throws IOException {
+            if (eof) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean any = false;
+            while (true) {
+                int c = reader.read();
+                if (c < 0) {
+                    eof = true;
+                    if (quoted) {
+                        throw new BadRecordException("record " + (recordNumber + 1), "unterminated quote");
+                    }
+                    if (!any) {
+                        return null;
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                }
+                any = true;
+                if (quoted) {
+                    if (c != '"') {
+                        field.append((char) c);
+                    } else {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == '\r') {
+                    if (c == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                } else {
+                    field.append((char) c);
+                }
+            }
+        }
+    }
+
+    static final class JsonLines extends RecordReader {
+        private long lineNumber;
+
+        JsonLines(BufferedReader reader, String idField, String contentField) {
+            super(reader, idField, contentField);
+        }
+
+        @Override
+        Record next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                lineNumber++;
+                if (line == null) {
+                    return null;
+                }
+            } while (line.trim().isEmpty());
+            recordNumber++;
+            Map<String, String> members;
+            try {
+                members = JsonLine.parse(line);
+            } catch (IllegalArgumentException e) {
+                throw new BadRecordException("line " + lineNumber, e.getMessage());
+            }
+            String content = members.get(contentField);
+            if (content == null) {
+                throw new BadRecordException("line " + lineNumber, "no " + contentField + " field");
+            }
+            return new Record(idOrNumber(members.get(idField)), content);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.fc.scanqr.cli;
+
+import com.fc.scanqr.ChunkAssembler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+public class QRToolTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private int run(String... args) {
+        return run(new byte[0], args);
+    }
+
+    private int run(byte[] stdin, String... args) {
+        return new QRTool(new ByteArrayInputStream(stdin), new PrintStream(out, true), new PrintStream(err, true))
+                .run(args);
+    }
+
+    private File write(String name, String text) throws Exception {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<RecordReader.Record> readAll(File file) throws Exception {
+        List<RecordReader.Record> records = new ArrayList<>();
+        try (RecordReader reader = RecordReader.open(file.toPath(), "id", "content")) {
+            RecordReader.Record record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    @Test
+    public void csvHandlesQuotesLineBreaksAndMissingIds() throws Exception {
+        File csv = write("in.csv", "\uFEFFcontent,id\r\n"
+                + "plain,a\r\n"
+                + "\"with, comma and \"\"quotes\"\"\",b\n"
+                + "\"two\nlines\",\n"
+                + "\n"
+                + "last,c");
+
+        List<RecordReader.Record> records = readAll(csv);
+
+        assertEquals(4, records.size());
+        assertEquals("plain", records.get(0).content);
+        assertEquals("a", records.get(0).id);
+        assertEquals("with, comma and \"quotes\"", records.get(1).content);
+        assertEquals("two\nlines", records.get(2).content);
+        assertEquals("3", records.get(2).id);
+        assertEquals("c", records.get(3).id);
+    }
+
+    @Test
+    public void jsonLinesReadsEscapesAndSkipsNestedValues() throws Exception {
+        File jsonl = write("in.jsonl", "{\"id\": 7, \"meta\": {\"a\": [1, \"}\"]}, \"content\": \"x\\ty\\u00e9\\\"\"}\n"
+                + "\n"
+                + "{\"content\":\"second\"}\n");
+
+        List<RecordReader.Record> records = readAll(jsonl);
+
+        assertEquals(2, records.size());
+        assertEquals("7", records.get(0).id);
+        assertEquals("x\tyé\"", records.get(0).content);
+        assertEquals("2", records.get(1).id);
+    }
+
+    @Test
+    public void jsonLineRejectsMalformedObjects() {
+        try {
+            JsonLine.parse("{\"content\": \"open");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals("a\"b\\c\n", JsonLine.parse("{\"v\":" + JsonLine.quote("a\"b\\c\n") + "}").get("v"));
+    }
+
+    @Test
+    public void generatedCodesDecodeBack() throws Exception {
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longText.append("line ").append(i).append(' ');
+        }
+        File jsonl = write("in.jsonl", "{\"id\":\"short/1\",\"content\":\"hello qr\"}\n"
+                + "{\"id\":\"long\",\"content\":" + JsonLine.quote(longText.toString()) + "}\n");
+        File images = new File(folder.getRoot(), "images");
+        File results = new File(folder.getRoot(), "results.jsonl");
+
+        assertEquals(QRTool.EXIT_OK, run("generate", "--threads", "2", "--scale", "3", jsonl.getPath(), images.getPath()));
+        assertTrue(new File(images, QRTool.fileName("short/1") + ".png").isFile());
+        assertTrue(out.toString().startsWith("generate: 2 records"));
+
+        assertEquals(QRTool.EXIT_OK, run("decode", "--threads", "3", images.getPath(), results.getPath()));
+        List<String> lines = Files.readAllLines(results.toPath(), StandardCharsets.UTF_8);
+        String reassembled = null;
+        int imageLines = 0;
+        for (String line : lines) {
+            Map<String, String> members = JsonLine.parse(line);
+            assertNull(line, members.get("error"));
+            if (members.get("payload") != null) {
+                assertNull("one line per payload", reassembled);
+                reassembled = members.get("text");
+                assertTrue(line, line.contains("\"files\":[\"long-1.png\",\"long-2.png\""));
+            } else if (members.get("file").startsWith("long-")) {
+                assertTrue(line, line.contains("\"texts\":[]"));
+                imageLines++;
+            } else {
+                assertTrue(line, line.contains("\"texts\":[\"hello qr\"]"));
+                imageLines++;
+            }
+        }
+        assertEquals(lines.size() - 1, imageLines);
+        assertEquals(longText.toString(), reassembled);
+    }
+
+    @Test
+    public void payloadsMissingPartsAreReported() throws Exception {
+        // Random digits, which deflate cannot shrink to fewer than three frames
+        StringBuilder longText = new StringBuilder();
+        Random random = new Random(3);
+        for (int i = 0; i < 600; i++) {
+            longText.append(random.nextInt(100_000)).append(' ');
+        }
+        File jsonl = write("in.jsonl", "{\"id\":\"long\",\"content\":" + JsonLine.quote(longText.toString()) + "}\n");
+        File images = new File(folder.getRoot(), "images");
+        File results = new File(folder.getRoot(), "results.jsonl");
+        assertEquals(QRTool.EXIT_OK, run("generate", "--scale", "3", jsonl.getPath(), images.getPath()));
+        int count = images.list().length;
+        assertTrue(count > 2);
+        assertTrue(new File(images, "long-2.png").delete());
+
+        assertEquals(QRTool.EXIT_FAILED, run("decode", images.getPath(), results.getPath()));
+        List<String> lines = Files.readAllLines(results.toPath(), StandardCharsets.UTF_8);
+        Map<String, String> last = JsonLine.parse(lines.get(lines.size() - 1));
+        assertNotNull(last.get("payload"));
+        assertEquals("missing parts 2 of " + count, last.get("error"));
+        assertTrue(err.toString(), err.toString().contains("missing parts 2 of " + count));
+
+        assertTrue(new File(images, "long-" + count + ".png").delete());
+        assertEquals(QRTool.EXIT_FAILED, run("decode", images.getPath(), results.getPath()));
+        lines = Files.readAllLines(results.toPath(), StandardCharsets.UTF_8);
+        assertEquals("missing the last part, " + (count - 2) + " parts found",
+                JsonLine.parse(lines.get(lines.size() - 1)).get("error"));
+    }
+
+    @Test
+    public void streamedFileDecodesBack() throws Exception {
+        byte[] bytes = new byte[6_000];
+        new Random(1).nextBytes(bytes);
+        File input = folder.newFile("blob.bin");
+        Files.write(input.toPath(), bytes);
+        File images = new File(folder.getRoot(), "images");
+
+        assertEquals(QRTool.EXIT_OK, run("stream", "--threads", "2", "--scale", "3", input.getPath(), images.getPath()));
+        assertTrue(out.toString(), out.toString().startsWith("stream: 1 inputs"));
+        assertArrayEquals(bytes, reassemble(images, "blob.bin-"));
+    }
+
+    @Test
+    public void standardInputStreamsToTheEnd() throws Exception {
+        byte[] bytes = new byte[6_000];
+        new Random(2).nextBytes(bytes);
+        File images = new File(folder.getRoot(), "images");
+
+        assertEquals(QRTool.EXIT_OK, run(bytes, "stream", "--scale", "3", "-", images.getPath()));
+        assertArrayEquals(bytes, reassemble(images, "stdin-"));
+    }
+
+    private static byte[] reassemble(File images, String prefix) throws Exception {
+        File[] files = images.listFiles();
+        assertNotNull(files);
+        assertTrue(files.length > 1);
+        ChunkAssembler assembler = new ChunkAssembler();
+        for (File file : files) {
+            assertTrue(file.getName(), file.getName().startsWith(prefix));
+            assembler.add(decodeText(file));
+        }
+        assertTrue(assembler.isComplete());
+        return Base64.getDecoder().decode(assembler.getText());
+    }
+
+    @Test
+    public void unreadableImagesAreReportedPerFile() throws Exception {
+        File images = folder.newFolder("bad");
+        Files.write(new File(images, "noise.png").toPath(), new byte[] {1, 2, 3});
+        File results = new File(folder.getRoot(), "results.jsonl");
+
+        assertEquals(QRTool.EXIT_FAILED, run("decode", images.getPath(), results.getPath()));
+
+        String line = Files.readAllLines(results.toPath(), StandardCharsets.UTF_8).get(0);
+        assertEquals("noise.png", JsonLine.parse(line).get("file"));
+        assertNotNull(JsonLine.parse(line).get("error"));
+    }
+
+    @Test
+    public void malformedRecordsAreReportedAndSkipped() throws Exception {
+        File jsonl = write("in.jsonl", "{\"id\":\"a\",\"content\":\"first\"}\n"
+                + "{\"id\":\"b\",\"content\": \"open\n"
+                + "{\"id\":\"c\"}\n"
+                + "{\"id\":\"d\",\"content\":\"last\"}\n");
+        File csv = write("in.csv", "id,extra,content\na,x,first\nb\nd,x,last\n");
+        File images = new File(folder.getRoot(), "images");
+        File csvImages = new File(folder.getRoot(), "csv");
+
+        assertEquals(QRTool.EXIT_FAILED, run("generate", "--scale", "3", jsonl.getPath(), images.getPath()));
+        assertEquals(QRTool.EXIT_FAILED, run("generate", "--scale", "3", csv.getPath(), csvImages.getPath()));
+
+        assertEquals("last", decodeText(new File(images, "d.png")));
+        assertEquals("last", decodeText(new File(csvImages, "d.png")));
+        assertEquals(2, images.list().length);
+        assertEquals(2, csvImages.list().length);
+        assertTrue(out.toString(), out.toString().contains("generate: 2 records"));
+        assertTrue(err.toString(), err.toString().contains("line 2: "));
+        assertTrue(err.toString(), err.toString().contains("line 3: no content field"));
+        assertTrue(err.toString(), err.toString().contains("record 2: no content column"));
+    }
+
+    @Test
+    public void fileName_keepsSanitizedIdsApart() {
+        assertEquals("a_b", QRTool.fileName("a_b"));
+        assertTrue(QRTool.fileName("a/b").matches("a_b~[0-9a-f]{8}"));
+        assertNotEquals(QRTool.fileName("a/b"), QRTool.fileName("a:b"));
+        assertEquals(QRTool.fileName("a/b"), QRTool.fileName("a/b"));
+        assertTrue(QRTool.fileName("").startsWith("_~"));
+        assertTrue(QRTool.fileName("..").startsWith("_..~"));
+    }
+
+    @Test
+    public void clashingOutputNamesFailInsteadOfOverwriting() throws Exception {
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longText.append("line ").append(i).append(' ');
+        }
+        // One worker runs the records in input order
+        File jsonl = write("in.jsonl", "{\"id\":\"a/b\",\"content\":\"first\"}\n"
+                + "{\"id\":\"a_b\",\"content\":\"second\"}\n"
+                + "{\"id\":\"long\",\"content\":" + JsonLine.quote(longText.toString()) + "}\n"
+                + "{\"id\":\"long-2\",\"content\":\"third\"}\n"
+                + "{\"id\":\"A_B\",\"content\":\"fourth\"}\n");
+        File images = new File(folder.getRoot(), "images");
+
+        assertEquals(QRTool.EXIT_FAILED, run("generate", "--threads", "1", "--scale", "3",
+                jsonl.getPath(), images.getPath()));
+        assertEquals("first", decodeText(new File(images, QRTool.fileName("a/b") + ".png")));
+        assertEquals("second", decodeText(new File(images, "a_b.png")));
+        assertNotEquals("third", decodeText(new File(images, "long-2.png")));
+        assertTrue(err.toString(), err.toString().contains("long-2: output file long-2.png clashes with record long"));
+        assertTrue(err.toString(), err.toString().contains("A_B: output file A_B.png clashes with record a_b"));
+    }
+
+    private static String decodeText(File image) throws Exception {
+        return QRTool.decode(ImageIO.read(image))[0].getText();
+    }
+
+    @Test
+    public void badArgumentsPrintUsage() {
+        assertEquals(QRTool.EXIT_USAGE, run("generate", "only-one"));
+        assertEquals(QRTool.EXIT_USAGE, run("--threads", "zero", "generate", "a", "b"));
+        assertTrue(err.toString().contains("usage: qrtool"));
+    }
+}
@@ -0,0 +1,35 @@
+package com.fc.scanqr.macrobenchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Records the startup, generate and scan journeys into a baseline profile. Run on a
+ * rooted device or emulator with
+ * {@code ./gradlew :macrobenchmark:connectedBenchmarkAndroidTest
+ * -Pandroid.testInstrumentationRunnerArguments.class=com.fc.scanqr.macrobenchmark.BaselineProfileGenerator}
+ * and copy the resulting rules into {@code app/src/main/baseline-prof.txt}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+    @Rule
+    public BaselineProfileRule rule = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        rule.collect(Flows.PACKAGE_NAME, 15, 3, null, true, false, name -> true, scope -> {
+            Flows.grantCamera(scope);
+            scope.pressHome();
+            scope.startActivityAndWait();
+            Flows.generate(scope);
+            Flows.scan(scope);
+            return Unit.INSTANCE;
+        });
+    }
+}
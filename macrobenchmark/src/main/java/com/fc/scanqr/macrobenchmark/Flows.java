@@ -0,0 +1,55 @@
+package com.fc.scanqr.macrobenchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import java.io.IOException;
+
+/**
+ * User journeys shared by the benchmarks and the baseline profile generator.
+ */
+final class Flows {
+    static final String PACKAGE_NAME = "com.fc.scanqr";
+    private static final long TIMEOUT_MS = 5_000;
+    private static final String SAMPLE_TEXT =
+            "bitcoin:1BvBMSEYstWetqTFn5Au4m4GFg7xJaNVN2?amount=0.015&label=EasyQR%20benchmark";
+
+    private Flows() {}
+
+    static void grantCamera(MacrobenchmarkScope scope) {
+        try {
+            scope.getDevice().executeShellCommand("pm grant " + PACKAGE_NAME + " android.permission.CAMERA");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Types a payload, taps Make and waits for the code dialog.
+     */
+    static void generate(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 editor = device.wait(Until.findObject(By.res(PACKAGE_NAME, "qrContentEditText")), TIMEOUT_MS);
+        editor.setText(SAMPLE_TEXT);
+        device.findObject(By.res(PACKAGE_NAME, "makeButtonContainer")).click();
+        device.wait(Until.hasObject(By.res(PACKAGE_NAME, "qrViewPager")), TIMEOUT_MS);
+        device.pressBack();
+        device.waitForIdle();
+    }
+
+    /**
+     * Taps Scan, lets the camera run for a moment and stops it again.
+     */
+    static void scan(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 scanButton = device.wait(Until.findObject(By.res(PACKAGE_NAME, "scanButtonContainer")), TIMEOUT_MS);
+        scanButton.click();
+        device.wait(Until.hasObject(By.res(PACKAGE_NAME, "previewView")), TIMEOUT_MS);
+        device.waitForIdle();
+        device.findObject(By.res(PACKAGE_NAME, "scanButtonContainer")).click();
+        device.waitForIdle();
+    }
+}
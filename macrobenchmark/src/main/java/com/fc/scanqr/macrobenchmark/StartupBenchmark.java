@@ -0,0 +1,83 @@
+package com.fc.scanqr.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.Metric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Cold start time to first frame, and the time from tapping Scan on a fresh start to
+ * the first analyzed camera frame, each without AOT compilation and with the baseline
+ * profile. Run with {@code ./gradlew :macrobenchmark:connectedBenchmarkAndroidTest} on
+ * a physical device and compare the results across releases.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    @Test
+    public void startupNoCompilation() {
+        startup(new CompilationMode.None());
+    }
+
+    @Test
+    public void startupBaselineProfile() {
+        startup(new CompilationMode.Partial());
+    }
+
+    @Test
+    public void scanFirstFrameNoCompilation() {
+        scanFirstFrame(new CompilationMode.None());
+    }
+
+    @Test
+    public void scanFirstFrameBaselineProfile() {
+        scanFirstFrame(new CompilationMode.Partial());
+    }
+
+    private void startup(CompilationMode mode) {
+        List<Metric> metrics = Collections.singletonList(new StartupTimingMetric());
+        rule.measureRepeated(Flows.PACKAGE_NAME, metrics, mode, StartupMode.COLD, ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                });
+    }
+
+    private void scanFirstFrame(CompilationMode mode) {
+        List<Metric> metrics = Arrays.asList(new StartupTimingMetric(),
+                new TraceSectionMetric("ScanFirstFrame", TraceSectionMetric.Mode.First.INSTANCE,
+                        "ScanFirstFrame", true));
+        rule.measureRepeated(Flows.PACKAGE_NAME, metrics, mode, StartupMode.COLD, ITERATIONS,
+                scope -> {
+                    Flows.grantCamera(scope);
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    Flows.scan(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -22,3 +22,6 @@ dependencyResolutionManagement {
 rootProject.name = "ScanQr"
 include(":app")
 include(":FC-SDK")
+include(":cli")
+include(":macrobenchmark")
+include(":benchmark")